@@ -0,0 +1,56 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.jjson.mapping.JJMapper;
+import com.persistentbit.jjson.nodes.JJParser;
+import com.persistentbit.jjson.nodes.JJPrinter;
+import com.persistentbit.substema.RCall;
+import com.persistentbit.substema.RCallResult;
+import com.persistentbit.substema.RCompression;
+import com.persistentbit.substema.RemoteService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Http endpoint for a {@link RemoteService}, used for the http loopback benchmarks.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class BenchHttpHandler implements HttpHandler{
+
+	private final JJMapper      mapper = new JJMapper();
+	private final RemoteService service;
+
+	public BenchHttpHandler(RemoteService service) {
+		this.service = service;
+	}
+
+	@Override
+	public void handle(HttpExchange t) throws IOException {
+		RCompression requestCompression = RCompression
+			.forName(t.getRequestHeaders().getFirst("Content-Encoding"))
+			.orElseThrow(() -> new IOException("Unsupported Content-Encoding"));
+		RCall call;
+		try(Reader r = new InputStreamReader(requestCompression.decompress(t.getRequestBody()), StandardCharsets.UTF_8)) {
+			call = mapper.read(JJParser.parse(r).orElseThrow(), RCall.class);
+		}
+		RCallResult  result      = service.call(call).completed().orElseThrow();
+		byte[]       response    = JJPrinter.print(false, mapper.write(result)).getBytes(StandardCharsets.UTF_8);
+		RCompression compression = RCompression.negotiate(t.getRequestHeaders().getFirst("Accept-Encoding"))
+			.select(response, RCompression.defaultThreshold);
+		if(compression != RCompression.none) {
+			t.getResponseHeaders().set("Content-Encoding", compression.getName());
+			response = compression.compress(response);
+		}
+		t.sendResponseHeaders(200, response.length);
+		try(OutputStream os = t.getResponseBody()) {
+			os.write(response);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.substema.JSonRemoteService;
+import com.persistentbit.substema.RServer;
+import com.persistentbit.substema.RemoteService;
+
+/**
+ * Factory for the remote services used by the benchmarks.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public final class BenchServers{
+
+	public static final String secret = "BenchSecret";
+
+	private BenchServers() {
+	}
+
+	public static RServer<BenchService, BenchServiceImpl.SessionData> createRServer() {
+		return new RServer<>(
+			secret,
+			BenchService.class,
+			BenchServiceImpl.SessionData.class,
+			BenchServiceImpl::new
+		);
+	}
+
+	/**
+	 * Create a remote service for a transport name.
+	 *
+	 * @param transport "rserver" for direct in-process calls or "json" for a json round trip
+	 *
+	 * @return The RemoteService
+	 */
+	public static RemoteService create(String transport) {
+		switch(transport) {
+			case "rserver":
+				return createRServer();
+			case "json":
+				return new JSonRemoteService(createRServer());
+			default:
+				throw new IllegalArgumentException("Unknown transport: " + transport);
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.OK;
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.substema.annotations.Remotable;
+import com.persistentbit.substema.annotations.RemoteCache;
+
+/**
+ * Remotable service used by the benchmarks.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@Remotable
+public interface BenchService{
+
+	@RemoteCache
+	Result<String> getName();
+
+	Result<BenchValue> getValue(int id);
+
+	Result<PList<BenchValue>> getValues(int count);
+
+	/**
+	 * Get a child remote object, used to build call stacks of a given depth.
+	 */
+	Result<BenchService> getChild(int level);
+
+	Result<OK> login(String userName);
+
+	Result<String> getUserName();
+}
@@ -0,0 +1,85 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.OK;
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.core.utils.BaseValueClass;
+import com.persistentbit.substema.RSessionManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Implementation of the {@link BenchService} that does as little work as possible,
+ * so the benchmarks measure the remote call overhead.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class BenchServiceImpl implements BenchService{
+
+	public static class SessionData extends BaseValueClass{
+
+		private final String userName;
+
+		public SessionData(String userName) {
+			this.userName = userName;
+		}
+
+		public String getUserName() {
+			return userName;
+		}
+	}
+
+	private final RSessionManager<SessionData> sessionManager;
+	private final int                          level;
+
+	public BenchServiceImpl(RSessionManager<SessionData> sessionManager, int level) {
+		this.sessionManager = sessionManager;
+		this.level = level;
+	}
+
+	public BenchServiceImpl(RSessionManager<SessionData> sessionManager) {
+		this(sessionManager, 0);
+	}
+
+	@Override
+	public Result<String> getName() {
+		return Result.success("BenchService level " + level);
+	}
+
+	@Override
+	public Result<BenchValue> getValue(int id) {
+		return Result.success(value(id));
+	}
+
+	@Override
+	public Result<PList<BenchValue>> getValues(int count) {
+		PList<BenchValue> res = PList.empty();
+		for(int t = 0; t < count; t++) {
+			res = res.plus(value(t));
+		}
+		return Result.success(res);
+	}
+
+	@Override
+	public Result<BenchService> getChild(int level) {
+		return Result.success(new BenchServiceImpl(sessionManager, level));
+	}
+
+	@Override
+	public Result<OK> login(String userName) {
+		sessionManager.setData(new SessionData(userName), LocalDateTime.now().plusHours(1));
+		return OK.result;
+	}
+
+	@Override
+	public Result<String> getUserName() {
+		return Result.fromOpt(sessionManager.getData())
+			.flatMapEmpty(e -> Result.failure("Not Logged In"))
+			.map(SessionData::getUserName);
+	}
+
+	private BenchValue value(int id) {
+		return new BenchValue(id, "Value " + id, "Description for value " + id + " at level " + level);
+	}
+}
@@ -0,0 +1,47 @@
+package com.persistentbit.substema.benchmarks;
+
+/**
+ * Generates large substema source files for the compiler benchmarks.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public final class BenchSubstemas{
+
+	private BenchSubstemas() {
+	}
+
+	/**
+	 * Generate a substema with enums, case classes and remote classes.
+	 *
+	 * @param definitions The number of definitions of each kind
+	 *
+	 * @return The source code
+	 */
+	public static String generate(int definitions) {
+		StringBuilder res = new StringBuilder(definitions * 600);
+		res.append("/*\n    Generated substema for the benchmarks.\n*/\n\n");
+		for(int t = 0; t < definitions; t++) {
+			res.append("<<Enum number ").append(t).append(">>\n");
+			res.append("enum Kind").append(t).append("{ first, second, third; }\n\n");
+
+			res.append("/* A value class\n   with a multi line comment */\n");
+			res.append("case class Value").append(t).append("{\n");
+			res.append("    id: Long;\n");
+			res.append("    name: String = \"value ").append(t).append("\";\n");
+			res.append("    amount: Double = 12.5;\n");
+			res.append("    kind: Kind").append(t).append(" = Kind").append(t).append(".second;\n");
+			res.append("    tags: List<String> = [\"a\",\"b\",\"c\"];\n");
+			res.append("    lookup: Map<String,List<Integer>>;\n");
+			res.append("    parent: ?Value").append(t).append(";\n");
+			res.append("}\n\n");
+
+			res.append("remote class Service").append(t).append("{\n");
+			res.append("    getValue(id: Long): ?Value").append(t).append(";\n");
+			res.append("    allValues(): List<Value").append(t).append("> cached;\n");
+			res.append("    save(value: Value").append(t).append(", overwrite: Boolean): OK;\n");
+			res.append("}\n\n");
+		}
+		return res.toString();
+	}
+}
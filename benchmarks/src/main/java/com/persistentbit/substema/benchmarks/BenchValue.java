@@ -0,0 +1,34 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.utils.BaseValueClass;
+
+/**
+ * Value class returned by the {@link BenchService}.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class BenchValue extends BaseValueClass{
+
+	private final int    id;
+	private final String name;
+	private final String description;
+
+	public BenchValue(int id, String name, String description) {
+		this.id = id;
+		this.name = name;
+		this.description = description;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+}
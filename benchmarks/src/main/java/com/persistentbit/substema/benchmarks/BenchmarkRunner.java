@@ -0,0 +1,28 @@
+package com.persistentbit.substema.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler, so allocation rates are reported next to the timings.<br>
+ * Usage: {@code java -jar target/benchmarks.jar [benchmark regex]}<br>
+ * Disable logging of the remote calls with {@code -Dsubstema.logging=off} for the numbers
+ * without logging overhead.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public final class BenchmarkRunner{
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*";
+		Options options = new OptionsBuilder()
+			.include(include)
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
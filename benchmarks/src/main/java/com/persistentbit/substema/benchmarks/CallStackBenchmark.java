@@ -0,0 +1,53 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.jjson.mapping.JJMapper;
+import com.persistentbit.substema.MethodDefinition;
+import com.persistentbit.substema.RCallStack;
+import com.persistentbit.substema.RMethodCall;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks signing and verifying {@link RCallStack} instances of different depths.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallStackBenchmark{
+
+	@Param({"1", "4", "16"})
+	public int depth;
+
+	private final JJMapper    mapper = new JJMapper();
+	private PList<RMethodCall> calls;
+	private RCallStack         signed;
+
+	@Setup
+	public void setup() throws Exception {
+		MethodDefinition getChild =
+			new MethodDefinition(BenchService.class, BenchService.class.getMethod("getChild", int.class));
+		calls = PList.empty();
+		for(int t = 0; t < depth; t++) {
+			calls = calls.plus(new RMethodCall(getChild, new Object[]{t}));
+		}
+		signed = RCallStack.createAndSign(calls, mapper, BenchServers.secret);
+	}
+
+	@Benchmark
+	public RCallStack createAndSign() {
+		return RCallStack.createAndSign(calls, mapper, BenchServers.secret);
+	}
+
+	@Benchmark
+	public boolean verifySignature() {
+		return signed.verifySignature(BenchServers.secret, mapper);
+	}
+}
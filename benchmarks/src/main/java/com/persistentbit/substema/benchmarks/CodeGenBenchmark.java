@@ -0,0 +1,61 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.substema.compiler.SubstemaCompiler;
+import com.persistentbit.substema.compiler.values.RSubstema;
+import com.persistentbit.substema.dependencies.DependencySupplier;
+import com.persistentbit.substema.javagen.GeneratedJava;
+import com.persistentbit.substema.javagen.JavaGenOptions;
+import com.persistentbit.substema.javagen.SubstemaJavaGen;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures java generation for a large generated substema with a sequential
+ * and a parallel fork-join pool.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeGenBenchmark{
+
+	private static final String packageName = "com.persistentbit.substema.bench";
+
+	@Param({"1", "4", "8"})
+	public int parallelism;
+
+	private SubstemaCompiler compiler;
+	private RSubstema        substema;
+	private JavaGenOptions   options;
+	private ForkJoinPool     pool;
+
+	@Setup
+	public void setup() {
+		compiler = new SubstemaCompiler(
+			new DependencySupplier().withSource(packageName, BenchSubstemas.generate(300))
+		);
+		substema = compiler.compile(packageName).orElseThrow();
+		options = new JavaGenOptions(true, true);
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+		compiler.close();
+	}
+
+	@Benchmark
+	public PList<Result<GeneratedJava>> generate() {
+		return SubstemaJavaGen.generate(compiler, options, substema, pool);
+	}
+}
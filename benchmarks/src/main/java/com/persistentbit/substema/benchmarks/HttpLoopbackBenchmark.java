@@ -0,0 +1,58 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.substema.RProxy;
+import com.persistentbit.substema.RemoteServiceHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks calls through a {@link RemoteServiceHttpClient} to a http server on the loopback interface.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpLoopbackBenchmark{
+
+	private HttpServer      httpServer;
+	private ExecutorService httpExecutor;
+	private BenchService    root;
+
+	@Setup
+	public void setup() throws Exception {
+		httpExecutor = Executors.newFixedThreadPool(4);
+		httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		httpServer.createContext("/bench", new BenchHttpHandler(BenchServers.createRServer()));
+		httpServer.setExecutor(httpExecutor);
+		httpServer.start();
+		root = RProxy.create(new RemoteServiceHttpClient(
+			"http://127.0.0.1:" + httpServer.getAddress().getPort() + "/bench"
+		));
+	}
+
+	@TearDown
+	public void tearDown() {
+		httpServer.stop(0);
+		httpExecutor.shutdown();
+	}
+
+	@Benchmark
+	public BenchValue httpCall() {
+		return root.getValue(1).orElseThrow();
+	}
+
+	@Benchmark
+	public int httpCallList() {
+		return root.getValues(100).orElseThrow().size();
+	}
+}
@@ -0,0 +1,43 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.core.tokenizer.Token;
+import com.persistentbit.substema.compiler.SubstemaParser;
+import com.persistentbit.substema.compiler.SubstemaTokenType;
+import com.persistentbit.substema.compiler.SubstemaTokenizer;
+import com.persistentbit.substema.compiler.values.RSubstema;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link SubstemaParser} on already tokenized, generated substema sources
+ * with thousands of definitions.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark{
+
+	@Param({"100", "1000", "3000"})
+	public int definitions;
+
+	private PList<Result<Token<SubstemaTokenType>>> tokens;
+
+	@Setup
+	public void setup() {
+		tokens = new SubstemaTokenizer().tokenize("bench", BenchSubstemas.generate(definitions)).plist();
+	}
+
+	@Benchmark
+	public RSubstema parse() {
+		return new SubstemaParser("com.persistentbit.substema.bench", tokens).parseSubstema();
+	}
+}
@@ -0,0 +1,66 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.substema.RProxy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link RProxy} calls on a {@link com.persistentbit.substema.RServer},
+ * directly in-process or with a json round trip through a {@link com.persistentbit.substema.JSonRemoteService}.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoteCallBenchmark{
+
+	@Param({"rserver", "json"})
+	public String transport;
+
+	private BenchService root;
+	private BenchService child;
+	private BenchService loggedIn;
+
+	@Setup
+	public void setup() {
+		root = RProxy.create(BenchServers.create(transport));
+		child = root.getChild(1).orElseThrow();
+		loggedIn = RProxy.create(BenchServers.create(transport));
+		loggedIn.login("bench").orElseThrow();
+	}
+
+	@Benchmark
+	public BenchValue rootCall() {
+		return root.getValue(1).orElseThrow();
+	}
+
+	@Benchmark
+	public PList<BenchValue> rootCallList() {
+		return root.getValues(100).orElseThrow();
+	}
+
+	@Benchmark
+	public BenchValue childCall() {
+		return child.getValue(1).orElseThrow();
+	}
+
+	@Benchmark
+	public BenchService remoteObjectCall() {
+		return root.getChild(1).orElseThrow();
+	}
+
+	/**
+	 * A call with session data: the session is decoded and encoded again on every call.
+	 */
+	@Benchmark
+	public String sessionCall() {
+		return loggedIn.getUserName().orElseThrow();
+	}
+}
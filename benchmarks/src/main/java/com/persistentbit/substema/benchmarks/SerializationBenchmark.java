@@ -0,0 +1,59 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.jjson.mapping.JJMapper;
+import com.persistentbit.jjson.nodes.JJParser;
+import com.persistentbit.jjson.nodes.JJPrinter;
+import com.persistentbit.substema.RCallResult;
+import com.persistentbit.substema.RemoteObjectDefinition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the json serialization of {@link RemoteObjectDefinition} and {@link RCallResult} instances.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark{
+
+	private final JJMapper         mapper = new JJMapper();
+	private RCallResult            rootResult;
+	private RemoteObjectDefinition rod;
+	private String                 rodJson;
+	private String                 rootResultJson;
+
+	@Setup
+	public void setup() {
+		rootResult = BenchServers.createRServer().getRoot().orElseThrow();
+		rod = rootResult.getRod().get().orElseThrow();
+		rodJson = JJPrinter.print(false, mapper.write(rod));
+		rootResultJson = JJPrinter.print(false, mapper.write(rootResult));
+	}
+
+	@Benchmark
+	public String writeRod() {
+		return JJPrinter.print(false, mapper.write(rod));
+	}
+
+	@Benchmark
+	public RemoteObjectDefinition readRod() {
+		return mapper.read(JJParser.parse(rodJson).orElseThrow(), RemoteObjectDefinition.class);
+	}
+
+	@Benchmark
+	public String writeCallResult() {
+		return JJPrinter.print(false, mapper.write(rootResult));
+	}
+
+	@Benchmark
+	public RCallResult readCallResult() {
+		return mapper.read(JJParser.parse(rootResultJson).orElseThrow(), RCallResult.class);
+	}
+}
@@ -0,0 +1,60 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.core.tokenizer.Token;
+import com.persistentbit.substema.compiler.SubstemaTokenType;
+import com.persistentbit.substema.compiler.SubstemaTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single pass {@link SubstemaTokenizer} with the original
+ * regular expression tokenizer ({@link RegexSubstemaTokenizer}) on generated substema sources.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark{
+
+	@Param({"10", "100", "1000"})
+	public int definitions;
+
+	private String                 source;
+	private SubstemaTokenizer      scanner;
+	private RegexSubstemaTokenizer regex;
+
+	@Setup
+	public void setup() {
+		source = BenchSubstemas.generate(definitions);
+		scanner = new SubstemaTokenizer();
+		regex = new RegexSubstemaTokenizer();
+		//Both tokenizers must produce the same tokens
+		PList<String> scanned = describe(scanner.tokenize("bench", source).plist());
+		PList<String> matched = describe(regex.tokenize("bench", source).plist());
+		if(scanned.equals(matched) == false) {
+			throw new IllegalStateException("Tokenizers produce different tokens");
+		}
+	}
+
+	private static PList<String> describe(PList<Result<Token<SubstemaTokenType>>> tokens) {
+		return tokens.map(r -> r.map(t -> t.type + " " + t.text).orElse("failure")).plist();
+	}
+
+	@Benchmark
+	public PList<Result<Token<SubstemaTokenType>>> scanner() {
+		return scanner.tokenize("bench", source).plist();
+	}
+
+	@Benchmark
+	public PList<Result<Token<SubstemaTokenType>>> regex() {
+		return regex.tokenize("bench", source).plist();
+	}
+}
@@ -0,0 +1,84 @@
+package com.persistentbit.substema.benchmarks;
+
+import com.persistentbit.core.ModuleCore;
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.logging.printing.LogPrintStream;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.core.testing.TestCase;
+import com.persistentbit.core.testing.TestRunner;
+import com.persistentbit.core.tokenizer.Token;
+import com.persistentbit.substema.compiler.SubstemaTokenType;
+import com.persistentbit.substema.compiler.SubstemaTokenizer;
+import com.persistentbit.substema.dependencies.DependencySupplier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Check that the single pass {@link SubstemaTokenizer} produces the same tokens as the original
+ * {@link RegexSubstemaTokenizer} for all the substema sources of the project.<br>
+ * The project folder is the parent of the benchmarks module or the {@code substema.project} system property.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class TokenizerParityTest{
+
+	private static final File project = new File(System.getProperty("substema.project", ".."));
+
+	static final TestCase projectSources = TestCase.name("Same tokens for the project substema sources").code(tr -> {
+		PList<File> sources = substemaFiles(new File(project, "src/main/resources"))
+			.plusAll(substemaFiles(new File(project, "src/test/resources")));
+		tr.isTrue(sources.size() >= 6, "Expected the substema sources of the project in " + project.getAbsolutePath());
+		for(File source : sources) {
+			String name = source.getName();
+			String code = read(source);
+			tr.isEquals(
+				describe(new SubstemaTokenizer().tokenize(name, code).plist()),
+				describe(new RegexSubstemaTokenizer().tokenize(name, code).plist())
+			);
+		}
+	});
+
+	static final TestCase generatedSources = TestCase.name("Same tokens for the benchmark sources").code(tr -> {
+		String code = BenchSubstemas.generate(100);
+		tr.isEquals(
+			describe(new SubstemaTokenizer().tokenize("bench", code).plist()),
+			describe(new RegexSubstemaTokenizer().tokenize("bench", code).plist())
+		);
+	});
+
+	/**
+	 * Type, text and position of the tokens
+	 */
+	private static PList<String> describe(PList<Result<Token<SubstemaTokenType>>> tokens) {
+		return tokens.map(r -> r.map(t -> t.type + " '" + t.text + "' " + t.pos).orElse("failure")).plist();
+	}
+
+	private static PList<File> substemaFiles(File folder) {
+		File[] files = folder.listFiles((dir, name) -> name.endsWith(DependencySupplier.substemaDefFileExtension));
+		if(files == null) {
+			return PList.empty();
+		}
+		return PList.val(files).sorted((a, b) -> a.getName().compareTo(b.getName())).plist();
+	}
+
+	private static String read(File file) {
+		try {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void testAll() {
+		TestRunner.runAndPrint(LogPrintStream.sysOut(ModuleCore.createLogFormatter(true)), TokenizerParityTest.class);
+	}
+
+	public static void main(String[] args) {
+		new TokenizerParityTest().testAll();
+	}
+}
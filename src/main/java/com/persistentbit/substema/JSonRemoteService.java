@@ -5,6 +5,7 @@ import com.persistentbit.jjson.mapping.JJMapper;
 import com.persistentbit.jjson.nodes.JJNode;
 
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
@@ -31,21 +32,29 @@ public class JSonRemoteService implements RemoteService{
     }
 
     @Override
-    public Result<RCallResult> call(RCall call) {
-        return Result.function(call).code(l -> {
-            JJNode callNode = mapper.write(call);
-            l.info("JSON call: " + callNode.toString());
-            RCall               callFromJson   = mapper.read(callNode, RCall.class);
-            Result<RCallResult> resRCallResult = service.call(callFromJson).completed();
-            return resRCallResult.map(callResult -> {
-                JJNode node = mapper.write(callResult);
-                l.info("CallResult", node);
-                RCallResult fromJson = mapper.read(node, RCallResult.class);
-                return callResult;
-            });
-        });
-
+    public Result<RCallResult> call(RCall undecided) {
+        RCall call = RLogging.decide(undecided);
+        if(RLogging.isLogging(call)) {
+            return Result.function(call).code(l -> doCall(
+                call,
+                callNode -> l.info("JSON call: " + callNode.toString()),
+                resultNode -> l.info("CallResult", resultNode)
+            ));
+        }
+        return RLogging.unlogged(() -> doCall(call, callNode -> {}, resultNode -> {}));
+    }
 
+    private Result<RCallResult> doCall(RCall call, Consumer<JJNode> logCall, Consumer<JJNode> logResult) {
+        JJNode callNode = mapper.write(call);
+        logCall.accept(callNode);
+        RCall               callFromJson   = mapper.read(callNode, RCall.class);
+        Result<RCallResult> resRCallResult = service.call(callFromJson).completed();
+        return resRCallResult.map(callResult -> {
+            JJNode node = mapper.write(callResult);
+            logResult.accept(node);
+            RCallResult fromJson = mapper.read(node, RCallResult.class);
+            return callResult;
+        });
     }
 
     @Override
@@ -0,0 +1,283 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PMap;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Limits the number of calls a {@link RServer} executes at the same time.<br>
+ * A call is executed when there are less than {@link #getLimit()} calls running.
+ * Otherwise the call waits in a bounded queue, and when the queue is full the call is rejected
+ * immediately with a {@link RCallResult#isRejected() rejected} result instead of adding more latency
+ * for every other call.<br>
+ * Methods can have their own limit for the number of queued and running calls,
+ * so one slow method can't take all the capacity of the server.<br>
+ * With {@link #withAdaptiveLimit(int, int, long, TimeUnit)}, the limit follows the observed execution time (AIMD):
+ * the limit increases by one for every limit calls faster than the latency target
+ * and is decreased by 10% for every call slower than the target.<br>
+ * The settings are copied with the withXXX methods, the state (running and queued calls) is not.
+ * Usage:<br>
+ * {@code
+ * RServer server = new RServer(...).withAdmissionControl(
+ *      RAdmissionControl.create(32, 100).withMethodLimit(ReportService.class, "createReport", 4)
+ * );
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RRejectedException
+ */
+public final class RAdmissionControl{
+
+	/**
+	 * Admission control that executes all calls directly on the executor.
+	 */
+	public static final RAdmissionControl none =
+		new RAdmissionControl(Integer.MAX_VALUE, 0, PMap.empty(), null);
+
+	private final int                   maxConcurrent;
+	private final int                   maxQueued;
+	private final PMap<String, Integer> methodLimits;
+	private final Aimd                  adaptive;
+
+	private final Object               lock           = new Object();
+	private final ArrayDeque<Runnable> queue          = new ArrayDeque<>();
+	private final Map<String, Integer> methodInFlight = new HashMap<>();
+	private       double               limit;
+	private       int                  running;
+	private       long                 rejected;
+
+	private RAdmissionControl(int maxConcurrent, int maxQueued, PMap<String, Integer> methodLimits, Aimd adaptive) {
+		if(maxConcurrent < 1 || maxQueued < 0) {
+			throw new IllegalArgumentException("maxConcurrent must be > 0 and maxQueued >= 0");
+		}
+		this.maxConcurrent = maxConcurrent;
+		this.maxQueued = maxQueued;
+		this.methodLimits = Objects.requireNonNull(methodLimits);
+		this.adaptive = adaptive;
+		this.limit = maxConcurrent;
+	}
+
+	/**
+	 * Create an admission control with a fixed limit.
+	 *
+	 * @param maxConcurrent The maximum number of calls executing at the same time
+	 * @param maxQueued     The maximum number of calls waiting for execution
+	 *
+	 * @return The admission control
+	 */
+	public static RAdmissionControl create(int maxConcurrent, int maxQueued) {
+		return new RAdmissionControl(maxConcurrent, maxQueued, PMap.empty(), null);
+	}
+
+	/**
+	 * Limit the number of queued and running calls for a method.<br>
+	 * Calls above the limit are rejected.
+	 *
+	 * @param remotableClass The remotable interface
+	 * @param methodName     The name of the method in the interface
+	 * @param limit          The maximum number of calls to this method in the server
+	 *
+	 * @return A new admission control
+	 */
+	public RAdmissionControl withMethodLimit(Class<?> remotableClass, String methodName, int limit) {
+		return new RAdmissionControl(
+			maxConcurrent, maxQueued, methodLimits.put(key(remotableClass, methodName), limit), adaptive
+		);
+	}
+
+	/**
+	 * Adapt the concurrency limit to the observed execution time of the calls.<br>
+	 * The limit starts at the maxConcurrent value of this admission control.
+	 *
+	 * @param minLimit      The lowest limit
+	 * @param maxLimit      The highest limit
+	 * @param latencyTarget Execution time above which the limit is decreased
+	 * @param timeUnit      Time unit of the latency target
+	 *
+	 * @return A new admission control
+	 */
+	public RAdmissionControl withAdaptiveLimit(int minLimit, int maxLimit, long latencyTarget, TimeUnit timeUnit) {
+		if(minLimit < 1 || maxLimit < minLimit) {
+			throw new IllegalArgumentException("Expected 0 < minLimit <= maxLimit");
+		}
+		return new RAdmissionControl(
+			Math.max(minLimit, Math.min(maxLimit, maxConcurrent)), maxQueued, methodLimits,
+			new Aimd(minLimit, maxLimit, timeUnit.toNanos(latencyTarget))
+		);
+	}
+
+	/**
+	 * Submit a call for execution on an executor.<br>
+	 * Exactly one of task or reject is executed: task when the call is admitted,
+	 * reject with the reason when the call is rejected by this admission control or by the executor.
+	 *
+	 * @param md       The method that is called or null for a call to get the root object
+	 * @param executor The executor for the task
+	 * @param task     The call execution
+	 * @param reject   Called with the reason when the call is rejected
+	 */
+	void submit(MethodDefinition md, Executor executor, Runnable task, Consumer<String> reject) {
+		if(this == none) {
+			try {
+				executor.execute(task);
+			} catch(RejectedExecutionException e) {
+				reject.accept("Call rejected by the executor");
+			}
+			return;
+		}
+		String   methodKey = md == null ? null : key(md.getRemotableClass(), md.getMethodName());
+		Runnable dispatch  = () -> {
+			try {
+				executor.execute(() -> run(methodKey, task));
+			} catch(RejectedExecutionException e) {
+				release(methodKey, 0, false);
+				reject.accept("Call rejected by the executor");
+			}
+		};
+		String  rejectReason = null;
+		boolean runNow       = false;
+		synchronized(lock) {
+			Integer methodLimit = methodKey == null ? null : methodLimits.getOpt(methodKey).orElse(null);
+			if(methodLimit != null && methodInFlight.getOrDefault(methodKey, 0) >= methodLimit) {
+				rejectReason = "Call rejected: too many calls to " + methodKey;
+			}
+			else if(running < (int) limit) {
+				running++;
+				runNow = true;
+			}
+			else if(queue.size() < maxQueued) {
+				queue.add(dispatch);
+			}
+			else {
+				rejectReason = "Call rejected: server overloaded";
+			}
+			if(rejectReason != null) {
+				rejected++;
+			}
+			else if(methodKey != null) {
+				methodInFlight.merge(methodKey, 1, Integer::sum);
+			}
+		}
+		if(rejectReason != null) {
+			reject.accept(rejectReason);
+		}
+		else if(runNow) {
+			dispatch.run();
+		}
+	}
+
+	private void run(String methodKey, Runnable task) {
+		long start = System.nanoTime();
+		try {
+			task.run();
+		} finally {
+			release(methodKey, System.nanoTime() - start, true);
+		}
+	}
+
+	/**
+	 * Release a running call and dispatch the queued calls that can run now.
+	 *
+	 * @param methodKey The method key of the call or null
+	 * @param duration  The execution time in nanoseconds
+	 * @param executed  false when the call was not executed
+	 */
+	private void release(String methodKey, long duration, boolean executed) {
+		synchronized(lock) {
+			if(methodKey != null) {
+				methodInFlight.computeIfPresent(methodKey, (k, v) -> v <= 1 ? null : v - 1);
+			}
+			running--;
+			if(executed && adaptive != null) {
+				limit = adaptive.update(limit, duration);
+			}
+		}
+		while(true) {
+			Runnable next;
+			synchronized(lock) {
+				if(queue.isEmpty() || running >= (int) limit) {
+					return;
+				}
+				next = queue.poll();
+				running++;
+			}
+			next.run();
+		}
+	}
+
+	/**
+	 * @return The current concurrency limit
+	 */
+	public int getLimit() {
+		synchronized(lock) {
+			return (int) limit;
+		}
+	}
+
+	/**
+	 * @return The number of calls executing now
+	 */
+	public int getRunning() {
+		synchronized(lock) {
+			return running;
+		}
+	}
+
+	/**
+	 * @return The number of calls waiting for execution
+	 */
+	public int getQueued() {
+		synchronized(lock) {
+			return queue.size();
+		}
+	}
+
+	/**
+	 * @return The number of rejected calls since the creation of this admission control
+	 */
+	public long getRejected() {
+		synchronized(lock) {
+			return rejected;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RAdmissionControl[limit=" + getLimit() + ", maxQueued=" + maxQueued + "]";
+	}
+
+	private static String key(Class<?> remotableClass, String methodName) {
+		return remotableClass.getName() + "#" + methodName;
+	}
+
+	/**
+	 * Additive increase, multiplicative decrease of the limit.
+	 */
+	private static final class Aimd{
+
+		private final int  minLimit;
+		private final int  maxLimit;
+		private final long latencyTarget;
+
+		Aimd(int minLimit, int maxLimit, long latencyTarget) {
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+			this.latencyTarget = latencyTarget;
+		}
+
+		double update(double limit, long duration) {
+			if(duration > latencyTarget) {
+				return Math.max(minLimit, limit * 0.9);
+			}
+			return Math.min(maxLimit, limit + 1.0 / limit);
+		}
+	}
+}
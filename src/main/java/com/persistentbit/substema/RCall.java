@@ -1,8 +1,12 @@
 package com.persistentbit.substema;
 
 import com.persistentbit.core.Immutable;
+import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.util.Objects;
+import java.util.Optional;
+
 /**
  * @author Peter Muys
  * @since 30/08/2016
@@ -12,11 +16,28 @@ public class RCall extends BaseValueClass{
     private final RSessionData  sessionData;
     private final RCallStack  callStack;
     private final RMethodCall   thisCall;
+    private final PMap<String,String> headers;
+    private final RStreamPull   streamPull;
+    private final Long          deadline;
+    private final String        idempotencyKey;
 
-    public RCall(RSessionData sessionData,RCallStack callStack, RMethodCall thisCall) {
+    /**
+     * @param sessionData The signed session data or null
+     * @param callStack   The signed call stack or null for the root call
+     * @param thisCall    The method to call or null for the root call
+     * @param headers     Metadata for the call, like the tracing ids (see {@link RTracing})
+     */
+    public RCall(RSessionData sessionData,RCallStack callStack, RMethodCall thisCall,PMap<String,String> headers) {
         this.sessionData = sessionData;
         this.callStack = callStack;
         this.thisCall = thisCall;
+        this.headers = Objects.requireNonNull(headers);
+        this.streamPull = null;
+        this.deadline = null;
+        this.idempotencyKey = null;
+    }
+    public RCall(RSessionData sessionData,RCallStack callStack, RMethodCall thisCall) {
+        this(sessionData,callStack,thisCall,PMap.empty());
     }
     public RCall(RSessionData sessionData,RCallStack callStack) {
         this(sessionData,callStack,null);
@@ -33,4 +54,60 @@ public class RCall extends BaseValueClass{
     public RSessionData getSessionData() {
         return sessionData;
     }
+
+    public PMap<String, String> getHeaders() {
+        //headers can be null when deserialized from an older client
+        return headers == null ? PMap.empty() : headers;
+    }
+
+    public RCall withHeaders(PMap<String,String> headers){
+        return copyWith("headers",headers);
+    }
+
+    /**
+     * A call that pulls the next chunk of a {@link RStream} instead of calling a method.
+     * @return The pull request or null for a method call.
+     */
+    public RStreamPull getStreamPull() {
+        return streamPull;
+    }
+
+    public RCall withStreamPull(RStreamPull streamPull){
+        return copyWith("streamPull",streamPull);
+    }
+
+    /**
+     * The time after which the client no longer waits for the result of this call.<br>
+     * The deadline is in epoch milliseconds, so the clocks of the client and the server must be synchronized.
+     * @return The deadline or empty for no deadline.
+     * @see RTimeouts
+     */
+    public Optional<Long> getDeadline() {
+        return Optional.ofNullable(deadline);
+    }
+
+    public RCall withDeadline(Long deadline){
+        return copyWith("deadline",deadline);
+    }
+
+    /**
+     * A unique key for all the attempts of the same call.<br>
+     * A {@link RServer} with an idempotency cache executes the call only once for a key.
+     * @return The key or empty when the call is not retried.
+     * @see RemoteServiceRetry
+     */
+    public Optional<String> getIdempotencyKey() {
+        return Optional.ofNullable(idempotencyKey);
+    }
+
+    public RCall withIdempotencyKey(String idempotencyKey){
+        return copyWith("idempotencyKey",idempotencyKey);
+    }
+
+    /**
+     * @return true when this call has a deadline that has passed.
+     */
+    public boolean isExpired() {
+        return deadline != null && System.currentTimeMillis() > deadline;
+    }
 }
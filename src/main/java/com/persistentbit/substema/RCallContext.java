@@ -0,0 +1,118 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PMap;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Holds the headers and the deadline of the remote call that is executing on the current thread.<br>
+ * {@link RServer} sets the context while executing a call, {@link RProxy} adds the
+ * context headers and deadline to every outgoing call, so that metadata like tracing ids
+ * and the deadline are propagated to nested remote calls.<br>
+ * Note that lazy results that are evaluated after the call has returned don't see the context.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RTracing
+ */
+public final class RCallContext{
+
+	private static final class Context{
+
+		private final PMap<String, String> headers;
+		private final Long                 deadline;
+
+		Context(PMap<String, String> headers, Long deadline) {
+			this.headers = Objects.requireNonNull(headers);
+			this.deadline = deadline;
+		}
+	}
+
+	private static final ThreadLocal<Context> current =
+		ThreadLocal.withInitial(() -> new Context(PMap.empty(), null));
+
+	private RCallContext() {
+	}
+
+	/**
+	 * Get the headers of the call executing on this thread.
+	 *
+	 * @return The headers, empty if there is no remote call executing.
+	 */
+	public static PMap<String, String> getHeaders() {
+		return current.get().headers;
+	}
+
+	/**
+	 * Get the deadline of the call executing on this thread.
+	 *
+	 * @return The deadline in epoch milliseconds, empty if there is no deadline.
+	 * @see RCall#getDeadline()
+	 */
+	public static Optional<Long> getDeadline() {
+		return Optional.ofNullable(current.get().deadline);
+	}
+
+	/**
+	 * Check if the deadline of the call executing on this thread has passed.<br>
+	 * Long running implementations can use this to stop work for a client that has given up.
+	 *
+	 * @return true when there is a deadline and it has passed.
+	 */
+	public static boolean isExpired() {
+		Long deadline = current.get().deadline;
+		return deadline != null && System.currentTimeMillis() > deadline;
+	}
+
+	/**
+	 * Execute code with the given headers as call context.<br>
+	 * The deadline of the current context is kept. The previous context is restored afterwards.
+	 *
+	 * @param headers The call headers
+	 * @param code    The code to execute
+	 * @param <T>     The result type
+	 *
+	 * @return The result of the code.
+	 */
+	public static <T> T withHeaders(PMap<String, String> headers, Supplier<T> code) {
+		return with(headers, current.get().deadline, code);
+	}
+
+	/**
+	 * Execute code with a deadline for all the remote calls made by the code.<br>
+	 * An earlier deadline of the current context is kept. The previous context is restored afterwards.
+	 *
+	 * @param deadline The deadline in epoch milliseconds
+	 * @param code     The code to execute
+	 * @param <T>      The result type
+	 *
+	 * @return The result of the code.
+	 */
+	public static <T> T withDeadline(long deadline, Supplier<T> code) {
+		Context context = current.get();
+		return with(context.headers, context.deadline == null ? deadline : Math.min(deadline, context.deadline), code);
+	}
+
+	/**
+	 * Execute code with the given headers and deadline as call context.<br>
+	 * The previous context is restored afterwards.
+	 *
+	 * @param headers  The call headers
+	 * @param deadline The deadline in epoch milliseconds or null for no deadline
+	 * @param code     The code to execute
+	 * @param <T>      The result type
+	 *
+	 * @return The result of the code.
+	 */
+	public static <T> T with(PMap<String, String> headers, Long deadline, Supplier<T> code) {
+		Context previous = current.get();
+		current.set(new Context(headers, deadline));
+		try {
+			return code.get();
+		} finally {
+			current.set(previous);
+		}
+	}
+}
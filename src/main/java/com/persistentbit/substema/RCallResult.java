@@ -1,8 +1,10 @@
 package com.persistentbit.substema;
 
 import com.persistentbit.core.Immutable;
+import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.logging.Log;
 import com.persistentbit.core.result.Result;
+import com.persistentbit.jjson.mapping.JJReader;
 import com.persistentbit.jjson.mapping.impl.JJObjectReader;
 import com.persistentbit.jjson.nodes.JJNode;
 import com.persistentbit.jjson.nodes.JJNodeObject;
@@ -10,27 +12,45 @@ import com.persistentbit.jjson.nodes.JJNodeObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.util.Objects;
 import java.util.Optional;
 
 @Immutable
 public class RCallResult {
 
+    /**
+     * Header with the reason of a call that was rejected by the {@link RAdmissionControl} of the server.
+     */
+    public static final String rejectedHeader = "rejected";
+
     private final MethodDefinition               theCall;
     private final RSessionData                   sessionData;
     private final Result                         result;
     private final Result<RemoteObjectDefinition> rod;
+    private final PMap<String, String>           headers;
 
 
     public RCallResult(
         MethodDefinition theCall,
         RSessionData sessionData,
         Result result,
-        Result<RemoteObjectDefinition> rod
+        Result<RemoteObjectDefinition> rod,
+        PMap<String, String> headers
     ) {
         this.theCall = theCall;
         this.sessionData = sessionData;
         this.result = result;
         this.rod = rod;
+        this.headers = Objects.requireNonNull(headers);
+    }
+
+    public RCallResult(
+        MethodDefinition theCall,
+        RSessionData sessionData,
+        Result result,
+        Result<RemoteObjectDefinition> rod
+    ) {
+        this(theCall, sessionData, result, rod, PMap.empty());
     }
 
 
@@ -48,6 +68,36 @@ public class RCallResult {
         return new RCallResult(call, sessionData, value, null);
     }
 
+    /**
+     * Create the result for a call that was not executed because the server is overloaded.<br>
+     * The session data of the call is returned unchanged.
+     *
+     * @param call        The method that was called or null for a call to get the root object
+     * @param sessionData The session data of the call
+     * @param reason      The reason for the rejection
+     *
+     * @return The rejected call result
+     */
+    static public RCallResult forRejected(MethodDefinition call, RSessionData sessionData, String reason) {
+        return forFailure(call, sessionData, new RRejectedException(reason))
+            .withHeaders(PMap.<String, String>empty().put(rejectedHeader, reason));
+    }
+
+    /**
+     * Create the result for a call that failed before it was executed.<br>
+     * The session data of the call is returned unchanged.
+     *
+     * @param call        The method that was called or null for a call to get the root object
+     * @param sessionData The session data of the call
+     * @param failure     The failure
+     *
+     * @return The failed call result
+     */
+    static public RCallResult forFailure(MethodDefinition call, RSessionData sessionData, Throwable failure) {
+        Result result = Result.failure(failure);
+        return new RCallResult(call, sessionData, call == null ? null : result, call == null ? result : null);
+    }
+
 
     @Override
     public String toString() {
@@ -56,6 +106,7 @@ public class RCallResult {
             ", sessionData=" + sessionData +
             ", result=" + result +
             ", rod=" + rod +
+            ", headers=" + headers +
             '}';
     }
 
@@ -75,30 +126,66 @@ public class RCallResult {
         return Optional.ofNullable(sessionData);
     }
 
-    public static final JJObjectReader jsonReader = (type, node, masterReader) ->
-        Log.function().code(l -> {
-                                JJNodeObject     obj         = node.asObject().orElseThrow();
-                                MethodDefinition md          = masterReader.read(obj.get("theCall").get(), MethodDefinition.class);
-                                RSessionData     sessionData = masterReader.read(obj.get("sessionData").get(), RSessionData.class);
-                                JJNode           valueNode   = obj.get("result").get();
-                                Result           value       = null;
-                                if(valueNode.asNull().isPresent() == false) {
-                                    Method   m             = RemotableMethods.getRemotableMethod(md);
-                                    Class<?> returnType    = m.getReturnType();
-                                    Type     genReturnType = m.getGenericReturnType();
-                                    value = (Result) masterReader.read(valueNode, returnType, genReturnType);
-                                }
-                                Result<RemoteObjectDefinition> rod     = null;
-                                JJNode                         rodNode = obj.get("rod").get();
-                                if(rodNode.asNull().isPresent() == false) {
-                                    Field    f             = RCallResult.class.getDeclaredField("rod");
-                                    Class<?> clsRodResult  = f.getType();
-                                    Type     typeRodResult = f.getGenericType();
-                                    rod = (Result<RemoteObjectDefinition>) masterReader.read(rodNode, clsRodResult, typeRodResult);
-                                }
-                                return new RCallResult(md, sessionData, value, rod);
-                            }
-        );
+    /**
+     * Metadata returned by the server, like the server tracing span id.
+     *
+     * @return The headers map, never null.
+     * @see RTracing
+     */
+    public PMap<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Is this the result of a call that was rejected by the server before it was executed ?
+     *
+     * @return true when the client can back off and retry the call later.
+     * @see RRejectedException
+     */
+    public boolean isRejected() {
+        return headers.containsKey(rejectedHeader);
+    }
+
+    public RCallResult withHeaders(PMap<String, String> headers) {
+        return new RCallResult(theCall, sessionData, result, rod, headers);
+    }
+
+    public static final JJObjectReader jsonReader = (type, node, masterReader) -> {
+        if(RLogging.isLoggingAll()) {
+            return Log.function().code(l -> readJson(node, masterReader));
+        }
+        return RLogging.unloggedValue(() -> readJson(node, masterReader));
+    };
+
+    @SuppressWarnings("unchecked")
+    private static RCallResult readJson(JJNode node, JJReader masterReader) throws Exception {
+        JJNodeObject     obj         = node.asObject().orElseThrow();
+        MethodDefinition md          = masterReader.read(obj.get("theCall").get(), MethodDefinition.class);
+        RSessionData     sessionData = masterReader.read(obj.get("sessionData").get(), RSessionData.class);
+        JJNode           valueNode   = obj.get("result").get();
+        Result           value       = null;
+        if(valueNode.asNull().isPresent() == false) {
+            Method   m             = RemotableMethods.getRemotableMethod(md);
+            Class<?> returnType    = m.getReturnType();
+            Type     genReturnType = m.getGenericReturnType();
+            value = (Result) masterReader.read(valueNode, returnType, genReturnType);
+        }
+        Result<RemoteObjectDefinition> rod     = null;
+        JJNode                         rodNode = obj.get("rod").get();
+        if(rodNode.asNull().isPresent() == false) {
+            Field    f             = RCallResult.class.getDeclaredField("rod");
+            Class<?> clsRodResult  = f.getType();
+            Type     typeRodResult = f.getGenericType();
+            rod = (Result<RemoteObjectDefinition>) masterReader.read(rodNode, clsRodResult, typeRodResult);
+        }
+        PMap<String, String> headers     = PMap.empty();
+        JJNode               headersNode = obj.get("headers").orElse(null);
+        if(headersNode != null && headersNode.asNull().isPresent() == false) {
+            Field f = RCallResult.class.getDeclaredField("headers");
+            headers = (PMap<String, String>) masterReader.read(headersNode, f.getType(), f.getGenericType());
+        }
+        return new RCallResult(md, sessionData, value, rod, headers);
+    }
 
 
     /*static public final JJObjectReader jsonReader = (type, node, masterReader) -> {
@@ -40,6 +40,18 @@ public class RCallStack extends BaseValueClass {
         String msg = JJPrinter.print(false,jsonWriter.write(methods))+secret;
         return new RCallStack(JJSigning.sign(msg,"SHA-256").orElseThrow(),methods);
     }
+
+    /**
+     * Create a call stack without a signature, for a {@link RServer#inProcess()} server.<br>
+     * The empty signature never verifies on a server that checks signatures.
+     *
+     * @param methods The calls in the call stack
+     * @return The unsigned call stack
+     */
+    static public RCallStack    createUnsigned(PList<RMethodCall> methods){
+        return new RCallStack("",methods);
+    }
+
     public boolean verifySignature(String secret, JJWriter jsonWriter){
         String         msg    = JJPrinter.print(false, jsonWriter.write(callStack)) + secret;
         Result<String> signed = JJSigning.sign(msg, "SHA-256");
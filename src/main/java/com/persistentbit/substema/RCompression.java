@@ -0,0 +1,305 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compression codec for the payloads of the http and socket transports.<br>
+ * The build-in codecs {@link #gzip} and {@link #deflate} are pure java.
+ * Other codecs can be added with {@link #register(RCompression)}.<br>
+ * A codec has a name, used in the http Accept-Encoding and Content-Encoding headers,
+ * and an id between 1 and 15, used in the socket frame status.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RemoteServiceHttpClient#withCompression(RCompression, int)
+ * @see RemoteServiceSocketClient
+ */
+public abstract class RCompression{
+
+	/**
+	 * Payloads smaller then this number of bytes are not compressed by default.
+	 */
+	public static final int defaultThreshold = 1024;
+
+	/**
+	 * No compression
+	 */
+	public static final RCompression none = new RCompression("identity", 0){
+		@Override
+		public byte[] compress(byte[] data) {
+			return data;
+		}
+
+		@Override
+		protected OutputStream compressStream(OutputStream out) {
+			return out;
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) {
+			return in;
+		}
+	};
+
+	public static final RCompression gzip = new RCompression("gzip", 1){
+		@Override
+		protected OutputStream compressStream(OutputStream out) throws IOException {
+			return new GZIPOutputStream(out);
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) throws IOException {
+			return new GZIPInputStream(in);
+		}
+	};
+
+	public static final RCompression deflate = new RCompression("deflate", 2){
+		@Override
+		protected OutputStream compressStream(OutputStream out) {
+			return new DeflaterOutputStream(out);
+		}
+
+		@Override
+		public InputStream decompress(InputStream in) {
+			return new InflaterInputStream(in);
+		}
+	};
+
+	private static final ConcurrentMap<String, RCompression> byName = new ConcurrentHashMap<>();
+	private static volatile RCompression[]                   byId   = new RCompression[16];
+
+	static {
+		register(gzip);
+		register(deflate);
+	}
+
+	private final String name;
+	private final int    id;
+
+	protected RCompression(String name, int id) {
+		if(id < 0 || id > 15) {
+			throw new IllegalArgumentException("Compression id must be between 0 and 15: " + id);
+		}
+		this.name = name;
+		this.id = id;
+	}
+
+	/**
+	 * Register a codec, so it can be negotiated and decoded.
+	 *
+	 * @param compression The codec
+	 */
+	public static synchronized void register(RCompression compression) {
+		if(compression.id == 0) {
+			throw new IllegalArgumentException("Id 0 is reserved for no compression");
+		}
+		RCompression existing = byId[compression.id];
+		if(existing != null && existing != compression) {
+			throw new IllegalArgumentException("Compression id " + compression.id + " already used by " + existing);
+		}
+		RCompression[] newById = byId.clone();
+		newById[compression.id] = compression;
+		byId = newById;
+		byName.put(compression.name.toLowerCase(), compression);
+	}
+
+	public static Optional<RCompression> forName(String name) {
+		if(name == null || name.trim().isEmpty() || name.trim().equalsIgnoreCase(none.name)) {
+			return Optional.of(none);
+		}
+		return Optional.ofNullable(byName.get(name.trim().toLowerCase()));
+	}
+
+	public static Optional<RCompression> forId(int id) {
+		return id == 0 ? Optional.of(none) : Optional.ofNullable(byId[id & 15]);
+	}
+
+	/**
+	 * @return The value for a http Accept-Encoding header with all registered codecs
+	 */
+	public static String acceptEncoding() {
+		return PList.<String>empty().plusAll(byName.keySet()).toString(", ");
+	}
+
+	/**
+	 * Select the registered codec with the highest quality from a http Accept-Encoding header.<br>
+	 * Codecs with {@code q=0} are refused by the client and never selected.
+	 * With equal quality, the first codec in the header is selected.
+	 *
+	 * @param acceptEncoding The header value, can be null
+	 *
+	 * @return The codec or {@link #none}
+	 */
+	public static RCompression negotiate(String acceptEncoding) {
+		if(acceptEncoding == null) {
+			return none;
+		}
+		RCompression best        = none;
+		double       bestQuality = 0;
+		for(String part : acceptEncoding.split(",")) {
+			String[]     params  = part.split(";");
+			RCompression found   = byName.get(params[0].trim().toLowerCase());
+			double       quality = quality(params);
+			if(found != null && quality > bestQuality) {
+				best = found;
+				bestQuality = quality;
+			}
+		}
+		return best;
+	}
+
+	private static double quality(String[] params) {
+		for(int t = 1; t < params.length; t++) {
+			String param = params[t].trim();
+			if(param.startsWith("q=") || param.startsWith("Q=")) {
+				try {
+					return Double.parseDouble(param.substring(2).trim());
+				} catch(NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Select the codec for data of a given size.
+	 *
+	 * @param data      The data to send
+	 * @param threshold The minimum number of bytes to compress
+	 *
+	 * @return This codec or {@link #none} when the data is smaller then the threshold
+	 */
+	public RCompression select(byte[] data, int threshold) {
+		return data.length >= threshold ? this : none;
+	}
+
+	public byte[] compress(byte[] data) {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+		try(OutputStream out = compressStream(bout)) {
+			out.write(data);
+		} catch(IOException e) {
+			throw new RObjException("Error compressing with " + name, e);
+		}
+		return bout.toByteArray();
+	}
+
+	protected abstract OutputStream compressStream(OutputStream out) throws IOException;
+
+	public abstract InputStream decompress(InputStream in) throws IOException;
+
+	/**
+	 * Decompress data from an untrusted source.
+	 *
+	 * @param data    The compressed data
+	 * @param maxSize The maximum number of decompressed bytes
+	 *
+	 * @return The decompressed data
+	 *
+	 * @throws RObjException On a decompression error or when the decompressed data is larger then maxSize
+	 */
+	public byte[] decompress(byte[] data, int maxSize) {
+		try(InputStream in = decompress(new ByteArrayInputStream(data))) {
+			ByteArrayOutputStream bout   =
+				new ByteArrayOutputStream((int) Math.min(maxSize, Math.max(64L, data.length * 4L)));
+			byte[]                buffer = new byte[8192];
+			int                   n;
+			while((n = in.read(buffer)) != -1) {
+				if(bout.size() + n > maxSize) {
+					throw new RObjException("Decompressed data with " + name + " is larger then " + maxSize + " bytes");
+				}
+				bout.write(buffer, 0, n);
+			}
+			return bout.toByteArray();
+		} catch(IOException e) {
+			throw new RObjException("Error decompressing with " + name, e);
+		}
+	}
+
+	/**
+	 * Decompress a stream from an untrusted source.
+	 *
+	 * @param in      The compressed stream
+	 * @param maxSize The maximum number of decompressed bytes
+	 *
+	 * @return The decompressed stream, that throws an IOException when more then maxSize bytes are read
+	 *
+	 * @throws IOException On a decompression error
+	 */
+	public InputStream decompress(InputStream in, long maxSize) throws IOException {
+		return new BoundedInputStream(decompress(in), maxSize);
+	}
+
+	@Override
+	public String toString() {
+		return "RCompression[" + name + "]";
+	}
+
+	/**
+	 * InputStream that fails when more then a maximum number of bytes are read.
+	 */
+	private final class BoundedInputStream extends FilterInputStream{
+
+		private final long maxSize;
+		private long       count;
+
+		BoundedInputStream(InputStream in, long maxSize) {
+			super(in);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int c = super.read();
+			if(c != -1) {
+				counted(1);
+			}
+			return c;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if(n > 0) {
+				counted(n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			counted(skipped);
+			return skipped;
+		}
+
+		private void counted(long n) throws IOException {
+			count += n;
+			if(count > maxSize) {
+				throw new IOException("Decompressed data with " + name + " is larger then " + maxSize + " bytes");
+			}
+		}
+	}
+}
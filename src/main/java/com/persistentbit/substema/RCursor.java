@@ -0,0 +1,237 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.jjson.mapping.JJReader;
+import com.persistentbit.jjson.mapping.impl.JJObjectReader;
+import com.persistentbit.jjson.nodes.JJNode;
+import com.persistentbit.jjson.nodes.JJNodeObject;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A page of items from a remote collection, with a cursor to the next page.<br>
+ * Use this as result of remote methods instead of offset/limit parameters:<br>
+ * {@code
+ * public Result<RCursor<Order>> getOrders() {
+ * return Result.success(RCursor.of(orderIterator, 500));
+ * }
+ * }
+ * The {@link RServer} keeps the source for the next pages with an idle timeout.
+ * The {@link RProxy} starts fetching the next page in the background as soon as a page is received,
+ * so the next page is usually available when the caller is done with the current one:<br>
+ * {@code
+ * RCursor<Order> page = service.getOrders().orElseThrow();
+ * while(true){
+ * process(page.getItems());
+ * if(page.hasNext() == false) break;
+ * page = page.next().orElseThrow();
+ * }
+ * }
+ * Calling {@link #next()} more than once on the same page returns the same next page.
+ *
+ * @param <T> The item type
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RStream
+ */
+public final class RCursor<T> implements AutoCloseable{
+
+	public static final int defaultPageSize = 100;
+
+	/**
+	 * Fetches the next page of a remote cursor.
+	 */
+	@FunctionalInterface
+	interface Fetcher<T>{
+
+		/**
+		 * @param cursorId The cursor to fetch from
+		 * @param pageSize The maximum number of items, 0 to close the cursor
+		 *
+		 * @return The next page
+		 */
+		Result<RCursor<T>> fetch(String cursorId, int pageSize);
+	}
+
+	private final String                                          cursorId;
+	private final PList<T>                                        items;
+	private final int                                             pageSize;
+	private final transient Iterator<T>                           source;
+	private final transient Fetcher<T>                            fetcher;
+	private final transient Executor                              executor;
+	private final transient CompletableFuture<Result<RCursor<T>>> prefetch;
+	private transient       Result<RCursor<T>>                    nextPage;
+
+	private RCursor(String cursorId, PList<T> items, int pageSize, Iterator<T> source, Fetcher<T> fetcher,
+					Executor executor, CompletableFuture<Result<RCursor<T>>> prefetch
+	) {
+		this.cursorId = cursorId;
+		this.items = Objects.requireNonNull(items);
+		this.pageSize = pageSize;
+		this.source = source;
+		this.fetcher = fetcher;
+		this.executor = executor;
+		this.prefetch = prefetch;
+	}
+
+	/**
+	 * Create a cursor on the implementation side.<br>
+	 * The first page is taken from the source immediately.
+	 *
+	 * @param source   The source of the items
+	 * @param pageSize The number of items in a page
+	 * @param <T>      The item type
+	 *
+	 * @return The cursor with the first page
+	 */
+	public static <T> RCursor<T> of(Iterator<T> source, int pageSize) {
+		if(pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be > 0");
+		}
+		PList<T> items = RStreamRegistry.take(source, pageSize);
+		return new RCursor<>(null, items, pageSize, source.hasNext() ? source : null, null, null, null);
+	}
+
+	public static <T> RCursor<T> of(Iterable<T> source, int pageSize) {
+		return of(source.iterator(), pageSize);
+	}
+
+	public static <T> RCursor<T> of(Iterable<T> source) {
+		return of(source.iterator(), defaultPageSize);
+	}
+
+	/**
+	 * Create a page as sent to the client
+	 */
+	static <T> RCursor<T> page(String cursorId, PList<T> items, int pageSize) {
+		return new RCursor<>(cursorId, items, pageSize, null, null, null, null);
+	}
+
+	/**
+	 * Connect a received page with the server and start fetching the next page.<br>
+	 * Only one page is fetched ahead: the page after that is fetched when {@link #next()} is called.<br>
+	 * The fetch blocks on network I/O, so the executor must be dedicated to fetching pages
+	 * and can't be the common fork join pool.
+	 */
+	RCursor<T> withFetcher(Fetcher<T> fetcher, Executor executor) {
+		Objects.requireNonNull(fetcher);
+		if(Objects.requireNonNull(executor) == ForkJoinPool.commonPool()) {
+			throw new IllegalArgumentException("Fetching pages blocks: use a dedicated executor");
+		}
+		CompletableFuture<Result<RCursor<T>>> next = null;
+		if(cursorId != null) {
+			next = CompletableFuture.supplyAsync(() -> fetcher.fetch(cursorId, pageSize), executor);
+		}
+		return new RCursor<>(cursorId, items, pageSize, source, fetcher, executor, next);
+	}
+
+	Iterator<T> getSource() {
+		return source;
+	}
+
+	String getCursorId() {
+		return cursorId;
+	}
+
+	int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * @return The items in this page
+	 */
+	public PList<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * @return true if there is a next page
+	 */
+	public boolean hasNext() {
+		return cursorId != null || source != null;
+	}
+
+	/**
+	 * Get the next page.<br>
+	 * The next page is only taken or fetched once: calling this again returns the same page.
+	 *
+	 * @return The next page or an empty result if this is the last page
+	 */
+	public synchronized Result<RCursor<T>> next() {
+		if(nextPage == null) {
+			nextPage = takeNext();
+		}
+		return nextPage;
+	}
+
+	private Result<RCursor<T>> takeNext() {
+		if(source != null) {
+			return Result.success(of(source, pageSize));
+		}
+		if(cursorId == null) {
+			return Result.empty("No more pages");
+		}
+		if(fetcher == null) {
+			return Result.failure("RCursor is not connected to a server");
+		}
+		Result<RCursor<T>> page = prefetch != null ? prefetch.join() : fetcher.fetch(cursorId, pageSize);
+		//Connect the page only once, so its next page is prefetched only once
+		return page.map(p -> p.withFetcher(fetcher, executor)).completed();
+	}
+
+	/**
+	 * Close the cursor on the server when not all pages are read.
+	 */
+	@Override
+	public void close() {
+		if(cursorId != null && fetcher != null) {
+			//The prefetched page has the id of the remaining items
+			String remaining = prefetch == null
+				? cursorId
+				: prefetch.join().map(p -> p.cursorId).orElse(null);
+			if(remaining != null) {
+				fetcher.fetch(remaining, 0);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RCursor[" + (cursorId == null ? "last" : cursorId) + ", " + items.size() + " items]";
+	}
+
+	public static final JJObjectReader jsonReader = (type, node, masterReader) -> {
+		if(node.getType() == JJNode.JType.jsonNull) {
+			return null;
+		}
+		return readJson(type, node, masterReader);
+	};
+
+	private static RCursor<Object> readJson(Type type, JJNode node, JJReader masterReader) {
+		JJNodeObject obj = node.asObject().orElseThrow();
+		Type itemType = type instanceof ParameterizedType
+			? ((ParameterizedType) type).getActualTypeArguments()[0]
+			: Object.class;
+		Class<?> itemClass = itemType instanceof ParameterizedType
+			? (Class<?>) ((ParameterizedType) itemType).getRawType()
+			: itemType instanceof Class ? (Class<?>) itemType : Object.class;
+		String cursorId = obj.get("cursorId")
+			.filter(n -> n.asNull().isPresent() == false)
+			.map(n -> masterReader.read(n, String.class))
+			.orElse(null);
+		int pageSize = masterReader.read(obj.get("pageSize").get(), Integer.class);
+		PList<Object> items = PList.empty();
+		for(JJNode itemNode : obj.get("items").get().asArray().orElseThrow().pstream().plist()) {
+			items = items.plus(masterReader.read(itemNode, itemClass, itemType));
+		}
+		return page(cursorId, items, pageSize);
+	}
+}
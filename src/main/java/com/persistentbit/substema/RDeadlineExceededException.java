@@ -0,0 +1,18 @@
+package com.persistentbit.substema;
+
+/**
+ * Failure for a remote call of which the deadline has passed.<br>
+ * On the client, the {@link RProxy} stopped waiting for the result.
+ * On the server, the call (or the rest of the call stack) was not executed.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RCall#getDeadline()
+ * @see RTimeouts
+ */
+public class RDeadlineExceededException extends RObjException{
+
+	public RDeadlineExceededException(String message) {
+		super(message);
+	}
+}
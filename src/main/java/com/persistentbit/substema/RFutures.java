@@ -0,0 +1,92 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.result.Result;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Results of calls that execute on another thread.<br>
+ * Forcing these results waits interruptibly, so the {@link RProxy} can stop waiting for a call
+ * when its deadline has passed, without a thread per call to wait for the result.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+final class RFutures{
+
+	private RFutures() {
+	}
+
+	/**
+	 * A lazy result that waits for a future.
+	 *
+	 * @param future The future result
+	 * @param <T>    The result type
+	 *
+	 * @return The result, a failure when the waiting thread was interrupted
+	 */
+	static <T> Result<T> lazy(CompletableFuture<Result<T>> future) {
+		return Result.lazy(() -> await(future));
+	}
+
+	/**
+	 * Execute code on an executor.
+	 *
+	 * @param executor The executor
+	 * @param code     The code to execute
+	 * @param <T>      The result type
+	 *
+	 * @return The lazy result of the code
+	 */
+	static <T> Result<T> async(Executor executor, Supplier<Result<T>> code) {
+		try {
+			return lazy(CompletableFuture.supplyAsync(code, executor));
+		} catch(RejectedExecutionException e) {
+			return Result.failure(e);
+		}
+	}
+
+	/**
+	 * Wait interruptibly for a future.
+	 *
+	 * @param future The future result
+	 * @param <T>    The result type
+	 *
+	 * @return The result, a failure when the waiting thread was interrupted
+	 */
+	static <T> Result<T> await(CompletableFuture<Result<T>> future) {
+		return await(future, null);
+	}
+
+	/**
+	 * Wait interruptibly for a future until a deadline.
+	 *
+	 * @param future   The future result
+	 * @param deadline The deadline in epoch milliseconds or null to wait without deadline
+	 * @param <T>      The result type
+	 *
+	 * @return The result, a failure when the waiting thread was interrupted
+	 * or a {@link RDeadlineExceededException} failure when the deadline passed
+	 */
+	static <T> Result<T> await(CompletableFuture<Result<T>> future, Long deadline) {
+		try {
+			if(deadline == null) {
+				return future.get();
+			}
+			return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Result.failure(e);
+		} catch(ExecutionException e) {
+			return Result.failure(e.getCause());
+		} catch(TimeoutException e) {
+			return Result.failure(new RDeadlineExceededException("Deadline exceeded waiting for " + future));
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.persistentbit.substema;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free, allocation free histogram for positive long values (nanoseconds, byte counts,...).<br>
+ * Values are counted in log-linear buckets (HDR-style): every power of 2 is split in
+ * 16 linear sub buckets, so a reported percentile has a maximum relative error of 1/16.<br>
+ * Recording a value is a few array index calculations and 4 atomic updates.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RMetricsRegistry
+ */
+public final class RHistogram{
+
+	private static final int subBucketBits  = 4;
+	private static final int subBucketCount = 1 << subBucketBits;
+	private static final int bucketCount    = (64 - subBucketBits) * subBucketCount;
+
+	private final AtomicLongArray counts = new AtomicLongArray(bucketCount);
+	private final LongAdder       count  = new LongAdder();
+	private final LongAdder       sum    = new LongAdder();
+	private final LongAccumulator max    = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Record a value. Negative values are recorded as 0.
+	 *
+	 * @param value The value to record
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long c = count.sum();
+		return c == 0 ? 0 : (double) sum.sum() / c;
+	}
+
+	/**
+	 * Get the value at the given percentile.
+	 *
+	 * @param percentile The percentile between 0 and 100 (ex. 99.9)
+	 *
+	 * @return The highest value that is equivalent to the value at the percentile or 0 when empty.
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for(int t = 0; t < bucketCount; t++) {
+			total += counts.get(t);
+		}
+		if(total == 0) {
+			return 0;
+		}
+		long target  = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total));
+		long current = 0;
+		for(int t = 0; t < bucketCount; t++) {
+			current += counts.get(t);
+			if(current >= target) {
+				return t == bucketCount - 1 ? getMax() : Math.min(getMax(), lowerBound(t + 1) - 1);
+			}
+		}
+		return getMax();
+	}
+
+	@Override
+	public String toString() {
+		return "RHistogram[count=" + getCount() + ", mean=" + (long) getMean() + ", p50=" + getPercentile(50)
+			+ ", p99=" + getPercentile(99) + ", max=" + getMax() + "]";
+	}
+
+	static int index(long value) {
+		if(value < subBucketCount) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - subBucketBits;
+		int sub   = (int) ((value >>> shift) & (subBucketCount - 1));
+		return (shift + 1) * subBucketCount + sub;
+	}
+
+	static long lowerBound(int index) {
+		if(index < subBucketCount) {
+			return index;
+		}
+		int shift = index / subBucketCount - 1;
+		int sub   = index % subBucketCount;
+		return ((long) (subBucketCount + sub)) << shift;
+	}
+}
@@ -0,0 +1,157 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.result.Result;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Short lived cache of call results by idempotency key, used by {@link RServer} to
+ * execute a retried or hedged call only once.<br>
+ * A call with a key that is in the cache gets the result of the first call with that key,
+ * waiting for it when the first call is still executing.
+ * Keys are scoped by the session signature, the call stack signature and the method of the call,
+ * so a call from another session or to another method never gets a cached result for the same key.
+ * Rejected results and transport failures are not cached, so those calls can be retried.<br>
+ * Entries expire after the time to live. When the cache is full and no entries are expired,
+ * new calls are executed without caching.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RCall#getIdempotencyKey()
+ * @see RemoteServiceRetry
+ */
+final class RIdempotencyCache{
+
+	private static final class Entry{
+
+		private final CompletableFuture<Result<RCallResult>> result = new CompletableFuture<>();
+		private final long                                   expires;
+
+		Entry(long expires) {
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * The idempotency key with the identity of the caller and the called method
+	 */
+	private static final class Key{
+
+		private final String idempotencyKey;
+		private final String sessionSignature;
+		private final String callStackSignature;
+		private final Object target;
+		private final int    hash;
+
+		Key(String idempotencyKey, RCall call) {
+			this.idempotencyKey = idempotencyKey;
+			this.sessionSignature = call.getSessionData() == null ? null : call.getSessionData().signature;
+			this.callStackSignature = call.getCallStack() == null ? null : call.getCallStack().getSignature();
+			this.target = call.getStreamPull() != null
+				? call.getStreamPull()
+				: call.getThisCall() == null ? null : call.getThisCall().getMethodToCall();
+			this.hash = Objects.hash(idempotencyKey, sessionSignature, callStackSignature, target);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(o == null || getClass() != o.getClass()) return false;
+			Key that = (Key) o;
+			return hash == that.hash
+				&& idempotencyKey.equals(that.idempotencyKey)
+				&& Objects.equals(sessionSignature, that.sessionSignature)
+				&& Objects.equals(callStackSignature, that.callStackSignature)
+				&& Objects.equals(target, that.target);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private final long            ttlNanos;
+	private final int             maxEntries;
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+	RIdempotencyCache(long timeToLive, TimeUnit timeUnit, int maxEntries) {
+		this.ttlNanos = timeUnit.toNanos(timeToLive);
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Execute a call once for an idempotency key.<br>
+	 * The dispatch gets a function that it must apply to the call result on the thread that executed the call,
+	 * so the result is cached as soon as the call is executed, even when the first caller
+	 * never forces its result.
+	 *
+	 * @param idempotencyKey The idempotency key of the call
+	 * @param call           The call
+	 * @param dispatch       Dispatches the call with the function for the executed result
+	 *
+	 * @return The call result
+	 */
+	Result<RCallResult> call(String idempotencyKey, RCall call,
+							 Function<UnaryOperator<Result<RCallResult>>, Result<RCallResult>> dispatch
+	) {
+		Key  key = new Key(idempotencyKey, call);
+		long now = System.nanoTime();
+		if(entries.size() >= maxEntries) {
+			sweep(now);
+		}
+		Entry entry = new Entry(now + ttlNanos);
+		while(true) {
+			Entry existing = entries.get(key);
+			if(existing != null && existing.expires - now > 0) {
+				return RFutures.lazy(existing.result);
+			}
+			if(existing == null && entries.size() >= maxEntries) {
+				return dispatch.apply(executed -> executed);
+			}
+			boolean added = existing == null
+				? entries.putIfAbsent(key, entry) == null
+				: entries.replace(key, existing, entry);
+			if(added) {
+				break;
+			}
+		}
+		Result<RCallResult> result;
+		try {
+			result = dispatch.apply(executed -> complete(key, entry, executed));
+		} catch(RuntimeException e) {
+			result = Result.failure(e);
+		}
+		if(result.isComplete()) {
+			//Not executed, like a call that could not be submitted
+			return complete(key, entry, result);
+		}
+		return result;
+	}
+
+	private Result<RCallResult> complete(Key key, Entry entry, Result<RCallResult> result) {
+		Result<RCallResult> completed = result.completed();
+		if(completed.isError() || completed.orElseThrow().isRejected()) {
+			entries.remove(key, entry);
+		}
+		entry.result.complete(completed);
+		return completed;
+	}
+
+	private void sweep(long now) {
+		Iterator<Entry> iter = entries.values().iterator();
+		while(iter.hasNext()) {
+			Entry entry = iter.next();
+			if(entry.expires - now <= 0 && entry.result.isDone()) {
+				iter.remove();
+			}
+		}
+	}
+}
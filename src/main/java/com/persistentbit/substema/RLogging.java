@@ -0,0 +1,180 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PMap;
+import com.persistentbit.core.result.Result;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Controls the function logging on the remote call hot path
+ * ({@link RServer}, {@link RProxy}, {@link RemoteServiceHttpClient}, the json readers,...).<br>
+ * The mode is read once from the system property {@value #modeProperty}:
+ * <ul>
+ * <li>{@code all}: Every call builds a complete log tree. This is the default.</li>
+ * <li>{@code sampled}: Only 1 out of N calls is logged, with N the system property
+ * {@value #sampleRateProperty} (default 100).</li>
+ * <li>{@code off}: Nothing is logged.</li>
+ * </ul>
+ * An unknown mode is reported as a warning and logs everything.<br>
+ * In sampled mode, the decision is taken once per call by the first layer that sees the call,
+ * and is passed on in the {@value #logHeader} header of the {@link RCall}. That way all the layers
+ * (proxy, transport, server and nested calls) log the same calls and a sampled call has a complete log tree.
+ * Because the mode is a static final value, the JIT removes the logging branches
+ * when logging is turned off.<br>
+ * Example: {@code java -Dsubstema.logging=off ...}
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public final class RLogging{
+
+	public static final String modeProperty       = "substema.logging";
+	public static final String sampleRateProperty = "substema.logging.sampleRate";
+	public static final String logHeader          = "log";
+
+	public enum Mode{
+		all, sampled, off
+	}
+
+	public static final Mode mode       = readMode();
+	public static final int  sampleRate = Math.max(1, Integer.getInteger(sampleRateProperty, 100));
+
+	private static final AtomicLong sampleCounter = new AtomicLong();
+
+	/**
+	 * Functional interface for code that is executed without logging
+	 *
+	 * @param <R> The result type
+	 */
+	@FunctionalInterface
+	public interface Code<R>{
+
+		R run() throws Exception;
+	}
+
+	private RLogging() {
+	}
+
+	private static Mode readMode() {
+		String value = System.getProperty(modeProperty, Mode.all.name());
+		try {
+			return Mode.valueOf(value.trim());
+		} catch(IllegalArgumentException e) {
+			Logger.getLogger(RLogging.class.getName()).warning(
+				"Unknown value '" + value + "' for " + modeProperty + ", using " + Mode.all
+			);
+			return Mode.all;
+		}
+	}
+
+	/**
+	 * Take the logging decision for a call, if it is not already taken by an earlier layer.<br>
+	 * Only in sampled mode is the decision added to the headers of the call.
+	 *
+	 * @param call The call
+	 *
+	 * @return The call with the decision
+	 */
+	public static RCall decide(RCall call) {
+		if(mode != Mode.sampled || call.getHeaders().containsKey(logHeader)) {
+			return call;
+		}
+		return call.withHeaders(withDecision(call.getHeaders(), sample()));
+	}
+
+	/**
+	 * Check if a call should be logged.
+	 *
+	 * @param call The call, with the decision of {@link #decide(RCall)}
+	 *
+	 * @return true if the call should be logged.
+	 */
+	public static boolean isLogging(RCall call) {
+		return isLogging(call.getHeaders());
+	}
+
+	/**
+	 * Check if a call with the given headers should be logged.<br>
+	 * In sampled mode without a decision in the headers, a new decision is taken.
+	 *
+	 * @param headers The call headers
+	 *
+	 * @return true if the call should be logged.
+	 */
+	public static boolean isLogging(PMap<String, String> headers) {
+		switch(mode) {
+			case all:
+				return true;
+			case off:
+				return false;
+			default:
+				String decision = headers.getOpt(logHeader).orElse(null);
+				return decision == null ? sample() : decision.equals("1");
+		}
+	}
+
+	/**
+	 * Add a logging decision to call headers.<br>
+	 * Only in sampled mode is the decision added.
+	 *
+	 * @param headers The call headers
+	 * @param logging The decision
+	 *
+	 * @return The headers with the decision
+	 */
+	public static PMap<String, String> withDecision(PMap<String, String> headers, boolean logging) {
+		return mode == Mode.sampled ? headers.put(logHeader, logging ? "1" : "0") : headers;
+	}
+
+	private static boolean sample() {
+		return sampleCounter.getAndIncrement() % sampleRate == 0;
+	}
+
+	/**
+	 * Check if nested functions that can't follow the per call decision
+	 * of {@link #isLogging(RCall)} (like the json readers) should be logged.
+	 *
+	 * @return true if every call is logged.
+	 */
+	public static boolean isLoggingAll() {
+		return mode == Mode.all;
+	}
+
+	/**
+	 * Execute code returning a Result without creating a log entry.<br>
+	 * Exceptions are converted to a failure, just like {@code Result.function(...).code(...)} does.
+	 *
+	 * @param code The code to execute
+	 * @param <R>  The Result value type
+	 *
+	 * @return The Result of the code or a failure
+	 */
+	public static <R> Result<R> unlogged(Code<Result<R>> code) {
+		try {
+			Result<R> result = code.run();
+			return result == null ? Result.failure("Got a null Result") : result;
+		} catch(Exception e) {
+			return Result.failure(e);
+		}
+	}
+
+	/**
+	 * Execute code returning a value without creating a log entry.<br>
+	 * Checked exceptions are wrapped in a {@link RObjException}
+	 *
+	 * @param code The code to execute
+	 * @param <R>  The value type
+	 *
+	 * @return The value
+	 */
+	public static <R> R unloggedValue(Code<R> code) {
+		try {
+			return code.run();
+		} catch(RuntimeException e) {
+			throw e;
+		} catch(Exception e) {
+			throw new RObjException(e);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.persistentbit.substema;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * All the recorded metrics for 1 remote method.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RMetricsRegistry
+ */
+public final class RMethodMetrics implements RMethodMetricsMBean{
+
+	private final MethodDefinition method;
+	private final RHistogram[]     histograms = new RHistogram[RMetric.values().length];
+	private final LongAdder        failures   = new LongAdder();
+
+	public RMethodMetrics(MethodDefinition method) {
+		this.method = method;
+		for(int t = 0; t < histograms.length; t++) {
+			histograms[t] = new RHistogram();
+		}
+	}
+
+	public MethodDefinition getMethodDefinition() {
+		return method;
+	}
+
+	public RHistogram get(RMetric metric) {
+		return histograms[metric.ordinal()];
+	}
+
+	void record(RMetric metric, long value) {
+		histograms[metric.ordinal()].record(value);
+	}
+
+	void failed() {
+		failures.increment();
+	}
+
+	@Override
+	public String getMethod() {
+		return method.toString();
+	}
+
+	/**
+	 * The number of calls, taken from the {@link RMetric#latency} or
+	 * when there is no latency recorded, from the {@link RMetric#execution} histogram.
+	 *
+	 * @return The number of calls
+	 */
+	@Override
+	public long getCalls() {
+		long calls = get(RMetric.latency).getCount();
+		return calls != 0 ? calls : get(RMetric.execution).getCount();
+	}
+
+	@Override
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	@Override
+	public double getLatencyMeanNanos() {
+		return get(RMetric.latency).getMean();
+	}
+
+	@Override
+	public long getLatencyP50Nanos() {
+		return get(RMetric.latency).getPercentile(50);
+	}
+
+	@Override
+	public long getLatencyP99Nanos() {
+		return get(RMetric.latency).getPercentile(99);
+	}
+
+	@Override
+	public long getLatencyMaxNanos() {
+		return get(RMetric.latency).getMax();
+	}
+
+	@Override
+	public long getQueueWaitP99Nanos() {
+		return get(RMetric.queueWait).getPercentile(99);
+	}
+
+	@Override
+	public long getCallStackReplayP99Nanos() {
+		return get(RMetric.callStackReplay).getPercentile(99);
+	}
+
+	@Override
+	public long getExecutionP99Nanos() {
+		return get(RMetric.execution).getPercentile(99);
+	}
+
+	@Override
+	public long getSerializationP99Nanos() {
+		return get(RMetric.serialization).getPercentile(99);
+	}
+
+	@Override
+	public double getRequestBytesMean() {
+		return get(RMetric.requestBytes).getMean();
+	}
+
+	@Override
+	public double getResponseBytesMean() {
+		return get(RMetric.responseBytes).getMean();
+	}
+
+	@Override
+	public String toString() {
+		return "RMethodMetrics[" + method + ", calls=" + getCalls() + ", failures=" + getFailures()
+			+ ", latency=" + get(RMetric.latency) + "]";
+	}
+}
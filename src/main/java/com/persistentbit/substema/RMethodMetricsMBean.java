@@ -0,0 +1,36 @@
+package com.persistentbit.substema;
+
+/**
+ * JMX interface for {@link RMethodMetrics}
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public interface RMethodMetricsMBean{
+
+	String getMethod();
+
+	long getCalls();
+
+	long getFailures();
+
+	double getLatencyMeanNanos();
+
+	long getLatencyP50Nanos();
+
+	long getLatencyP99Nanos();
+
+	long getLatencyMaxNanos();
+
+	long getQueueWaitP99Nanos();
+
+	long getCallStackReplayP99Nanos();
+
+	long getExecutionP99Nanos();
+
+	long getSerializationP99Nanos();
+
+	double getRequestBytesMean();
+
+	double getResponseBytesMean();
+}
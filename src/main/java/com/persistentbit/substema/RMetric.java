@@ -0,0 +1,39 @@
+package com.persistentbit.substema;
+
+/**
+ * The different measurements that are recorded for a remote method.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RMetrics
+ */
+public enum RMetric{
+	/**
+	 * Nanoseconds for a complete call as seen by the caller
+	 */
+	latency,
+	/**
+	 * Nanoseconds a call waited in the executor queue of a {@link RServer}
+	 */
+	queueWait,
+	/**
+	 * Nanoseconds needed by a {@link RServer} to verify and replay the call stack
+	 */
+	callStackReplay,
+	/**
+	 * Nanoseconds a call was executing in a {@link RServer}
+	 */
+	execution,
+	/**
+	 * Nanoseconds spent serializing the call and deserializing the result
+	 */
+	serialization,
+	/**
+	 * Size in bytes of the serialized call
+	 */
+	requestBytes,
+	/**
+	 * Size in bytes of the serialized call result
+	 */
+	responseBytes
+}
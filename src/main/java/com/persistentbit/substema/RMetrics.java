@@ -0,0 +1,46 @@
+package com.persistentbit.substema;
+
+/**
+ * Pluggable receiver for the metrics of remote calls.<br>
+ * Implementations must be thread safe and should not allocate for every recorded value.<br>
+ * The default implementation is {@link RMetricsRegistry}, but this interface can be
+ * used to forward the measurements to any other metrics library.<br>
+ * Use different instances for the client side ({@link RemoteServiceMetrics}) and the server side ({@link RServer})
+ * when both run in the same JVM.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public interface RMetrics{
+
+	/**
+	 * A RMetrics instance that ignores everything
+	 */
+	RMetrics none = new RMetrics(){
+		@Override
+		public void record(MethodDefinition method, RMetric metric, long value) {
+
+		}
+
+		@Override
+		public void failed(MethodDefinition method) {
+
+		}
+	};
+
+	/**
+	 * Record a measured value
+	 *
+	 * @param method The remote method
+	 * @param metric What is measured
+	 * @param value  The value in nanoseconds or bytes
+	 */
+	void record(MethodDefinition method, RMetric metric, long value);
+
+	/**
+	 * Count a failed call
+	 *
+	 * @param method The remote method
+	 */
+	void failed(MethodDefinition method);
+}
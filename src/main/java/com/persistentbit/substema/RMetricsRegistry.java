@@ -0,0 +1,101 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PList;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In memory {@link RMetrics} implementation that keeps a {@link RMethodMetrics} for every
+ * remote method.<br>
+ * When created with a JMX domain, every {@link RMethodMetrics} is also registered
+ * as a MBean in the platform MBean server.<br>
+ * Usage:<br>
+ * {@code
+ * RMetricsRegistry registry = RMetricsRegistry.withJmx("com.example.remote");
+ * RemoteService service = new RemoteServiceMetrics(new RemoteServiceHttpClient(url), registry);
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class RMetricsRegistry implements RMetrics{
+
+	private final ConcurrentMap<MethodDefinition, RMethodMetrics> methods = new ConcurrentHashMap<>();
+	private final String jmxDomain;
+
+	private RMetricsRegistry(String jmxDomain) {
+		this.jmxDomain = jmxDomain;
+	}
+
+	public RMetricsRegistry() {
+		this(null);
+	}
+
+	/**
+	 * Create a registry that registers all method metrics in the platform MBean server.
+	 *
+	 * @param jmxDomain The JMX domain for the MBeans
+	 *
+	 * @return The new registry
+	 */
+	public static RMetricsRegistry withJmx(String jmxDomain) {
+		return new RMetricsRegistry(jmxDomain);
+	}
+
+	@Override
+	public void record(MethodDefinition method, RMetric metric, long value) {
+		get(method).record(metric, value);
+	}
+
+	@Override
+	public void failed(MethodDefinition method) {
+		get(method).failed();
+	}
+
+	public Optional<RMethodMetrics> getMetrics(MethodDefinition method) {
+		return Optional.ofNullable(methods.get(method));
+	}
+
+	public PList<RMethodMetrics> getAll() {
+		return PList.<RMethodMetrics>empty().plusAll(methods.values());
+	}
+
+	private RMethodMetrics get(MethodDefinition method) {
+		RMethodMetrics res = methods.get(method);
+		if(res != null) {
+			return res;
+		}
+		return methods.computeIfAbsent(method, md -> {
+			RMethodMetrics metrics = new RMethodMetrics(md);
+			if(jmxDomain != null) {
+				registerMBean(metrics);
+			}
+			return metrics;
+		});
+	}
+
+	private void registerMBean(RMethodMetrics metrics) {
+		MethodDefinition md = metrics.getMethodDefinition();
+		try {
+			ObjectName name = new ObjectName(jmxDomain + ":type=RemoteMethod"
+												 + ",class=" + ObjectName.quote(md.getRemotableClass().getName())
+												 + ",method=" + ObjectName.quote(md.toString()));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+		} catch(InstanceAlreadyExistsException e) {
+			//Another registry with the same domain already registered this method
+		} catch(JMException e) {
+			throw new RObjException("Can't register metrics MBean for " + md, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RMetricsRegistry[" + (jmxDomain == null ? "" : jmxDomain) + "]";
+	}
+}
@@ -1,11 +1,17 @@
 package com.persistentbit.substema;
 
+import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.logging.Log;
 import com.persistentbit.core.result.Result;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An RProxy is a Interface Proxy for Remote Objects that uses a {@link RemoteService} to
@@ -26,6 +32,30 @@ public final class RProxy implements InvocationHandler{
 
 	private final RemoteService          server;
 	private final RemoteObjectDefinition rod;
+	private final RTimeouts              timeouts;
+
+	/**
+	 * Timer that stops the waiting for a call result when the deadline has passed
+	 */
+	private static final ScheduledThreadPoolExecutor deadlineTimer = new ScheduledThreadPoolExecutor(1, r -> {
+		Thread t = new Thread(r, "RProxy-deadline-timer");
+		t.setDaemon(true);
+		return t;
+	});
+
+	static {
+		deadlineTimer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Threads fetching the next page of a {@link RCursor}.<br>
+	 * The fetches block on the network, so they don't run in the common fork join pool.
+	 */
+	private static final ExecutorService prefetchers = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "RProxy-cursor-prefetch");
+		t.setDaemon(true);
+		return t;
+	});
 
 	private static class ClientSessionData{
 
@@ -44,10 +74,13 @@ public final class RProxy implements InvocationHandler{
 	private final ClientSessionData clientSessionData;
 
 
-	private RProxy(RemoteService server, ClientSessionData clientSessionData, RemoteObjectDefinition rod) {
+	private RProxy(RemoteService server, ClientSessionData clientSessionData, RemoteObjectDefinition rod,
+				   RTimeouts timeouts
+	) {
 		this.server = server;
 		this.clientSessionData = clientSessionData;
 		this.rod = rod;
+		this.timeouts = timeouts;
 
 	}
 
@@ -61,8 +94,25 @@ public final class RProxy implements InvocationHandler{
 	 * @return The Proxy
 	 */
 	public static <C> C create(RemoteService server) {
-		return Log.function(server).code(l -> {
-			return create(server, new ClientSessionData(), server.getRoot().orElseThrow().getRod().get().orElseThrow());
+		return create(server, RTimeouts.none);
+	}
+
+	/**
+	 * Create a new Proxy for the root Remote Object, using the given {@link RemoteService} to execute the calls.<br>
+	 * Every call gets a deadline from the timeouts, see {@link RCall#getDeadline()}.
+	 * The proxies for remote objects returned by this proxy use the same timeouts.
+	 *
+	 * @param server   The RemoteService
+	 * @param timeouts The timeouts for the calls
+	 * @param <C>      The type of the Root Remote Object
+	 *
+	 * @return The Proxy
+	 */
+	public static <C> C create(RemoteService server, RTimeouts timeouts) {
+		return Log.function(server, timeouts).code(l -> {
+			return create(
+				server, new ClientSessionData(), server.getRoot().orElseThrow().getRod().get().orElseThrow(), timeouts
+			);
 		});
 
 	}
@@ -75,16 +125,19 @@ public final class RProxy implements InvocationHandler{
 	 * @param server            The RemoteService
 	 * @param clientSessionData The SessionData (originated from the root service proxy)
 	 * @param rod               The Remote Object Definition for this proxy
+	 * @param timeouts          The timeouts for the calls
 	 * @param <C>               The Result interface type
 	 *
 	 * @return A new Interface proxy
 	 */
-	private static <C> C create(RemoteService server, ClientSessionData clientSessionData, RemoteObjectDefinition rod) {
+	private static <C> C create(RemoteService server, ClientSessionData clientSessionData, RemoteObjectDefinition rod,
+								RTimeouts timeouts
+	) {
 		//noinspection unchecked
 		return (C) Proxy.newProxyInstance(
 			RProxy.class.getClassLoader(),
 			new Class<?>[]{rod.getRemoteObjectClass()},
-			new RProxy(server, clientSessionData, rod)
+			new RProxy(server, clientSessionData, rod, timeouts)
 		);
 	}
 
@@ -95,39 +148,157 @@ public final class RProxy implements InvocationHandler{
 		if(method.getName().equals("toString")) {
 			return "RProxy[" + server + "]";
 		}
-		return Result.function(method.getName()).code(l -> {
+		//Decide once for the call: a nested call follows the decision of the call we are executing in
+		boolean logging = RLogging.isLogging(RCallContext.getHeaders());
+		if(logging) {
+			return Result.function(method.getName()).code(l -> {
+				MethodDefinition md = new MethodDefinition(rod.getRemoteObjectClass(), method);
+				l.info("Calling " + md.toString());
+				return doInvoke(md, args, true);
+			});
+		}
+		return RLogging.unlogged(() -> doInvoke(new MethodDefinition(rod.getRemoteObjectClass(), method), args, false));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Result<Object> doInvoke(MethodDefinition md, Object[] args, boolean logging) {
+		if(rod.getRemoteCached().containsKey(md)) {
+			Result<Object> cached = rod.getRemoteCached().get(md);
+			return cached;
+		}
+		//Create The Call
+		//The headers and the deadline of the call we are executing in (if any) are propagated
+		Long  deadline = timeouts.deadline(md);
+		RCall call     = withDeadline(new RCall(
+			clientSessionData.getSessionData(), rod.getCallStack(), new RMethodCall(md, args),
+			RLogging.withDecision(RCallContext.getHeaders(), logging)
+		), deadline);
+
+		//Execute the Call
+		return await(server.call(call), deadline, md)
+			.flatMap(callResult -> {
+				clientSessionData.setSessionData(callResult.getSessionData().orElse(null));
+				if(callResult.isRejected()) {
+					return Result.failure(new RRejectedException(callResult.getHeaders().get(RCallResult.rejectedHeader)));
+				}
+
+				//If the result is a remote object,
+				//Then create a new Proxy and return the remote object.
+				if(callResult.getRod().isPresent()) {
+					Object remResult = callResult
+						.getRod().get()
+						.map(rod -> RProxy.create(server, clientSessionData, rod, timeouts));
+					return (Result) remResult;
+				}
+				//Must be a result value
+				Result<Object> value = callResult.getResult().orElse(null);
+				if(value != null && RemotableClasses.returnsStream(RemotableMethods.getRemotableMethod(md))) {
+					//Connect the first chunk of a stream with the server
+					return value.map(stream -> (Object) connect(md, (RStream<Object>) stream));
+				}
+				if(value != null && RemotableClasses.returnsCursor(RemotableMethods.getRemotableMethod(md))) {
+					//Connect the first page of a cursor with the server and prefetch the next page
+					return value.map(cursor -> (Object) connect(md, (RCursor<Object>) cursor));
+				}
+				return value;
+			});
+	}
+
+	/**
+	 * Connect the first chunk of a {@link RStream} with the server, so the next chunks can be pulled.
+	 */
+	@SuppressWarnings("unchecked")
+	private RStream<Object> connect(MethodDefinition source, RStream<Object> firstChunk) {
+		return firstChunk.withPuller((streamId, maxItems) -> {
+			Long deadline = timeouts.deadline(source);
+			RCall pull = withDeadline(new RCall(clientSessionData.getSessionData(), null, null, RCallContext.getHeaders())
+				.withStreamPull(new RStreamPull(streamId, source, maxItems)), deadline);
+			return await(server.call(pull), deadline, source)
+				.flatMap(callResult -> callResult.getResult().orElse(Result.failure("No stream chunk in result")))
+				.map(chunk -> (RStream<Object>) chunk)
+				.orElseThrow();
+		});
+	}
 
+	/**
+	 * Connect the first page of a {@link RCursor} with the server, so the next page can be fetched
+	 * in the background.
+	 */
+	@SuppressWarnings("unchecked")
+	private RCursor<Object> connect(MethodDefinition source, RCursor<Object> firstPage) {
+		RSessionData         sessionData = clientSessionData.getSessionData();
+		PMap<String, String> headers     = RCallContext.getHeaders();
+		return firstPage.withFetcher((cursorId, pageSize) -> {
+			//The fetch is executed on another thread: the deadline is calculated when the fetch starts
+			Long deadline = timeouts.deadline(source);
+			RCall fetch = withDeadline(new RCall(sessionData, null, null, headers)
+				.withStreamPull(new RStreamPull(cursorId, source, pageSize)), deadline);
+			return await(server.call(fetch), deadline, source)
+				.flatMap(callResult -> callResult.getResult().orElse(Result.failure("No cursor page in result")))
+				.map(page -> (RCursor<Object>) page);
+		}, prefetchers);
+	}
 
-			MethodDefinition md = new MethodDefinition(rod.getRemoteObjectClass(), method);
-			l.info("Calling " + md.toString());
+	private static RCall withDeadline(RCall call, Long deadline) {
+		return deadline == null ? call : call.withDeadline(deadline);
+	}
 
+	/**
+	 * Wait for the result of a call, but not longer than the deadline.<br>
+	 * The calling thread waits for the result. When the deadline passes first, the timer interrupts the
+	 * waiting and the call fails with a {@link RDeadlineExceededException}.
+	 * The server drops the call when it is not yet executing.
+	 */
+	private static Result<RCallResult> await(Result<RCallResult> result, Long deadline, MethodDefinition md) {
+		if(deadline == null || result.isComplete()) {
+			return result.completed();
+		}
+		long remaining = deadline - System.currentTimeMillis();
+		if(remaining > 0) {
+			DeadlineWait        wait      = new DeadlineWait(Thread.currentThread());
+			ScheduledFuture<?>  timeout   = deadlineTimer.schedule(wait::expire, remaining, TimeUnit.MILLISECONDS);
+			Result<RCallResult> completed = result.completed();
+			timeout.cancel(false);
+			if(wait.finish() || completed.isError() == false) {
+				return completed;
+			}
+		}
+		return Result.failure(new RDeadlineExceededException("Deadline exceeded waiting for " + md));
+	}
+
+	/**
+	 * A thread waiting for a call result, interrupted by the deadline timer.
+	 */
+	private static final class DeadlineWait{
 
+		private final Thread  waiting;
+		private       boolean done;
+		private       boolean expired;
 
-			if(rod.getRemoteCached().containsKey(md)) {
-				Result<Object> cached = rod.getRemoteCached().get(md);
-				return cached;
+		DeadlineWait(Thread waiting) {
+			this.waiting = waiting;
+		}
+
+		synchronized void expire() {
+			if(done == false) {
+				expired = true;
+				waiting.interrupt();
 			}
-			//Create The Call
-			RCall call = new RCall(clientSessionData.getSessionData(), rod.getCallStack(), new RMethodCall(md, args));
-
-			//Execute the Call
-			return server.call(call).completed()
-				.flatMap(callResult -> {
-					clientSessionData.setSessionData(callResult.getSessionData().orElse(null));
-
-					//If the result is a remote object,
-					//Then create a new Proxy and return the remote object.
-					if(callResult.getRod().isPresent()) {
-						Object remResult = callResult
-							.getRod().get()
-							.map(rod -> RProxy.create(server, clientSessionData, rod));
-						return (Result) remResult;
-					}
-					//Must be a result value
-					return callResult.getResult().orElse(null);
-				});
+		}
 
-		});
+		/**
+		 * Stop waiting and clear the interrupt of the timer.
+		 *
+		 * @return false if the deadline has passed
+		 */
+		synchronized boolean finish() {
+			done = true;
+			if(expired) {
+				Thread.interrupted();
+				return false;
+			}
+			return true;
+		}
 	}
 
 	@Override
@@ -0,0 +1,17 @@
+package com.persistentbit.substema;
+
+/**
+ * Failure for a remote call that was rejected by the {@link RAdmissionControl} of the server
+ * before it was executed.<br>
+ * The call had no effect on the server, so the client can back off and retry it later.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RCallResult#isRejected()
+ */
+public class RRejectedException extends RObjException{
+
+	public RRejectedException(String message) {
+		super(message);
+	}
+}
@@ -5,6 +5,7 @@ import com.persistentbit.core.Nothing;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.logging.Log;
+import com.persistentbit.core.logging.entries.LogEntry;
 import com.persistentbit.core.result.Result;
 import com.persistentbit.jjson.mapping.JJMapper;
 import com.persistentbit.jjson.nodes.JJParser;
@@ -15,10 +16,15 @@ import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.util.Base64;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 
 /**
@@ -35,6 +41,12 @@ public class RServer<R, SESSION> implements RemoteService{
 	private final JJMapper                              mapper;
 	private final String                                secret;
 	private final ExecutorService                       executor;
+	private final RMetrics                              metrics;
+	private final RSpanRecorder                         spanRecorder;
+	private final boolean                               inProcess;
+	private final RStreamRegistry                       streams;
+	private final RAdmissionControl                     admission;
+	private final RIdempotencyCache                     idempotency;
 
 
 	public RServer(String secret, Class<R> rootInterface, Class<SESSION> sessionClass,
@@ -51,6 +63,16 @@ public class RServer<R, SESSION> implements RemoteService{
 
 	public RServer(String secret, Class<R> rootInterface, Class<SESSION> sessionClass,
 				   Function<RSessionManager<SESSION>, R> rootSupplier, ExecutorService executor, JJMapper mapper
+	) {
+		this(secret, rootInterface, sessionClass, rootSupplier, executor, mapper, RMetrics.none, RSpanRecorder.none,
+			 false, new RStreamRegistry(100, 5, TimeUnit.MINUTES), RAdmissionControl.none, null
+		);
+	}
+
+	private RServer(String secret, Class<R> rootInterface, Class<SESSION> sessionClass,
+					Function<RSessionManager<SESSION>, R> rootSupplier, ExecutorService executor, JJMapper mapper,
+					RMetrics metrics, RSpanRecorder spanRecorder, boolean inProcess, RStreamRegistry streams,
+					RAdmissionControl admission, RIdempotencyCache idempotency
 	) {
 		this.secret = secret;
 		this.rootInterface = Objects.requireNonNull(rootInterface);
@@ -58,11 +80,109 @@ public class RServer<R, SESSION> implements RemoteService{
 		this.rootSupplier = Objects.requireNonNull(rootSupplier);
 		this.executor = executor;
 		this.mapper = mapper;
+		this.metrics = Objects.requireNonNull(metrics);
+		this.spanRecorder = Objects.requireNonNull(spanRecorder);
+		this.inProcess = inProcess;
+		this.streams = Objects.requireNonNull(streams);
+		this.admission = Objects.requireNonNull(admission);
+		this.idempotency = idempotency;
+	}
+
+	/**
+	 * Create a copy of this server that records the queue wait, call stack replay and execution time
+	 * of every call in the given {@link RMetrics}.
+	 *
+	 * @param metrics The metrics receiver
+	 *
+	 * @return A new RServer sharing the executor with this server
+	 */
+	public RServer<R, SESSION> withMetrics(RMetrics metrics) {
+		return new RServer<>(secret, rootInterface, sessionClass, rootSupplier, executor, mapper, metrics, spanRecorder,
+							 inProcess, streams, admission, idempotency
+		);
+	}
+
+	/**
+	 * Create a copy of this server that records a server span for every traced call.<br>
+	 * A call is traced when it has a {@link RTracing#traceIdHeader} header, see {@link RemoteServiceTracer}.
+	 *
+	 * @param spanRecorder The span receiver
+	 *
+	 * @return A new RServer sharing the executor with this server
+	 */
+	public RServer<R, SESSION> withSpanRecorder(RSpanRecorder spanRecorder) {
+		return new RServer<>(secret, rootInterface, sessionClass, rootSupplier, executor, mapper, metrics, spanRecorder,
+							 inProcess, streams, admission, idempotency
+		);
+	}
+
+	/**
+	 * Create a copy of this server with new settings for {@link RStream} results.<br>
+	 * The default is a chunk size of 100 items and an idle timeout of 5 minutes.
+	 *
+	 * @param chunkSize   The maximum number of items in a chunk
+	 * @param idleTimeout Time after which a stream that is not pulled is closed
+	 * @param timeUnit    The time unit of the idle timeout
+	 *
+	 * @return A new RServer sharing the executor with this server
+	 */
+	public RServer<R, SESSION> withStreams(int chunkSize, long idleTimeout, TimeUnit timeUnit) {
+		return new RServer<>(secret, rootInterface, sessionClass, rootSupplier, executor, mapper, metrics, spanRecorder,
+							 inProcess, new RStreamRegistry(chunkSize, idleTimeout, timeUnit), admission,
+							 idempotency
+		);
+	}
+
+	/**
+	 * Create a copy of this server that limits the number of calls executing on the executor.<br>
+	 * Calls that are not admitted return a {@link RCallResult#isRejected() rejected} result.
+	 * In-process calls are executed on the calling thread and are not limited.
+	 *
+	 * @param admission The admission control for the calls
+	 *
+	 * @return A new RServer sharing the executor with this server
+	 */
+	public RServer<R, SESSION> withAdmissionControl(RAdmissionControl admission) {
+		return new RServer<>(secret, rootInterface, sessionClass, rootSupplier, executor, mapper, metrics, spanRecorder,
+							 inProcess, streams, admission, idempotency
+		);
+	}
+
+	/**
+	 * Create a copy of this server that executes calls with the same {@link RCall#getIdempotencyKey() idempotency key}
+	 * only once. Retried and hedged calls from a {@link RemoteServiceRetry} then get the result of the first call.
+	 *
+	 * @param timeToLive Time a result is kept for its idempotency key
+	 * @param timeUnit   The time unit of the time to live
+	 * @param maxEntries Maximum number of cached results
+	 *
+	 * @return A new RServer sharing the executor with this server
+	 */
+	public RServer<R, SESSION> withIdempotencyCache(long timeToLive, TimeUnit timeUnit, int maxEntries) {
+		return new RServer<>(secret, rootInterface, sessionClass, rootSupplier, executor, mapper, metrics, spanRecorder,
+							 inProcess, streams, admission, new RIdempotencyCache(timeToLive, timeUnit, maxEntries)
+		);
+	}
+
+	/**
+	 * Create a copy of this server for calls from a {@link RProxy} in the same JVM.<br>
+	 * Calls are executed on the calling thread instead of the executor,
+	 * call stacks are not signed and signatures are not verified.
+	 * The session data is handled the same way as for a remote server.<br>
+	 * <b>Never expose an in-process server through a remote transport</b>: a client
+	 * could then execute any call stack.
+	 *
+	 * @return A new RServer for in-process calls
+	 */
+	public RServer<R, SESSION> inProcess() {
+		return new RServer<>(secret, rootInterface, sessionClass, rootSupplier, executor, mapper, metrics, spanRecorder,
+							 true, streams, admission, idempotency
+		);
 	}
 
 	@Override
 	public String toString() {
-		return "RServer[" + rootInterface.getName() + "]";
+		return "RServer[" + rootInterface.getName() + (inProcess ? ", inProcess" : "") + "]";
 	}
 
 	public ExecutorService getExecutor() {
@@ -79,97 +199,241 @@ public class RServer<R, SESSION> implements RemoteService{
 	}
 
 	@Override
-	@SuppressWarnings("unchecked")
-	public Result<RCallResult> call(RCall call) {
-		return Result.async(executor, () -> Result.function(call).code(l -> {
-			SESSION       sessionData    = null;
-			LocalDateTime sessionExpires = null;
-
-			if(call.getSessionData() != null) {
-				RSessionData data = call.getSessionData();
-				if(data.verifySignature(secret) == false) {
-					Result.failure("Invalid Session signature");
-				}
-				sessionData =
-					mapper.read(JJParser.parse(new String(Base64.getDecoder().decode(data.data)))
-									.orElseThrow(), sessionClass);
-				sessionExpires = data.validUntil;
-				if(sessionExpires.isBefore(LocalDateTime.now())) {
-					//The Session Data is expired, so we continue with no sessionData.
-					//It is up to the implementation to check if there is a session.
-					l.warning("SESSION EXPIRED: " + sessionData);
-					sessionData = null;
-					sessionExpires = null;
-				}
-			}
+	public Result<RCallResult> call(RCall undecided) {
+		//The logging decision is part of the call, so nested calls log the same way
+		RCall            call           = RLogging.decide(undecided);
+		Optional<String> idempotencyKey = call.getIdempotencyKey();
+		if(idempotency != null && idempotencyKey.isPresent()) {
+			return idempotency.call(idempotencyKey.get(), call, onExecuted -> dispatch(call, onExecuted));
+		}
+		return dispatch(call, executed -> executed);
+	}
 
-			//Create The session manager that is used
-			//For the complete implementation call chain
-			RSessionManager<SESSION> sessionManager = new RSessionManager<>(sessionData, sessionExpires);
-			RMethodCall              thisCall       = call.getThisCall();
-			if(thisCall == null) {
-				//This is a call to get the Root Object.
-				return createROD(
-					RCallStack.createAndSign(PList.empty(), mapper, secret),
-					this.rootInterface,
-					rootSupplier.apply(sessionManager)
-				).map(rod ->
-						  RCallResult.forRootRemoteObject(getSession(sessionManager), Result.success(rod))
-				);
+	/**
+	 * Dispatch a call to the executor.
+	 *
+	 * @param call       The call
+	 * @param onExecuted Applied to the result on the thread that executed or rejected the call
+	 *
+	 * @return The call result
+	 */
+	private Result<RCallResult> dispatch(RCall call, UnaryOperator<Result<RCallResult>> onExecuted) {
+		boolean          logging   = RLogging.isLogging(call);
+		MethodDefinition md        = call.getThisCall() == null ? null : call.getThisCall().getMethodToCall();
+		long             submitted = System.nanoTime();
+		if(inProcess) {
+			return onExecuted.apply(executeSafe(call, logging, md, submitted));
+		}
+		if(admission == RAdmissionControl.none) {
+			return RFutures.async(executor, () -> onExecuted.apply(executeSafe(call, logging, md, submitted)));
+		}
+		//A stream pull is admitted as a call to the method that created the stream
+		MethodDefinition                       admitted =
+			call.getStreamPull() != null ? call.getStreamPull().getSource() : md;
+		CompletableFuture<Result<RCallResult>> future   = new CompletableFuture<>();
+		admission.submit(
+			admitted,
+			executor,
+			() -> future.complete(onExecuted.apply(executeSafe(call, logging, md, submitted))),
+			reason -> future.complete(onExecuted.apply(
+				Result.success(RCallResult.forRejected(admitted, call.getSessionData(), reason))
+			))
+		);
+		return RFutures.lazy(future);
+	}
+
+	private Result<RCallResult> executeSafe(RCall call, boolean logging, MethodDefinition md, long submitted) {
+		try {
+			return execute(call, logging, md, submitted);
+		} catch(RuntimeException e) {
+			return Result.failure(e);
+		}
+	}
+
+	private Result<RCallResult> execute(RCall call, boolean logging, MethodDefinition md, long submitted) {
+		long started = System.nanoTime();
+		if(md != null) {
+			metrics.record(md, RMetric.queueWait, started - submitted);
+		}
+		if(call.isExpired()) {
+			//The client no longer waits for the result
+			return Result.success(RCallResult.forFailure(
+				call.getStreamPull() != null ? call.getStreamPull().getSource() : md, call.getSessionData(),
+				new RDeadlineExceededException("Deadline exceeded before execution of " + RTracing.spanName(call))
+			));
+		}
+		Result<RCallResult> result = traced(call, started, () -> {
+			if(logging) {
+				return Result.function(call).code(l -> doCall(call, true, msg -> l.warning(msg)));
 			}
+			return RLogging.unlogged(() -> doCall(call, false, msg -> {}));
+		});
+		if(md != null) {
+			metrics.record(md, RMetric.execution, System.nanoTime() - started);
+			//Don't force lazy results: only count completed failures
+			boolean failed = result.isError()
+				|| result.orElseThrow().getResult().map(r -> r.isComplete() && r.isError()).orElse(false);
+			if(failed) {
+				metrics.failed(md);
+			}
+		}
+		return result;
+	}
 
-			//Execute the call stack
-			Result<Object> result =
-				call(rootSupplier.apply(sessionManager), call.getCallStack())
-					.flatMap(impl -> singleCall(impl, thisCall))//Execute this call
-				;
+	/**
+	 * Execute a call in the {@link RCallContext} of the call, with the headers and the deadline of the call.<br>
+	 * When the call is traced, a server span is recorded as child of the client span
+	 * and the server execution time is added to the result headers.
+	 */
+	private Result<RCallResult> traced(RCall call, long started, Supplier<Result<RCallResult>> code) {
+		PMap<String, String> headers  = call.getHeaders();
+		Long                 deadline = call.getDeadline().orElse(null);
+		Optional<String>     traceId  = headers.getOpt(RTracing.traceIdHeader);
+		if(traceId.isPresent() == false) {
+			return RCallContext.with(headers, deadline, code);
+		}
+		String              spanId      = RTracing.newId();
+		long                startMillis = System.currentTimeMillis();
+		Result<RCallResult> result      =
+			RCallContext.with(headers.put(RTracing.spanIdHeader, spanId), deadline, code);
+		long                duration    = System.nanoTime() - started;
+		spanRecorder.record(new RSpan(
+			traceId.get(), spanId, headers.getOpt(RTracing.spanIdHeader).orElse(null), RTracing.spanName(call),
+			RSpan.Kind.server, startMillis, duration, result.isError()
+		));
+		return result.map(r -> r.withHeaders(r.getHeaders().put(RTracing.serverNanosHeader, Long.toString(duration))));
+	}
 
-			RSessionData resultSession = getSession(sessionManager);
+	@SuppressWarnings("unchecked")
+	private Result<RCallResult> doCall(RCall call, boolean logging, Consumer<String> warning) {
+		if(call.getStreamPull() != null) {
+			return pullStream(call);
+		}
+		SESSION       sessionData    = null;
+		LocalDateTime sessionExpires = null;
 
-			if(result.isError()) {
-				return Result.success(RCallResult.forResultValue(thisCall.getMethodToCall(), resultSession, result));
+		if(call.getSessionData() != null) {
+			RSessionData data = call.getSessionData();
+			if(data.verifySignature(secret) == false) {
+				Result.failure("Invalid Session signature");
 			}
-			boolean isRemotableResult = call.getThisCall().getMethodToCall().returnsRemotable();
-
-			if(isRemotableResult) {
-
-				//We have a remote object
-				if(result.isEmpty()) {
-					return Result.success(
-						RCallResult.forRemoteObject(
-							thisCall.getMethodToCall(),
-							resultSession,
-							Result
-								.empty("Can't create a Remote Object definition for a null object in call " + thisCall)
-						)
-					);
+			sessionData =
+				mapper.read(JJParser.parse(new String(Base64.getDecoder().decode(data.data)))
+								.orElseThrow(), sessionClass);
+			sessionExpires = data.validUntil;
+			if(sessionExpires.isBefore(LocalDateTime.now())) {
+				//The Session Data is expired, so we continue with no sessionData.
+				//It is up to the implementation to check if there is a session.
+				if(logging) {
+					warning.accept("SESSION EXPIRED: " + sessionData);
 				}
-				Object remotableObjectImpl = result.orElseThrow();
-				RCallStack newCallStack = RCallStack
-					.createAndSign(call.getCallStack().getCallStack().plus(thisCall), mapper, secret);
+				sessionData = null;
+				sessionExpires = null;
+			}
+		}
+
+		//Create The session manager that is used
+		//For the complete implementation call chain
+		RSessionManager<SESSION> sessionManager = new RSessionManager<>(sessionData, sessionExpires, call.getHeaders());
+		RMethodCall              thisCall       = call.getThisCall();
+		if(thisCall == null) {
+			//This is a call to get the Root Object.
+			return createROD(
+				signCallStack(PList.empty()),
+				this.rootInterface,
+				rootSupplier.apply(sessionManager),
+				logging
+			).map(rod ->
+					  RCallResult.forRootRemoteObject(getSession(sessionManager), Result.success(rod))
+			);
+		}
+
+		//Execute the call stack
+		long           replayStart = System.nanoTime();
+		Result<Object> callStackResult =
+			call(rootSupplier.apply(sessionManager), call.getCallStack(), logging);
+		metrics.record(thisCall.getMethodToCall(), RMetric.callStackReplay, System.nanoTime() - replayStart);
 
-				Result<RemoteObjectDefinition> resultRod =
-					createROD(newCallStack, RemotableClasses
-						.getRemotableClass(remotableObjectImpl.getClass()), remotableObjectImpl);
+		Result<Object> result = callStackResult.flatMap(impl -> RCallContext.isExpired()
+			? Result.failure(new RDeadlineExceededException("Deadline exceeded before " + thisCall.getMethodToCall()))
+			: singleCall(impl, thisCall, logging)
+		);//Execute this call
 
+		RSessionData resultSession = getSession(sessionManager);
+
+		if(result.isError()) {
+			return Result.success(RCallResult.forResultValue(thisCall.getMethodToCall(), resultSession, result));
+		}
+		boolean isRemotableResult = call.getThisCall().getMethodToCall().returnsRemotable();
+
+		if(isRemotableResult) {
+
+			//We have a remote object
+			if(result.isEmpty()) {
 				return Result.success(
 					RCallResult.forRemoteObject(
 						thisCall.getMethodToCall(),
 						resultSession,
-						resultRod
+						Result
+							.empty("Can't create a Remote Object definition for a null object in call " + thisCall)
 					)
 				);
 			}
-			//It must be a value result
+			Object remotableObjectImpl = result.orElseThrow();
+			RCallStack newCallStack = signCallStack(call.getCallStack().getCallStack().plus(thisCall));
+
+			Result<RemoteObjectDefinition> resultRod =
+				createROD(newCallStack, RemotableClasses
+					.getRemotableClass(remotableObjectImpl.getClass()), remotableObjectImpl, logging);
+
 			return Result.success(
-				RCallResult.forResultValue(
+				RCallResult.forRemoteObject(
 					thisCall.getMethodToCall(),
 					resultSession,
-					result
+					resultRod
 				)
 			);
+		}
+		//It must be a value result
+		Method method = RemotableMethods.getRemotableMethod(thisCall.getMethodToCall());
+		if(RemotableClasses.returnsStream(method)) {
+			result = result.map(stream -> (Object) streams.open((RStream<?>) stream));
+		}
+		else if(RemotableClasses.returnsCursor(method)) {
+			result = result.map(cursor -> (Object) streams.open((RCursor<?>) cursor));
+		}
+		return Result.success(
+			RCallResult.forResultValue(
+				thisCall.getMethodToCall(),
+				resultSession,
+				result
+			)
+		);
+	}
+
+	private Result<RCallResult> pullStream(RCall call) {
+		RStreamPull    pull = call.getStreamPull();
+		Result<Object> chunk;
+		try {
+			RStreamRegistry.Chunk<Object> next = streams.pull(pull);
+			if(RemotableClasses.returnsCursor(RemotableMethods.getRemotableMethod(pull.getSource()))) {
+				chunk = Result.success(RCursor.page(next.id, next.items, pull.getMaxItems()));
+			}
+			else {
+				chunk = Result.success(RStream.chunk(next.id, next.items, next.hasMore()));
+			}
+		} catch(RObjException e) {
+			chunk = Result.failure(e);
+		}
+		//The session is not changed by a pull
+		return Result.success(RCallResult.forResultValue(pull.getSource(), call.getSessionData(), chunk));
+	}
 
-		}));
+	private RCallStack signCallStack(PList<RMethodCall> methods) {
+		if(inProcess) {
+			return RCallStack.createUnsigned(methods);
+		}
+		return RCallStack.createAndSign(methods, mapper, secret);
 	}
 
 	private RSessionData getSession(RSessionManager<SESSION> sessionManager) {
@@ -182,70 +446,101 @@ public class RServer<R, SESSION> implements RemoteService{
 		return new RSessionData(data, sessionManager.getExpires().get()).signed(secret);
 	}
 
-	private Result<RemoteObjectDefinition> createROD(RCallStack call, Class<?> remotableClass, Object obj) {
-		return Result.function(call, remotableClass, obj).code(l -> {
-			PList<MethodDefinition>        remoteMethods = PList.empty();
-			PMap<MethodDefinition, Result> cachedMethods = PMap.empty();
-			for(Method m : remotableClass.getDeclaredMethods()) {
-				MethodDefinition md = new MethodDefinition(remotableClass, m);
-
-				if(m.getParameterCount() == 0 && m.getDeclaredAnnotation(RemoteCache.class) != null) {
-					l.info("Getting cached value for " + md);
-					Result<Object> value;
-					try {
-						value = (Result<Object>) m.invoke(obj);
-					} catch(Exception e) {
-						return Result.failure(new RuntimeException("Error getting cached value from " + remotableClass
-							.getName() + " method: " + md.getMethodName(), e));
-					}
-					if(value == null) {
-						value = Result.failure("Got a null as Result for the cached value method " + md);
-					}
-					value = value.completed();
-					cachedMethods = cachedMethods.put(md, value);
+	private Result<RemoteObjectDefinition> createROD(RCallStack call, Class<?> remotableClass, Object obj,
+													 boolean logging
+	) {
+		if(logging) {
+			return Result.function(call, remotableClass, obj).code(l ->
+				buildROD(call, remotableClass, obj, md -> l.info("Getting cached value for " + md))
+			);
+		}
+		return RLogging.unlogged(() -> buildROD(call, remotableClass, obj, md -> {}));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Result<RemoteObjectDefinition> buildROD(RCallStack call, Class<?> remotableClass, Object obj,
+													Consumer<MethodDefinition> logCached
+	) {
+		PList<MethodDefinition>        remoteMethods = PList.empty();
+		PMap<MethodDefinition, Result> cachedMethods = PMap.empty();
+		for(Method m : remotableClass.getDeclaredMethods()) {
+			MethodDefinition md = new MethodDefinition(remotableClass, m);
+
+			if(m.getParameterCount() == 0 && m.getDeclaredAnnotation(RemoteCache.class) != null) {
+				logCached.accept(md);
+				Result<Object> value;
+				try {
+					value = (Result<Object>) m.invoke(obj);
+				} catch(Exception e) {
+					return Result.failure(new RuntimeException("Error getting cached value from " + remotableClass
+						.getName() + " method: " + md.getMethodName(), e));
 				}
-				else {
-					remoteMethods = remoteMethods.plus(md);
+				if(value == null) {
+					value = Result.failure("Got a null as Result for the cached value method " + md);
 				}
+				value = value.completed();
+				cachedMethods = cachedMethods.put(md, value);
 			}
-			return Result.success(new RemoteObjectDefinition(remotableClass, remoteMethods, cachedMethods, call));
-		});
+			else {
+				remoteMethods = remoteMethods.plus(md);
+			}
+		}
+		return Result.success(new RemoteObjectDefinition(remotableClass, remoteMethods, cachedMethods, call));
+	}
 
+	private Result<Object> singleCall(Object implementationObject, RMethodCall call, boolean logging) {
+		if(logging) {
+			return Result.function(implementationObject, call).code(l -> invoke(implementationObject, call));
+		}
+		return RLogging.unlogged(() -> invoke(implementationObject, call));
 	}
 
 	@SuppressWarnings("unchecked")
-	private Result<Object> singleCall(Object implementationObject, RMethodCall call) {
-		return Result.function(implementationObject, call).code(l -> {
-			MethodDefinition md = call.getMethodToCall();
-			if(implementationObject == null) {
-				return Result.failure("Can't call on a null implementation object: " + md);
-			}
-			Method m =
-				implementationObject.getClass().getMethod(md.getMethodName(), md.getParamTypes());
-			return (Result<Object>) m.invoke(implementationObject, call.getArguments());
-		});
+	private Result<Object> invoke(Object implementationObject, RMethodCall call) throws Exception {
+		MethodDefinition md = call.getMethodToCall();
+		if(implementationObject == null) {
+			return Result.failure("Can't call on a null implementation object: " + md);
+		}
+		Method m =
+			implementationObject.getClass().getMethod(md.getMethodName(), md.getParamTypes());
+		return (Result<Object>) m.invoke(implementationObject, call.getArguments());
+	}
+
+	private Result<Object> call(Object implementationObject, RCallStack callStack, boolean logging) {
+		if(logging) {
+			return Result.function(implementationObject, callStack).code(l ->
+				replayCallStack(implementationObject, callStack, true, logs -> l.add(logs))
+			);
+		}
+		return RLogging.unlogged(() -> replayCallStack(implementationObject, callStack, false, logs -> {}));
 	}
 
-	private Result<Object> call(Object implementationObject, RCallStack callStack) {
-		return Result.function(implementationObject, callStack).code(l -> {
-			if(callStack.verifySignature(secret, mapper) == false) {
-				return Result.failure(new RObjException("Wrong signature !!! "));
+	private Result<Object> replayCallStack(Object implementationObject, RCallStack callStack, boolean logging,
+										   Consumer<LogEntry> addLogs
+	) {
+		if(inProcess == false && callStack.verifySignature(secret, mapper) == false) {
+			return Result.failure(new RObjException("Wrong signature !!! "));
+		}
+		Object resObj = implementationObject;
+		for(RMethodCall c : callStack.getCallStack()) {
+			if(resObj == null) {
+				return Result.failure("Can't execute call on a null object implementation");
 			}
-			Object resObj = implementationObject;
-			for(RMethodCall c : callStack.getCallStack()) {
-				if(resObj == null) {
-					return Result.failure("Can't execute call on a null object implementation");
-				}
-				Result<Object> callResult = singleCall(resObj, c);
-				callResult.withLogs(logs -> l.add(logs));
-				if(callResult.isError()) {
-					return callResult;
-				}
-				resObj = callResult.orElse(null);
+			if(RCallContext.isExpired()) {
+				//Drop the rest of the call stack: the client no longer waits for the result
+				return Result.failure(new RDeadlineExceededException(
+					"Deadline exceeded in call stack before " + c.getMethodToCall()));
 			}
-			return Result.result(resObj);
-		});
-
+			Result<Object> callResult = singleCall(resObj, c, logging);
+			if(logging) {
+				callResult.withLogs(addLogs);
+			}
+			if(callResult.isError()) {
+				return callResult;
+			}
+			resObj = callResult.orElse(null);
+		}
+		return Result.result(resObj);
 	}
 
 
@@ -1,6 +1,7 @@
 package com.persistentbit.substema;
 
 import com.persistentbit.core.Nothing;
+import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.logging.Log;
 
 import java.time.LocalDateTime;
@@ -15,12 +16,18 @@ import java.util.Optional;
  */
 public class RSessionManager<DATA>{
 
-	private DATA          data;
-	private LocalDateTime expires;
+	private DATA                       data;
+	private LocalDateTime              expires;
+	private final PMap<String, String> callHeaders;
 
-	public RSessionManager(DATA data, LocalDateTime expires) {
+	public RSessionManager(DATA data, LocalDateTime expires, PMap<String, String> callHeaders) {
 		this.data = data;
 		this.expires = expires;
+		this.callHeaders = callHeaders;
+	}
+
+	public RSessionManager(DATA data, LocalDateTime expires) {
+		this(data, expires, PMap.empty());
 	}
 
 	public RSessionManager() {
@@ -47,6 +54,16 @@ public class RSessionManager<DATA>{
 		return Optional.ofNullable(data);
 	}
 
+	/**
+	 * Get the headers of the remote call that created this session manager,
+	 * like the tracing ids from {@link RTracing}.
+	 *
+	 * @return The call headers
+	 */
+	public PMap<String, String> getCallHeaders() {
+		return callHeaders;
+	}
+
 	public Optional<LocalDateTime> getExpires() {
 		return Optional.of(expires);
 	}
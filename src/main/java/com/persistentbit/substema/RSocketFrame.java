@@ -0,0 +1,146 @@
+package com.persistentbit.substema;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A frame of the socket transport used by {@link RemoteServiceSocketClient} and {@link RemoteServiceSocketServer}.<br>
+ * Wire format: {@code [int length][long id][byte status][payload]}, where length is the number
+ * of bytes after the length field.<br>
+ * The low 3 bits of the status byte are the status, bit 3 is the {@link #flagStringTable} flag
+ * and the high 4 bits are the {@link RCompression} id of the payload.<br>
+ * The id correlates a response with its request, so calls can be answered out of order.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+final class RSocketFrame{
+
+	/**
+	 * Status of a request or a successful response: the payload is a json document.
+	 */
+	static final byte statusOk        = 0;
+	/**
+	 * Status of a failed response: the payload is the error message.
+	 */
+	static final byte statusError     = 1;
+	/**
+	 * Flag for a payload that is encoded with the {@link RStringTable} of the sender.
+	 */
+	static final byte flagStringTable = 0x08;
+
+	static final int maxFrameLength = 64 * 1024 * 1024;
+
+	private static final int headerLength = 8 + 1;
+
+	final long   id;
+	final byte   status;
+	final byte[] payload;
+
+	RSocketFrame(long id, byte status, byte[] payload) {
+		this.id = id;
+		this.status = status;
+		this.payload = payload;
+	}
+
+	/**
+	 * Create a frame with a payload that is compressed when it is larger then the threshold.
+	 */
+	static RSocketFrame create(long id, byte status, byte[] payload, RCompression compression, int threshold) {
+		RCompression selected = compression.select(payload, threshold);
+		return new RSocketFrame(id, (byte) (status | (selected.getId() << 4)), selected.compress(payload));
+	}
+
+	/**
+	 * @return The status without the flags and the compression id
+	 */
+	byte getStatus() {
+		return (byte) (status & 0x07);
+	}
+
+	boolean isStringTableEncoded() {
+		return (status & flagStringTable) != 0;
+	}
+
+	/**
+	 * Get the payload as text, decoded with a string table if the frame is encoded.
+	 *
+	 * @param stringTable The string table for the incoming frames of the connection
+	 *
+	 * @return The decompressed and decoded text
+	 */
+	String getText(RStringTable stringTable) {
+		String text = new String(getPayload(), StandardCharsets.UTF_8);
+		return isStringTableEncoded() ? stringTable.decode(text) : text;
+	}
+
+	/**
+	 * @return The decompressed payload, not larger then {@link #maxFrameLength}
+	 */
+	byte[] getPayload() {
+		int compressionId = (status >> 4) & 0x0F;
+		if(compressionId == 0) {
+			return payload;
+		}
+		return RCompression.forId(compressionId)
+			.orElseThrow(() -> new RObjException("Unknown compression id " + compressionId))
+			.decompress(payload, maxFrameLength);
+	}
+
+	/**
+	 * Write this frame. Callers must make sure that frames are not written concurrently.
+	 *
+	 * @param channel The channel to write to
+	 *
+	 * @throws IOException On write error
+	 */
+	void write(WritableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + headerLength + payload.length);
+		buffer.putInt(headerLength + payload.length);
+		buffer.putLong(id);
+		buffer.put(status);
+		buffer.put(payload);
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Read the next frame.
+	 *
+	 * @param channel The channel to read from
+	 *
+	 * @return The frame
+	 *
+	 * @throws EOFException When the channel was closed by the other side
+	 * @throws IOException  On read error or invalid frame length
+	 */
+	static RSocketFrame read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer lengthBuffer = readFully(channel, ByteBuffer.allocate(4));
+		int        length       = lengthBuffer.getInt();
+		if(length < headerLength || length > maxFrameLength) {
+			throw new IOException("Invalid frame length: " + length);
+		}
+		ByteBuffer frame   = readFully(channel, ByteBuffer.allocate(length));
+		long       id      = frame.getLong();
+		byte       status  = frame.get();
+		byte[]     payload = new byte[length - headerLength];
+		frame.get(payload);
+		return new RSocketFrame(id, status, payload);
+	}
+
+	private static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				throw new EOFException("Connection closed");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
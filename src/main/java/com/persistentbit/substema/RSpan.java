@@ -0,0 +1,76 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.Nullable;
+import com.persistentbit.core.utils.BaseValueClass;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A recorded tracing span: the time spent in a remote call on the client or on the server side.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RSpanRecorder
+ */
+public class RSpan extends BaseValueClass{
+
+	public enum Kind{
+		client, server
+	}
+
+	private final String traceId;
+	private final String spanId;
+	@Nullable
+	private final String parentSpanId;
+	private final String name;
+	private final Kind   kind;
+	private final long   startEpochMillis;
+	private final long   durationNanos;
+	private final boolean failed;
+
+	public RSpan(String traceId, String spanId, String parentSpanId, String name, Kind kind, long startEpochMillis,
+				 long durationNanos, boolean failed
+	) {
+		this.traceId = Objects.requireNonNull(traceId);
+		this.spanId = Objects.requireNonNull(spanId);
+		this.parentSpanId = parentSpanId;
+		this.name = Objects.requireNonNull(name);
+		this.kind = Objects.requireNonNull(kind);
+		this.startEpochMillis = startEpochMillis;
+		this.durationNanos = durationNanos;
+		this.failed = failed;
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public String getSpanId() {
+		return spanId;
+	}
+
+	public Optional<String> getParentSpanId() {
+		return Optional.ofNullable(parentSpanId);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public long getStartEpochMillis() {
+		return startEpochMillis;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	public boolean isFailed() {
+		return failed;
+	}
+}
@@ -0,0 +1,88 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PList;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * In memory {@link RSpanRecorder} that keeps the last recorded spans
+ * and can print a trace as a tree, showing where the time of every call went across the hops.<br>
+ * Example output of {@link #printTrace(String)}:
+ * <pre>
+ * RootService#getLoggedInService client 12.30ms
+ *   RootService#getLoggedInService server 10.10ms
+ *     UserService#getUser client 8.00ms
+ *       UserService#getUser server 7.20ms
+ * </pre>
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class RSpanCollector implements RSpanRecorder{
+
+	private final int         maxSpans;
+	private final Deque<RSpan> spans = new ArrayDeque<>();
+
+	/**
+	 * @param maxSpans The maximum number of spans to keep.
+	 */
+	public RSpanCollector(int maxSpans) {
+		this.maxSpans = maxSpans;
+	}
+
+	public RSpanCollector() {
+		this(10_000);
+	}
+
+	@Override
+	public synchronized void record(RSpan span) {
+		if(spans.size() >= maxSpans) {
+			spans.removeFirst();
+		}
+		spans.addLast(span);
+	}
+
+	public synchronized PList<RSpan> getSpans() {
+		return PList.<RSpan>empty().plusAll(spans);
+	}
+
+	public PList<RSpan> getTrace(String traceId) {
+		return getSpans().filter(s -> s.getTraceId().equals(traceId)).plist();
+	}
+
+	/**
+	 * Print all the spans of a trace as a tree.
+	 *
+	 * @param traceId The trace id
+	 *
+	 * @return The trace tree
+	 */
+	public String printTrace(String traceId) {
+		PList<RSpan>  trace = getTrace(traceId);
+		StringBuilder sb    = new StringBuilder();
+		trace.filter(s -> s.getParentSpanId().map(p -> trace.find(ps -> ps.getSpanId().equals(p)).isPresent() == false)
+			.orElse(true))
+			.forEach(root -> print(sb, trace, root, 0));
+		return sb.toString();
+	}
+
+	private void print(StringBuilder sb, PList<RSpan> trace, RSpan span, int level) {
+		for(int t = 0; t < level; t++) {
+			sb.append("  ");
+		}
+		sb.append(span.getName()).append(' ').append(span.getKind())
+			.append(' ').append(String.format("%.2fms", span.getDurationNanos() / 1_000_000.0));
+		if(span.isFailed()) {
+			sb.append(" FAILED");
+		}
+		sb.append(System.lineSeparator());
+		trace.filter(s -> s.getParentSpanId().map(p -> p.equals(span.getSpanId())).orElse(false))
+			.forEach(child -> print(sb, trace, child, level + 1));
+	}
+
+	@Override
+	public String toString() {
+		return "RSpanCollector[" + maxSpans + "]";
+	}
+}
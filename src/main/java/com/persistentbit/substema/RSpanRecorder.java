@@ -0,0 +1,21 @@
+package com.persistentbit.substema;
+
+/**
+ * Receives finished tracing spans.<br>
+ * Implementations must be thread safe.
+ * Use {@link RSpanCollector} for an in-memory recorder or implement this interface to
+ * forward the spans to a tracing system.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@FunctionalInterface
+public interface RSpanRecorder{
+
+	/**
+	 * A recorder that ignores all spans
+	 */
+	RSpanRecorder none = span -> {};
+
+	void record(RSpan span);
+}
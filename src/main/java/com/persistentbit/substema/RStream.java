@@ -0,0 +1,211 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.jjson.mapping.JJReader;
+import com.persistentbit.jjson.mapping.impl.JJObjectReader;
+import com.persistentbit.jjson.nodes.JJNode;
+import com.persistentbit.jjson.nodes.JJNodeObject;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A stream of values returned by a remote method, transferred in chunks.<br>
+ * A service implementation returns a stream for an Iterator or Iterable:<br>
+ * {@code
+ * public Result<RStream<TestValue>> getAllValues() {
+ * return Result.success(RStream.of(values));
+ * }
+ * }
+ * The {@link RServer} sends the first chunk of the stream with the call result and keeps
+ * the source iterator for the rest of the items.
+ * On the client, the {@link RProxy} connects the stream to the server, so the next chunks
+ * are pulled when the client iterates past the items it has.<br>
+ * A stream can only be iterated once. Call {@link #close()} to release the server resources
+ * for a stream that is not completely iterated.
+ *
+ * @param <T> The item type
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public final class RStream<T> implements Iterable<T>, AutoCloseable{
+
+	/**
+	 * Pulls the next chunk of a remote stream.
+	 */
+	@FunctionalInterface
+	interface Puller<T>{
+
+		/**
+		 * @param streamId The stream to pull from
+		 * @param maxItems The maximum number of items to pull, 0 to cancel the stream
+		 *
+		 * @return The next chunk
+		 */
+		RStream<T> pull(String streamId, int maxItems);
+	}
+
+	private final String                streamId;
+	private final PList<T>              items;
+	private final boolean               hasMore;
+	private final transient Iterator<T> source;
+	private final transient Puller<T>   puller;
+	private transient boolean           consumed;
+
+	private RStream(String streamId, PList<T> items, boolean hasMore, Iterator<T> source, Puller<T> puller) {
+		this.streamId = streamId;
+		this.items = Objects.requireNonNull(items);
+		this.hasMore = hasMore;
+		this.source = source;
+		this.puller = puller;
+	}
+
+	/**
+	 * Create a stream on the implementation side.
+	 *
+	 * @param source The source of the items
+	 * @param <T>    The item type
+	 *
+	 * @return The new stream
+	 */
+	public static <T> RStream<T> of(Iterator<T> source) {
+		return new RStream<>(null, PList.empty(), true, Objects.requireNonNull(source), null);
+	}
+
+	public static <T> RStream<T> of(Iterable<T> source) {
+		return of(source.iterator());
+	}
+
+	/**
+	 * Create a chunk of a stream as sent to the client.
+	 */
+	static <T> RStream<T> chunk(String streamId, PList<T> items, boolean hasMore) {
+		return new RStream<>(streamId, items, hasMore, null, null);
+	}
+
+	/**
+	 * Get the source iterator of an implementation stream.
+	 * For a received chunk this iterates over the items of the chunk.
+	 */
+	Iterator<T> getSource() {
+		return source == null ? items.iterator() : source;
+	}
+
+	String getStreamId() {
+		return streamId;
+	}
+
+	PList<T> getItems() {
+		return items;
+	}
+
+	boolean hasMore() {
+		return hasMore && streamId != null;
+	}
+
+	/**
+	 * Connect a received chunk with the server, so the rest of the stream can be pulled.
+	 */
+	RStream<T> withPuller(Puller<T> puller) {
+		return new RStream<>(streamId, items, hasMore, source, puller);
+	}
+
+	@Override
+	public synchronized Iterator<T> iterator() {
+		if(consumed) {
+			throw new IllegalStateException("A RStream can only be iterated once");
+		}
+		consumed = true;
+		if(source != null) {
+			return source;
+		}
+		return new ChunkIterator();
+	}
+
+	/**
+	 * Read the complete stream in a list.
+	 *
+	 * @return All the items of the stream
+	 */
+	public PList<T> plist() {
+		return PList.<T>empty().plusAll(this);
+	}
+
+	/**
+	 * Cancel the rest of the stream on the server.<br>
+	 * Not needed when the stream is completely iterated.
+	 */
+	@Override
+	public synchronized void close() {
+		consumed = true;
+		if(hasMore() && puller != null) {
+			puller.pull(streamId, 0);
+		}
+	}
+
+	private class ChunkIterator implements Iterator<T>{
+
+		private RStream<T> chunk = RStream.this;
+		private int        index;
+
+		@Override
+		public boolean hasNext() {
+			while(index >= chunk.items.size()) {
+				if(chunk.hasMore() == false) {
+					return false;
+				}
+				if(puller == null) {
+					throw new RObjException("RStream is not connected to a server");
+				}
+				chunk = puller.pull(chunk.streamId, Math.max(1, items.size()));
+				index = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public T next() {
+			if(hasNext() == false) {
+				throw new NoSuchElementException();
+			}
+			return chunk.items.get(index++);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RStream[" + (streamId == null ? "local" : streamId) + ", " + items.size() + " items" +
+			(hasMore ? ", more" : "") + "]";
+	}
+
+	public static final JJObjectReader jsonReader = (type, node, masterReader) -> {
+		if(node.getType() == JJNode.JType.jsonNull) {
+			return null;
+		}
+		return readJson(type, node, masterReader);
+	};
+
+	private static RStream<Object> readJson(Type type, JJNode node, JJReader masterReader) {
+		JJNodeObject obj = node.asObject().orElseThrow();
+		Type itemType = type instanceof ParameterizedType
+			? ((ParameterizedType) type).getActualTypeArguments()[0]
+			: Object.class;
+		Class<?> itemClass = itemType instanceof ParameterizedType
+			? (Class<?>) ((ParameterizedType) itemType).getRawType()
+			: itemType instanceof Class ? (Class<?>) itemType : Object.class;
+		String streamId = obj.get("streamId")
+			.filter(n -> n.asNull().isPresent() == false)
+			.map(n -> masterReader.read(n, String.class))
+			.orElse(null);
+		boolean hasMore = masterReader.read(obj.get("hasMore").get(), Boolean.class);
+		PList<Object> items = PList.empty();
+		for(JJNode itemNode : obj.get("items").get().asArray().orElseThrow().pstream().plist()) {
+			items = items.plus(masterReader.read(itemNode, itemClass, itemType));
+		}
+		return chunk(streamId, items, hasMore);
+	}
+}
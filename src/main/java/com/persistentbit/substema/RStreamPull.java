@@ -0,0 +1,45 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.utils.BaseValueClass;
+
+import java.util.Objects;
+
+/**
+ * Request for the next chunk of a {@link RStream}, send in a {@link RCall} instead of a method call.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class RStreamPull extends BaseValueClass{
+
+	private final String           streamId;
+	private final MethodDefinition source;
+	private final int              maxItems;
+
+	/**
+	 * @param streamId The id of the stream on the server
+	 * @param source   The method that returned the stream, used for reading the items on the client
+	 * @param maxItems The maximum number of items to return, 0 to cancel the stream
+	 */
+	public RStreamPull(String streamId, MethodDefinition source, int maxItems) {
+		this.streamId = Objects.requireNonNull(streamId);
+		this.source = Objects.requireNonNull(source);
+		this.maxItems = maxItems;
+	}
+
+	public String getStreamId() {
+		return streamId;
+	}
+
+	public MethodDefinition getSource() {
+		return source;
+	}
+
+	public int getMaxItems() {
+		return maxItems;
+	}
+
+	public boolean isCancel() {
+		return maxItems == 0;
+	}
+}
@@ -0,0 +1,170 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PList;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the open sources of the {@link RStream} and {@link RCursor} results of a {@link RServer}.<br>
+ * Sources that are not pulled within the idle timeout are removed.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+final class RStreamRegistry{
+
+	/**
+	 * A chunk of items taken from a source.
+	 */
+	static final class Chunk<T>{
+
+		/**
+		 * The id of the registered source, null if the source has no more items.
+		 */
+		final String   id;
+		final PList<T> items;
+
+		Chunk(String id, PList<T> items) {
+			this.id = id;
+			this.items = items;
+		}
+
+		boolean hasMore() {
+			return id != null;
+		}
+	}
+
+	private static final class OpenSource{
+
+		final Iterator<?> source;
+		final int         maxItems;
+		volatile long     lastAccess;
+
+		OpenSource(Iterator<?> source, int maxItems) {
+			this.source = source;
+			this.maxItems = maxItems;
+			this.lastAccess = System.nanoTime();
+		}
+	}
+
+	private final int                               chunkSize;
+	private final long                              idleNanos;
+	private final ConcurrentMap<String, OpenSource> sources   = new ConcurrentHashMap<>();
+	private final AtomicLong                        lastSweep = new AtomicLong(System.nanoTime());
+
+	RStreamRegistry(int chunkSize, long idleTimeout, TimeUnit timeUnit) {
+		if(chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be > 0");
+		}
+		this.chunkSize = chunkSize;
+		this.idleNanos = timeUnit.toNanos(idleTimeout);
+	}
+
+	int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Create the first chunk of a stream returned by a service implementation.
+	 *
+	 * @param stream The implementation stream
+	 *
+	 * @return The first chunk
+	 */
+	<T> RStream<T> open(RStream<T> stream) {
+		Chunk<T> chunk = open(stream.getSource(), PList.empty(), chunkSize, chunkSize);
+		return RStream.chunk(chunk.id, chunk.items, chunk.hasMore());
+	}
+
+	/**
+	 * Register the rest of a cursor returned by a service implementation.
+	 *
+	 * @param cursor The implementation cursor with the first page
+	 *
+	 * @return The first page as sent to the client
+	 */
+	<T> RCursor<T> open(RCursor<T> cursor) {
+		if(cursor.hasNext() == false) {
+			return RCursor.page(null, cursor.getItems(), cursor.getPageSize());
+		}
+		Chunk<T> chunk = open(cursor.getSource(), cursor.getItems(), 0, cursor.getPageSize());
+		return RCursor.page(chunk.id, chunk.items, cursor.getPageSize());
+	}
+
+	/**
+	 * Take items from a source and register the source when it has more items.
+	 *
+	 * @param source   The source
+	 * @param first    Items already taken from the source
+	 * @param count    Number of items to take
+	 * @param maxItems Maximum number of items for a pull
+	 */
+	private <T> Chunk<T> open(Iterator<T> source, PList<T> first, int count, int maxItems) {
+		sweep();
+		PList<T> items = first.plusAll(take(source, count));
+		if(source.hasNext() == false) {
+			return new Chunk<>(null, items);
+		}
+		String id = UUID.randomUUID().toString();
+		sources.put(id, new OpenSource(source, maxItems));
+		return new Chunk<>(id, items);
+	}
+
+	/**
+	 * Get the next chunk of an open source
+	 *
+	 * @param pull The pull request
+	 *
+	 * @return The next chunk or an empty last chunk if the source is canceled
+	 *
+	 * @throws RObjException When the source is unknown or expired
+	 */
+	@SuppressWarnings("unchecked")
+	Chunk<Object> pull(RStreamPull pull) {
+		sweep();
+		OpenSource open = sources.get(pull.getStreamId());
+		if(open == null || pull.isCancel()) {
+			sources.remove(pull.getStreamId());
+			if(open == null && pull.isCancel() == false) {
+				throw new RObjException("Unknown or expired stream " + pull.getStreamId());
+			}
+			return new Chunk<>(null, PList.empty());
+		}
+		synchronized(open) {
+			open.lastAccess = System.nanoTime();
+			Iterator<Object> source = (Iterator<Object>) open.source;
+			PList<Object>    items  = take(source, Math.min(pull.getMaxItems(), open.maxItems));
+			if(source.hasNext() == false) {
+				sources.remove(pull.getStreamId());
+				return new Chunk<>(null, items);
+			}
+			return new Chunk<>(pull.getStreamId(), items);
+		}
+	}
+
+	int getOpenCount() {
+		return sources.size();
+	}
+
+	static <T> PList<T> take(Iterator<T> source, int count) {
+		PList<T> items = PList.empty();
+		for(int t = 0; t < count && source.hasNext(); t++) {
+			items = items.plus(source.next());
+		}
+		return items;
+	}
+
+	private void sweep() {
+		long now  = System.nanoTime();
+		long last = lastSweep.get();
+		if(now - last < TimeUnit.SECONDS.toNanos(1) || lastSweep.compareAndSet(last, now) == false) {
+			return;
+		}
+		sources.entrySet().removeIf(e -> now - e.getValue().lastAccess > idleNanos);
+	}
+}
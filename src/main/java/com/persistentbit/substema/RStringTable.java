@@ -0,0 +1,162 @@
+package com.persistentbit.substema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One direction of a per connection string table for json payloads.<br>
+ * The first occurrence of a name (object keys included) defines a new index in the table,
+ * later occurrences are replaced by a reference {@code "\u0001<index>"}.
+ * Class names, method names and parameter names in {@link MethodDefinition}s, call stacks and
+ * {@link RemoteObjectDefinition}s are then only send once per connection.<br>
+ * Only string literals that look like a (qualified) java name are added, with a maximum length,
+ * so unique values like ids, texts or encoded data don't fill the table or stay in memory.<br>
+ * The raw control character \u0001 can't occur in a json string literal (it must be escaped),
+ * so a reference can't be confused with a normal string.<br>
+ * The encoder and decoder of a connection must see the same documents in the same order.
+ * Short strings are not added and the table has a maximum size; both sides apply the same rules,
+ * so the tables stay in sync without extra messages.<br>
+ * Instances are not thread safe.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RSocketFrame#flagStringTable
+ */
+final class RStringTable{
+
+	private static final char marker     = '\u0001';
+	private static final int  minLength  = 4;
+	private static final int  maxLength  = 128;
+	private static final int  maxEntries = 8192;
+
+	private final Map<String, Integer> indexes = new HashMap<>();
+	private final List<String>         strings = new ArrayList<>();
+
+	/**
+	 * Replace the known string literals in a json document with references.
+	 *
+	 * @param json The json document
+	 *
+	 * @return The encoded document
+	 */
+	String encode(String json) {
+		StringBuilder out = new StringBuilder(json.length());
+		int           i   = 0;
+		while(i < json.length()) {
+			char c = json.charAt(i);
+			if(c != '"') {
+				out.append(c);
+				i++;
+				continue;
+			}
+			int     end     = endOfString(json, i + 1);
+			String  content = json.substring(i + 1, end);
+			Integer index   = indexes.get(content);
+			out.append('"');
+			if(index != null) {
+				out.append(marker).append(index.intValue());
+			}
+			else {
+				if(add(content)) {
+					indexes.put(content, strings.size() - 1);
+				}
+				out.append(content);
+			}
+			out.append('"');
+			i = end + 1;
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Replace the references in an encoded json document with the original strings.
+	 *
+	 * @param encoded The encoded document
+	 *
+	 * @return The json document
+	 */
+	String decode(String encoded) {
+		StringBuilder out = new StringBuilder(encoded.length() * 2);
+		int           i   = 0;
+		while(i < encoded.length()) {
+			char c = encoded.charAt(i);
+			if(c != '"') {
+				out.append(c);
+				i++;
+				continue;
+			}
+			int    end     = endOfString(encoded, i + 1);
+			String content = encoded.substring(i + 1, end);
+			out.append('"');
+			if(content.length() > 0 && content.charAt(0) == marker) {
+				int index = Integer.parseInt(content.substring(1));
+				if(index >= strings.size()) {
+					throw new RObjException("Unknown string table index " + index);
+				}
+				out.append(strings.get(index));
+			}
+			else {
+				add(content);
+				out.append(content);
+			}
+			out.append('"');
+			i = end + 1;
+		}
+		return out.toString();
+	}
+
+	private boolean add(String content) {
+		if(strings.size() >= maxEntries || isName(content) == false) {
+			return false;
+		}
+		strings.add(content);
+		return true;
+	}
+
+	/**
+	 * Check if a string literal is a protocol name: a java identifier or a dotted qualified name.
+	 *
+	 * @param content The content of the string literal
+	 *
+	 * @return true if the literal may be added to the table
+	 */
+	static boolean isName(String content) {
+		if(content.length() < minLength || content.length() > maxLength
+			|| Character.isJavaIdentifierStart(content.charAt(0)) == false) {
+			return false;
+		}
+		for(int i = 1; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if(c != '.' && Character.isJavaIdentifierPart(c) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Find the closing quote of a json string literal.
+	 *
+	 * @param json  The json text
+	 * @param start Index of the first character after the opening quote
+	 *
+	 * @return Index of the closing quote
+	 */
+	private static int endOfString(String json, int start) {
+		int i = start;
+		while(i < json.length()) {
+			char c = json.charAt(i);
+			if(c == '"') {
+				return i;
+			}
+			i += c == '\\' ? 2 : 1;
+		}
+		throw new RObjException("Unterminated json string");
+	}
+
+	int size() {
+		return strings.size();
+	}
+}
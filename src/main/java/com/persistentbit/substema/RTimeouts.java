@@ -0,0 +1,89 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PMap;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeout settings for the calls made by a {@link RProxy}.<br>
+ * The timeout of a call is the timeout for the method or the default timeout of the proxy.
+ * The {@link RProxy} converts the timeout into the deadline of the {@link RCall},
+ * limited by the deadline of the {@link RCallContext}.<br>
+ * Usage:<br>
+ * {@code
+ * RootService service = RProxy.create(remoteService, RTimeouts.of(5, TimeUnit.SECONDS)
+ *      .withMethodTimeout(ReportService.class, "createReport", 1, TimeUnit.MINUTES)
+ * );
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public final class RTimeouts{
+
+	/**
+	 * No timeouts: only the deadline of the {@link RCallContext} is used
+	 */
+	public static final RTimeouts none = new RTimeouts(0, PMap.empty());
+
+	private final long               defaultMillis;
+	private final PMap<String, Long> methodMillis;
+
+	private RTimeouts(long defaultMillis, PMap<String, Long> methodMillis) {
+		this.defaultMillis = defaultMillis;
+		this.methodMillis = Objects.requireNonNull(methodMillis);
+	}
+
+	/**
+	 * Create timeouts with a default timeout for all methods
+	 *
+	 * @param timeout  The timeout
+	 * @param timeUnit The time unit of the timeout
+	 *
+	 * @return The timeouts
+	 */
+	public static RTimeouts of(long timeout, TimeUnit timeUnit) {
+		return new RTimeouts(timeUnit.toMillis(timeout), PMap.empty());
+	}
+
+	/**
+	 * Set the timeout for a method
+	 *
+	 * @param remotableClass The remotable interface
+	 * @param methodName     The name of the method in the interface
+	 * @param timeout        The timeout
+	 * @param timeUnit       The time unit of the timeout
+	 *
+	 * @return New timeouts
+	 */
+	public RTimeouts withMethodTimeout(Class<?> remotableClass, String methodName, long timeout, TimeUnit timeUnit) {
+		return new RTimeouts(
+			defaultMillis, methodMillis.put(remotableClass.getName() + "#" + methodName, timeUnit.toMillis(timeout))
+		);
+	}
+
+	/**
+	 * Calculate the deadline for a call
+	 *
+	 * @param md The method to call
+	 *
+	 * @return The deadline in epoch milliseconds or null for no deadline
+	 */
+	Long deadline(MethodDefinition md) {
+		long millis = methodMillis
+			.getOpt(md.getRemotableClass().getName() + "#" + md.getMethodName())
+			.orElse(defaultMillis);
+		Long contextDeadline = RCallContext.getDeadline().orElse(null);
+		if(millis <= 0) {
+			return contextDeadline;
+		}
+		long deadline = System.currentTimeMillis() + millis;
+		return contextDeadline == null ? deadline : Math.min(deadline, contextDeadline);
+	}
+
+	@Override
+	public String toString() {
+		return "RTimeouts[default=" + defaultMillis + "ms, methods=" + methodMillis + "]";
+	}
+}
@@ -0,0 +1,68 @@
+package com.persistentbit.substema;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Names of the tracing headers in {@link RCall#getHeaders()} and {@link RCallResult#getHeaders()}
+ * and some tracing utilities.<br>
+ * The tracing context is propagated as follows:
+ * <ul>
+ * <li>{@link RemoteServiceTracer} starts a client span and puts the trace and span id in the call headers.</li>
+ * <li>{@link RServer} starts a server span as child of the client span and makes the headers
+ * available to the implementation with {@link RCallContext} and {@link RSessionManager#getCallHeaders()}.</li>
+ * <li>{@link RProxy} copies the {@link RCallContext} headers in every call, so nested remote calls
+ * made by a service implementation are part of the same trace.</li>
+ * </ul>
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RSpanCollector
+ */
+public final class RTracing{
+
+	/**
+	 * Header with the id of the trace, shared by all spans of a trace.
+	 */
+	public static final String traceIdHeader     = "trace-id";
+	/**
+	 * Header with the id of the current (parent) span.
+	 */
+	public static final String spanIdHeader      = "span-id";
+	/**
+	 * Result header with the nanoseconds the call executed on the server.
+	 */
+	public static final String serverNanosHeader = "server-nanos";
+
+	private RTracing() {
+	}
+
+	/**
+	 * Create a new random trace or span id.
+	 *
+	 * @return A 16 character hex string
+	 */
+	public static String newId() {
+		long id = ThreadLocalRandom.current().nextLong();
+		String hex = Long.toHexString(id);
+		return "0000000000000000".substring(hex.length()) + hex;
+	}
+
+	/**
+	 * Create a readable span name for a call.
+	 *
+	 * @param call The call
+	 *
+	 * @return The span name
+	 */
+	public static String spanName(RCall call) {
+		if(call.getStreamPull() != null) {
+			MethodDefinition md = call.getStreamPull().getSource();
+			return md.getRemotableClass().getSimpleName() + "#" + md.getMethodName() + " pull";
+		}
+		if(call.getThisCall() == null) {
+			return "root";
+		}
+		MethodDefinition md = call.getThisCall().getMethodToCall();
+		return md.getRemotableClass().getSimpleName() + "#" + md.getMethodName();
+	}
+}
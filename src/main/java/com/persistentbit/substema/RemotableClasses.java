@@ -30,6 +30,32 @@ public final class RemotableClasses{
         return getRemotableClass(ReflectionUtils.classFromType(pt.getActualTypeArguments()[0])) != null;
     }
 
+    /**
+     * Check if a remotable method returns a {@link RStream} in its Result.
+     * @param m The method
+     * @return true for a {@code Result<RStream<...>>} return type.
+     */
+    public static boolean returnsStream(Method m) {
+        if(m.getReturnType().equals(Result.class) == false) {
+            throw new RuntimeException("Expected a result type");
+        }
+        ParameterizedType pt = (ParameterizedType) m.getGenericReturnType();
+        return ReflectionUtils.classFromType(pt.getActualTypeArguments()[0]) == RStream.class;
+    }
+
+    /**
+     * Check if a remotable method returns a {@link RCursor} in its Result.
+     * @param m The method
+     * @return true for a {@code Result<RCursor<...>>} return type.
+     */
+    public static boolean returnsCursor(Method m) {
+        if(m.getReturnType().equals(Result.class) == false) {
+            throw new RuntimeException("Expected a result type");
+        }
+        ParameterizedType pt = (ParameterizedType) m.getGenericReturnType();
+        return ReflectionUtils.classFromType(pt.getActualTypeArguments()[0]) == RCursor.class;
+    }
+
     public static Class<?> getRemotableClass(Class<?> cls) {
         if(cls == CompletableFuture.class){
             throw new RuntimeException("Unreference ComputableFuture");
@@ -6,6 +6,7 @@ import com.persistentbit.core.collections.PStream;
 import com.persistentbit.core.logging.Log;
 import com.persistentbit.core.result.Result;
 import com.persistentbit.core.tuples.Tuple2;
+import com.persistentbit.jjson.mapping.JJReader;
 import com.persistentbit.jjson.mapping.impl.JJObjectReader;
 import com.persistentbit.jjson.nodes.JJNode;
 import com.persistentbit.jjson.nodes.JJNodeArray;
@@ -85,26 +86,32 @@ public class RemoteObjectDefinition implements Serializable
         return result;
     }
 
-    public static final JJObjectReader jsonReader = (type, node, masterReader) ->
-        Log.function().code(l -> {
-            JJNodeObject obj       = node.asObject().orElseThrow();
-            Class        cls       = masterReader.read(obj.get("remoteObjectClass").orElse(null), Class.class);
-            RCallStack   callStack = masterReader.read(obj.get("callStack").get(), RCallStack.class);
-            JJNodeArray  mdArr     = obj.get("remoteMethods").get().asArray().orElseThrow();
-            PList<MethodDefinition> remoteMethods = mdArr.pstream().map(item ->
-                                                                            masterReader
-                                                                                .read(item, MethodDefinition.class)
-            ).plist();
-            JJNodeArray cachedArr = obj.get("remoteCached").get().asArray().orElseThrow();
-            PMap<MethodDefinition, Result> cached = PStream.toMap(cachedArr.pstream().map(itemObj -> {
-                PList<JJNode>    keyValueNodes = itemObj.asArray().orElseThrow().pstream().plist();
-                MethodDefinition itemMd        = masterReader.read(keyValueNodes.get(0), MethodDefinition.class);
-                Method           m             = RemotableMethods.getRemotableMethod(itemMd);
-                Type             typeValue     = m.getGenericReturnType();
-                Result           result        = masterReader.read(keyValueNodes.get(1), Result.class, typeValue);
-                return Tuple2.of(itemMd, result);
-            }));
-            return new RemoteObjectDefinition(cls, remoteMethods, cached, callStack);
-        });
+    public static final JJObjectReader jsonReader = (type, node, masterReader) -> {
+        if(RLogging.isLoggingAll()) {
+            return Log.function().code(l -> readJson(node, masterReader));
+        }
+        return RLogging.unloggedValue(() -> readJson(node, masterReader));
+    };
+
+    private static RemoteObjectDefinition readJson(JJNode node, JJReader masterReader) {
+        JJNodeObject obj       = node.asObject().orElseThrow();
+        Class        cls       = masterReader.read(obj.get("remoteObjectClass").orElse(null), Class.class);
+        RCallStack   callStack = masterReader.read(obj.get("callStack").get(), RCallStack.class);
+        JJNodeArray  mdArr     = obj.get("remoteMethods").get().asArray().orElseThrow();
+        PList<MethodDefinition> remoteMethods = mdArr.pstream().map(item ->
+                                                                        masterReader
+                                                                            .read(item, MethodDefinition.class)
+        ).plist();
+        JJNodeArray cachedArr = obj.get("remoteCached").get().asArray().orElseThrow();
+        PMap<MethodDefinition, Result> cached = PStream.toMap(cachedArr.pstream().map(itemObj -> {
+            PList<JJNode>    keyValueNodes = itemObj.asArray().orElseThrow().pstream().plist();
+            MethodDefinition itemMd        = masterReader.read(keyValueNodes.get(0), MethodDefinition.class);
+            Method           m             = RemotableMethods.getRemotableMethod(itemMd);
+            Type             typeValue     = m.getGenericReturnType();
+            Result           result        = masterReader.read(keyValueNodes.get(1), Result.class, typeValue);
+            return Tuple2.of(itemMd, result);
+        }));
+        return new RemoteObjectDefinition(cls, remoteMethods, cached, callStack);
+    }
 
 }
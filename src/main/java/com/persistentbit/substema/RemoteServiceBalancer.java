@@ -0,0 +1,322 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link RemoteService} that spreads the calls over a pool of endpoints,
+ * for example {@link RemoteServiceHttpClient}s for the replicas of a {@link RServer}.<br>
+ * Call stacks and session data are signed with the shared secret of the servers,
+ * so any replica can execute any call. Only the pulls of a {@link RStream} or {@link RCursor}
+ * are sent to the endpoint that returned the stream, because the open streams are kept per server.
+ * A stream stays pinned to its endpoint until a pull returns the last items, so a failed pull
+ * is retried on the same endpoint.<br>
+ * The endpoint for a call is selected by a {@link Strategy}.
+ * Endpoints are checked passively: an endpoint with too many consecutive transport failures
+ * or {@link RCallResult#isRejected() rejected} calls is ejected from the pool for some time.
+ * At most half of the endpoints are ejected, so a failure of all the endpoints doesn't empty the pool.<br>
+ * Usage:<br>
+ * {@code
+ * RemoteService service = new RemoteServiceBalancer(PList.val(http1, http2, http3),
+ *      RemoteServiceBalancer.Strategy.powerOfTwoChoices
+ * );
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class RemoteServiceBalancer implements RemoteService{
+
+	/**
+	 * How the endpoint for a call is selected.
+	 */
+	public enum Strategy{
+		/**
+		 * The endpoints in turn
+		 */
+		roundRobin,
+		/**
+		 * The endpoint with the lowest number of outstanding calls
+		 */
+		leastOutstanding,
+		/**
+		 * The best of 2 random endpoints, using the latency (exponentially weighted moving average)
+		 * multiplied by the number of outstanding calls.
+		 */
+		powerOfTwoChoices
+	}
+
+	private static final double ewmaWeight = 0.2;
+	private static final int    maxPinned  = 10_000;
+	private static final long   pinIdle    = TimeUnit.MINUTES.toNanos(10);
+
+	private final PList<Endpoint>                endpoints;
+	private final Strategy                       strategy;
+	private final int                            maxFailures;
+	private final long                           ejectionNanos;
+	private final AtomicInteger                  next        = new AtomicInteger();
+	private final Object                         ejectLock   = new Object();
+	private final Map<String, Pin>               pinned      = new ConcurrentHashMap<>();
+	private final Map<MethodDefinition, Boolean> opensStream = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a balancer that ejects an endpoint for 30 seconds after 5 consecutive failures.
+	 *
+	 * @param endpoints The services for the endpoints
+	 * @param strategy  The strategy to select an endpoint
+	 */
+	public RemoteServiceBalancer(PList<RemoteService> endpoints, Strategy strategy) {
+		this(endpoints.map(Endpoint::new), strategy, 5, TimeUnit.SECONDS.toNanos(30));
+	}
+
+	private RemoteServiceBalancer(PList<Endpoint> endpoints, Strategy strategy, int maxFailures, long ejectionNanos) {
+		if(endpoints.isEmpty()) {
+			throw new IllegalArgumentException("Expected at least 1 endpoint");
+		}
+		this.endpoints = endpoints;
+		this.strategy = Objects.requireNonNull(strategy);
+		this.maxFailures = maxFailures;
+		this.ejectionNanos = ejectionNanos;
+	}
+
+	/**
+	 * Set the outlier ejection.
+	 *
+	 * @param consecutiveFailures Number of consecutive transport failures that ejects an endpoint
+	 * @param ejectionTime        Time an endpoint is ejected from the pool
+	 * @param timeUnit            Time unit of the ejection time
+	 *
+	 * @return A new balancer for the same endpoints
+	 */
+	public RemoteServiceBalancer withOutlierEjection(int consecutiveFailures, long ejectionTime, TimeUnit timeUnit) {
+		return new RemoteServiceBalancer(
+			endpoints.map(e -> new Endpoint(e.service)), strategy, consecutiveFailures, timeUnit.toNanos(ejectionTime)
+		);
+	}
+
+	@Override
+	public Result<RCallResult> call(RCall call) {
+		//Selected when the caller forces the result, so the caller's deadline applies
+		return Result.lazy(() -> balance(call));
+	}
+
+	private Result<RCallResult> balance(RCall call) {
+		RStreamPull pull     = call.getStreamPull();
+		Endpoint    endpoint = null;
+		if(pull != null) {
+			Pin pin = pinned.get(pull.getStreamId());
+			endpoint = pin == null ? null : pin.endpoint;
+		}
+		if(endpoint == null) {
+			endpoint = select(System.nanoTime());
+		}
+		endpoint.outstanding.incrementAndGet();
+		long                start = System.nanoTime();
+		Result<RCallResult> result;
+		try {
+			result = endpoint.service.call(call).completed();
+		} catch(RuntimeException e) {
+			result = Result.failure(e);
+		} finally {
+			endpoint.outstanding.decrementAndGet();
+		}
+		long now = System.nanoTime();
+		if(result.isError() || result.map(RCallResult::isRejected).orElse(false)) {
+			failed(endpoint, now);
+		}
+		else {
+			endpoint.succeeded(now - start);
+			if(pull != null || (call.getThisCall() != null && opensStream(call.getThisCall().getMethodToCall()))) {
+				String pinnedId = pinStream(result.orElseThrow(), endpoint, now);
+				if(pull != null && pull.getStreamId().equals(pinnedId) == false) {
+					//The last items are pulled or the stream is closed
+					pinned.remove(pull.getStreamId());
+				}
+			}
+		}
+		return result;
+	}
+
+	private boolean opensStream(MethodDefinition md) {
+		return opensStream.computeIfAbsent(md, m -> {
+			Method method = RemotableMethods.getRemotableMethod(m);
+			return RemotableClasses.returnsStream(method) || RemotableClasses.returnsCursor(method);
+		});
+	}
+
+	private Endpoint select(long now) {
+		PList<Endpoint> available = endpoints.filter(e -> e.isEjected(now) == false);
+		if(available.isEmpty()) {
+			available = endpoints;
+		}
+		int size = available.size();
+		if(size == 1) {
+			return available.get(0);
+		}
+		switch(strategy) {
+			case roundRobin:
+				return available.get(Math.floorMod(next.getAndIncrement(), size));
+			case leastOutstanding:
+				Endpoint least = available.get(Math.floorMod(next.getAndIncrement(), size));
+				for(Endpoint e : available) {
+					if(e.outstanding.get() < least.outstanding.get()) {
+						least = e;
+					}
+				}
+				return least;
+			case powerOfTwoChoices:
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				int first  = random.nextInt(size);
+				int second = random.nextInt(size - 1);
+				if(second >= first) {
+					second++;
+				}
+				Endpoint a = available.get(first);
+				Endpoint b = available.get(second);
+				return a.load() <= b.load() ? a : b;
+			default:
+				throw new RObjException("Unknown strategy " + strategy);
+		}
+	}
+
+	/**
+	 * Count a failure of an endpoint.<br>
+	 * Endpoints are only ejected while holding the lock, so concurrent failures
+	 * of different endpoints can't eject more than half of the endpoints.
+	 */
+	private void failed(Endpoint endpoint, long now) {
+		synchronized(ejectLock) {
+			endpoint.failed(now, maxFailures, ejectionNanos, canEject(now));
+		}
+	}
+
+	/**
+	 * At most half of the endpoints can be ejected.
+	 */
+	private boolean canEject(long now) {
+		int ejected = endpoints.filter(e -> e.isEjected(now)).size();
+		return ejected + 1 <= endpoints.size() / 2;
+	}
+
+	/**
+	 * Remember the endpoint of a stream or cursor in a result, so the next pull goes to the same endpoint.
+	 *
+	 * @return The pinned stream id or null when the result has no more items
+	 */
+	private String pinStream(RCallResult callResult, Endpoint endpoint, long now) {
+		Result<Object> value = callResult.getResult().map(Result::completed).orElse(null);
+		if(value == null || value.isError() || value.isEmpty()) {
+			return null;
+		}
+		Object obj = value.orElseThrow();
+		String id  = null;
+		if(obj instanceof RStream) {
+			RStream<?> stream = (RStream<?>) obj;
+			id = stream.hasMore() ? stream.getStreamId() : null;
+		}
+		else if(obj instanceof RCursor) {
+			id = ((RCursor<?>) obj).getCursorId();
+		}
+		if(id == null) {
+			return null;
+		}
+		//Pins are only added while holding the lock, so concurrent pins can't pass the limit
+		synchronized(pinned) {
+			if(pinned.size() >= maxPinned && pinned.containsKey(id) == false) {
+				removeIdlePins(now);
+			}
+			pinned.put(id, new Pin(endpoint, now));
+		}
+		return id;
+	}
+
+	/**
+	 * Remove the pins that are not used for some time, or the oldest pin when all pins are in use.
+	 */
+	private void removeIdlePins(long now) {
+		Map.Entry<String, Pin>           oldest = null;
+		Iterator<Map.Entry<String, Pin>> iter   = pinned.entrySet().iterator();
+		while(iter.hasNext()) {
+			Map.Entry<String, Pin> entry = iter.next();
+			if(now - entry.getValue().created > pinIdle) {
+				iter.remove();
+			}
+			else if(oldest == null || entry.getValue().created - oldest.getValue().created < 0) {
+				oldest = entry;
+			}
+		}
+		if(pinned.size() >= maxPinned && oldest != null) {
+			pinned.remove(oldest.getKey());
+		}
+	}
+
+	@Override
+	public void close(long timeOut, TimeUnit timeUnit) {
+		endpoints.forEach(e -> e.service.close(timeOut, timeUnit));
+	}
+
+	@Override
+	public String toString() {
+		return "RemoteServiceBalancer[" + strategy + ", " + endpoints.map(e -> e.service).toString(", ") + "]";
+	}
+
+	private static final class Pin{
+
+		private final Endpoint endpoint;
+		private final long     created;
+
+		Pin(Endpoint endpoint, long created) {
+			this.endpoint = endpoint;
+			this.created = created;
+		}
+	}
+
+	/**
+	 * An endpoint with its passive health statistics.
+	 */
+	private static final class Endpoint{
+
+		private final RemoteService service;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private double              ewmaNanos;
+		private int                 consecutiveFailures;
+		private volatile long       ejectedUntil;
+		private volatile boolean    ejected;
+
+		Endpoint(RemoteService service) {
+			this.service = Objects.requireNonNull(service);
+		}
+
+		boolean isEjected(long now) {
+			return ejected && ejectedUntil - now > 0;
+		}
+
+		synchronized double load() {
+			return ewmaNanos * (outstanding.get() + 1);
+		}
+
+		synchronized void succeeded(long latency) {
+			consecutiveFailures = 0;
+			ejected = false;
+			ewmaNanos = ewmaNanos == 0 ? latency : ewmaNanos + ewmaWeight * (latency - ewmaNanos);
+		}
+
+		synchronized void failed(long now, int maxFailures, long ejectionNanos, boolean canEject) {
+			consecutiveFailures++;
+			if(consecutiveFailures >= maxFailures && canEject) {
+				consecutiveFailures = 0;
+				ejectedUntil = now + ejectionNanos;
+				ejected = true;
+			}
+		}
+	}
+}
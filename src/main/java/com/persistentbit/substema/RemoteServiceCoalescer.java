@@ -0,0 +1,157 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PMap;
+import com.persistentbit.core.result.Result;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A {@link RemoteService} decorator that coalesces identical in-flight calls.<br>
+ * When multiple threads execute the same call (same session, same signed call stack,
+ * same method, equal arguments, same headers and same idempotency key) at the same moment,
+ * only the first call is sent to the master service. All the other callers wait for that call,
+ * until their own deadline, and get the same {@link RCallResult}.<br>
+ * Tracing headers and the idempotency keys of a {@link RemoteServiceRetry} are different for every call,
+ * so put the coalescer in front of a {@link RemoteServiceTracer} and a {@link RemoteServiceRetry}.<br>
+ * Methods returning a {@link RStream} or a {@link RCursor} are never coalesced, because every
+ * call opens its own stream or cursor on the server.<br>
+ * Only use this for methods without side effects, or limit the coalesced methods
+ * with a filter:<br>
+ * {@code
+ * RemoteService service = new RemoteServiceCoalescer(http, md -> md.getMethodName().startsWith("get"));
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RProxy
+ */
+public class RemoteServiceCoalescer implements RemoteService{
+
+	private final RemoteService                                                  master;
+	private final Predicate<MethodDefinition>                                    coalesce;
+	private final ConcurrentMap<CallKey, CompletableFuture<Result<RCallResult>>> inFlight =
+		new ConcurrentHashMap<>();
+	private final ConcurrentMap<MethodDefinition, Boolean>                       opensStream =
+		new ConcurrentHashMap<>();
+
+	/**
+	 * @param master   The service that executes the calls
+	 * @param coalesce Filter for the methods that may be coalesced.
+	 */
+	public RemoteServiceCoalescer(RemoteService master, Predicate<MethodDefinition> coalesce) {
+		this.master = Objects.requireNonNull(master);
+		this.coalesce = Objects.requireNonNull(coalesce);
+	}
+
+	/**
+	 * Create a coalescer that coalesces all methods.
+	 *
+	 * @param master The service that executes the calls
+	 */
+	public RemoteServiceCoalescer(RemoteService master) {
+		this(master, md -> true);
+	}
+
+	@Override
+	public Result<RCallResult> call(RCall call) {
+		if(call.getStreamPull() != null
+			|| (call.getThisCall() != null && isCoalesced(call.getThisCall().getMethodToCall()) == false)) {
+			return master.call(call);
+		}
+		//Coalesced when the caller forces the result, so the caller's deadline applies to the wait
+		return Result.lazy(() -> Result.function(call).code(l -> {
+			CallKey                                key    = new CallKey(call);
+			CompletableFuture<Result<RCallResult>> future = new CompletableFuture<>();
+			CompletableFuture<Result<RCallResult>> leader = inFlight.putIfAbsent(key, future);
+			if(leader != null) {
+				l.info("Coalesced with in-flight call");
+				return RFutures.await(leader, call.getDeadline().orElse(null));
+			}
+			try {
+				Result<RCallResult> result = master.call(call).completed();
+				future.complete(result);
+				return result;
+			} catch(RuntimeException e) {
+				future.complete(Result.failure(e));
+				throw e;
+			} finally {
+				inFlight.remove(key, future);
+			}
+		}));
+	}
+
+	private boolean isCoalesced(MethodDefinition md) {
+		boolean stream = opensStream.computeIfAbsent(md, m -> {
+			Method method = RemotableMethods.getRemotableMethod(m);
+			return RemotableClasses.returnsStream(method) || RemotableClasses.returnsCursor(method);
+		});
+		return stream == false && coalesce.test(md);
+	}
+
+	@Override
+	public void close(long timeOut, TimeUnit timeUnit) {
+		master.close(timeOut, timeUnit);
+	}
+
+	@Override
+	public String toString() {
+		return "RemoteServiceCoalescer[" + master + "]";
+	}
+
+	/**
+	 * Identity of a call: the session, the signature of the call stack,
+	 * the method to call, the arguments, the headers and the idempotency key.
+	 */
+	private static final class CallKey{
+
+		private final RSessionData         sessionData;
+		private final String               callStackSignature;
+		private final MethodDefinition     method;
+		private final Object[]             arguments;
+		private final PMap<String, String> headers;
+		private final String               idempotencyKey;
+		private final int                  hash;
+
+		CallKey(RCall call) {
+			this.sessionData = call.getSessionData();
+			this.callStackSignature = call.getCallStack() == null ? null : call.getCallStack().getSignature();
+			this.method = call.getThisCall() == null ? null : call.getThisCall().getMethodToCall();
+			this.arguments = call.getThisCall() == null ? null : call.getThisCall().getArguments();
+			this.headers = call.getHeaders();
+			this.idempotencyKey = call.getIdempotencyKey().orElse(null);
+			int h = Objects.hashCode(sessionData);
+			h = 31 * h + Objects.hashCode(callStackSignature);
+			h = 31 * h + Objects.hashCode(method);
+			h = 31 * h + Arrays.deepHashCode(arguments);
+			h = 31 * h + Objects.hashCode(headers);
+			h = 31 * h + Objects.hashCode(idempotencyKey);
+			this.hash = h;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(this == o) return true;
+			if(o == null || getClass() != o.getClass()) return false;
+			CallKey that = (CallKey) o;
+			return hash == that.hash
+				&& Objects.equals(sessionData, that.sessionData)
+				&& Objects.equals(callStackSignature, that.callStackSignature)
+				&& Objects.equals(method, that.method)
+				&& Arrays.deepEquals(arguments, that.arguments)
+				&& Objects.equals(headers, that.headers)
+				&& Objects.equals(idempotencyKey, that.idempotencyKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
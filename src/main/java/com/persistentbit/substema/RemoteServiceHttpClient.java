@@ -1,20 +1,25 @@
 package com.persistentbit.substema;
 
 import com.persistentbit.core.result.Result;
+import com.persistentbit.core.tuples.Tuple2;
 import com.persistentbit.core.utils.IO;
 import com.persistentbit.jjson.mapping.JJMapper;
-import com.persistentbit.jjson.nodes.JJNode;
 import com.persistentbit.jjson.nodes.JJParser;
 import com.persistentbit.jjson.nodes.JJPrinter;
 
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Implementation of a {@link RemoteService} that uses a HTTP server as endpoint.<br>
@@ -22,9 +27,17 @@ import java.util.concurrent.TimeUnit;
  */
 public class RemoteServiceHttpClient implements RemoteService{
 
+    /**
+     * The maximum size of a decompressed response, so a small compressed response can't exhaust the memory
+     */
+    private static final long maxResponseSize = 64L * 1024 * 1024;
+
     private final URL             url;
     private final JJMapper        mapper;
     private final ExecutorService executor;
+    private final RMetrics        metrics;
+    private final RCompression    compression;
+    private final int             compressionThreshold;
 
     public RemoteServiceHttpClient(URL url) {
         this(url, ForkJoinPool.commonPool());
@@ -44,30 +57,84 @@ public class RemoteServiceHttpClient implements RemoteService{
 
 
     public RemoteServiceHttpClient(URL url,ExecutorService executor, JJMapper mapper){
+        this(url, executor, mapper, RMetrics.none);
+    }
+    public RemoteServiceHttpClient(String url,ExecutorService executor, JJMapper mapper){
+        this(toURL(url), executor, mapper);
+    }
+
+    /**
+     * @param url      The http endpoint
+     * @param executor The executor for the http calls
+     * @param mapper   The json mapper
+     * @param metrics  Receives the serialization time and the request and response sizes.
+     */
+    public RemoteServiceHttpClient(URL url, ExecutorService executor, JJMapper mapper, RMetrics metrics) {
+        this(url, executor, mapper, metrics, RCompression.none, RCompression.defaultThreshold);
+    }
+
+    private RemoteServiceHttpClient(URL url, ExecutorService executor, JJMapper mapper, RMetrics metrics,
+                                    RCompression compression, int compressionThreshold
+    ) {
         this.url = url;
         this.executor = executor;
         this.mapper = mapper;
+        this.metrics = metrics;
+        this.compression = Objects.requireNonNull(compression);
+        this.compressionThreshold = compressionThreshold;
     }
-    public RemoteServiceHttpClient(String url,ExecutorService executor, JJMapper mapper){
+
+    /**
+     * Create a copy of this client that compresses requests larger then the threshold.<br>
+     * Compressed responses are always accepted for all registered {@link RCompression} codecs.
+     *
+     * @param compression The codec for the requests
+     * @param threshold   Minimum request size in bytes to compress
+     *
+     * @return A new client sharing the executor with this client
+     */
+    public RemoteServiceHttpClient withCompression(RCompression compression, int threshold) {
+        return new RemoteServiceHttpClient(url, executor, mapper, metrics, compression, threshold);
+    }
+
+    private static URL toURL(String url) {
         try {
-            this.url = new URL(url);
-            this.mapper = mapper;
+            return new URL(url);
         } catch (MalformedURLException e) {
             throw new RuntimeException(e);
         }
-        this.executor = executor;
     }
 
 
     @Override
-    public Result<RCallResult> call(RCall call) {
-        return Result.async(executor, () -> Result.function(call).code(l -> {
-            JJNode callNode = mapper.write(call);
-            //log.debug(() -> url + " call " + callNode);
-            return doPost(callNode).map(resultNode -> {
-                return mapper.read(resultNode, RCallResult.class);
-            });
-        }));
+    public Result<RCallResult> call(RCall undecided) {
+        RCall   call    = RLogging.decide(undecided);
+        boolean logging = RLogging.isLogging(call);
+        return RFutures.async(executor, () -> {
+            if(logging) {
+                return Result.function(call).code(l -> doCall(call, true));
+            }
+            return RLogging.unlogged(() -> doCall(call, false));
+        });
+    }
+
+    private Result<RCallResult> doCall(RCall call, boolean logging) {
+        MethodDefinition md      = call.getThisCall() == null ? null : call.getThisCall().getMethodToCall();
+        long             start   = System.nanoTime();
+        byte[]           request = JJPrinter.print(false, mapper.write(call)).getBytes(StandardCharsets.UTF_8);
+        long             written = System.nanoTime() - start;
+        //log.debug(() -> url + " call " + callNode);
+        return doPost(request, logging).flatMap(response -> {
+            long                readStart = System.nanoTime();
+            Result<RCallResult> result    =
+                JJParser.parse(response._1).map(resultNode -> mapper.read(resultNode, RCallResult.class));
+            if(md != null) {
+                metrics.record(md, RMetric.serialization, written + System.nanoTime() - readStart);
+                metrics.record(md, RMetric.requestBytes, request.length);
+                metrics.record(md, RMetric.responseBytes, response._2);
+            }
+            return result;
+        });
     }
 
     @Override
@@ -80,29 +147,84 @@ public class RemoteServiceHttpClient implements RemoteService{
         }
     }
 
-    private Result<JJNode> doPost(JJNode content) {
-        return Result.function(content).code(l -> {
-            HttpURLConnection connection = null;
-            try {
-                connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("POST");
-                connection.setUseCaches(false);
-                connection.setDoOutput(true);
-                connection.setDoInput(true);
-                Writer w = new OutputStreamWriter(connection.getOutputStream(), "UTF-8");
-                JJPrinter.print(false, content, w);
-                w.flush();
-                return IO.readTextStream(connection.getInputStream(),IO.utf8).flatMap(data -> {
-                    l.info("Do Post Result: " + data);
-                    return JJParser.parse(data);
-                });
-            } finally {
-                if(connection != null) {
-                    connection.disconnect();
-                }
+    /**
+     * Post the request and read the response.
+     *
+     * @param request The serialized call
+     * @param logging Should we log the response ?
+     *
+     * @return The response text and the number of bytes read.
+     */
+    private Result<Tuple2<String, Long>> doPost(byte[] request, boolean logging) {
+        if(logging) {
+            return Result.function(url).code(l -> post(request, data -> l.info("Do Post Result: " + data)));
+        }
+        return RLogging.unlogged(() -> post(request, data -> {}));
+    }
+
+    private Result<Tuple2<String, Long>> post(byte[] request, Consumer<String> logResult) throws Exception {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setUseCaches(false);
+            connection.setDoOutput(true);
+            connection.setDoInput(true);
+            connection.setRequestProperty("Accept-Encoding", RCompression.acceptEncoding());
+            RCompression requestCompression = compression.select(request, compressionThreshold);
+            byte[]       body               = requestCompression.compress(request);
+            if(requestCompression != RCompression.none) {
+                connection.setRequestProperty("Content-Encoding", requestCompression.getName());
             }
-        });
+            connection.setFixedLengthStreamingMode(body.length);
+            try(OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            String contentEncoding = connection.getContentEncoding();
+            RCompression responseCompression = RCompression.forName(contentEncoding).orElseThrow(
+                () -> new RObjException("Unsupported response Content-Encoding: " + contentEncoding)
+            );
+            //Count the bytes on the wire, before decompression
+            CountingInputStream in = new CountingInputStream(connection.getInputStream());
+            return IO.readTextStream(responseCompression.decompress(in, maxResponseSize), IO.utf8).map(data -> {
+                logResult.accept(data);
+                return Tuple2.of(data, in.count);
+            });
+        } finally {
+            if(connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
 
+    /**
+     * InputStream that counts the number of bytes read.
+     */
+    private static final class CountingInputStream extends FilterInputStream{
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if(c != -1) {
+                count++;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if(n > 0) {
+                count += n;
+            }
+            return n;
+        }
     }
 
 }
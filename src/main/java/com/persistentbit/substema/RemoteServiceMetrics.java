@@ -0,0 +1,59 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.result.Result;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RemoteService} decorator that records the number of calls,
+ * the latency and the failures for every remote method in a {@link RMetrics} instance.<br>
+ * Calls to get the root object are not recorded.<br>
+ * Lazy call results are not forced, so failures of lazy results are not counted.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RMetricsRegistry
+ */
+public class RemoteServiceMetrics implements RemoteService{
+
+	private final RemoteService master;
+	private final RMetrics      metrics;
+
+	public RemoteServiceMetrics(RemoteService master, RMetrics metrics) {
+		this.master = Objects.requireNonNull(master);
+		this.metrics = Objects.requireNonNull(metrics);
+	}
+
+	@Override
+	public Result<RCallResult> call(RCall call) {
+		if(call.getThisCall() == null) {
+			return master.call(call);
+		}
+		MethodDefinition md = call.getThisCall().getMethodToCall();
+		//Measured when the caller forces the result, so the caller's deadline applies
+		return Result.lazy(() -> {
+			long                start  = System.nanoTime();
+			Result<RCallResult> result = master.call(call).completed();
+			metrics.record(md, RMetric.latency, System.nanoTime() - start);
+			//Don't force lazy results: only count completed failures
+			boolean failed = result.isError()
+				|| result.orElseThrow().getResult().map(r -> r.isComplete() && r.isError()).orElse(false)
+				|| result.orElseThrow().getRod().map(r -> r.isComplete() && r.isError()).orElse(false);
+			if(failed) {
+				metrics.failed(md);
+			}
+			return result;
+		});
+	}
+
+	@Override
+	public void close(long timeOut, TimeUnit timeUnit) {
+		master.close(timeOut, timeUnit);
+	}
+
+	@Override
+	public String toString() {
+		return "RemoteServiceMetrics[" + master + "]";
+	}
+}
@@ -0,0 +1,330 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.result.Result;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * A {@link RemoteService} decorator that retries failed calls and optionally hedges slow calls.<br>
+ * A call is retried when the master service fails (ex. an I/O error in {@link RemoteServiceHttpClient})
+ * or when the server {@link RCallResult#isRejected() rejected} the call.
+ * Failures returned by the implementation are never retried.
+ * Stream pulls are never retried: a pull that failed after the server read the chunk would skip that chunk.<br>
+ * Every call gets an {@link RCall#getIdempotencyKey() idempotency key} that is the same for all attempts.
+ * A {@link RServer} with {@link RServer#withIdempotencyCache(long, TimeUnit, int) an idempotency cache}
+ * executes a call only once, even when the first attempt failed after the call was executed.<br>
+ * The delay between attempts is an exponential backoff with full jitter. The attempts are scheduled on a timer,
+ * so no thread sleeps during the backoff.
+ * A retry budget limits the retries to a fraction of the calls, so retries can't multiply
+ * the load on a server that is already failing.<br>
+ * With hedging, a second attempt is sent to the hedge service when the first attempt takes longer than
+ * the 95th percentile latency of the method. The first result that is not a failure is used.
+ * Only hedge idempotent methods or use an idempotency cache on the servers.<br>
+ * Usage:<br>
+ * {@code
+ * RemoteService service = new RemoteServiceRetry(http, md -> true)
+ *      .withBackoff(4, 50, 2000, TimeUnit.MILLISECONDS)
+ *      .withHedging(otherHttp, md -> md.getMethodName().startsWith("get"));
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RIdempotencyCache
+ */
+public class RemoteServiceRetry implements RemoteService{
+
+	private static final int minHedgeSamples = 20;
+
+	private static final Logger log = Logger.getLogger(RemoteServiceRetry.class.getName());
+
+	/**
+	 * Threads for the attempts
+	 */
+	private static final ExecutorService attempts = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "RemoteServiceRetry-attempt");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * Timer that starts the next attempt after the backoff delay
+	 */
+	private static final ScheduledThreadPoolExecutor backoffTimer = new ScheduledThreadPoolExecutor(1, r -> {
+		Thread t = new Thread(r, "RemoteServiceRetry-backoff");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final RemoteService                               master;
+	private final Predicate<MethodDefinition>                 retry;
+	private final int                                         maxAttempts;
+	private final long                                        initialDelayNanos;
+	private final long                                        maxDelayNanos;
+	private final RetryBudget                                 budget;
+	private final RemoteService                               hedgeService;
+	private final Predicate<MethodDefinition>                 hedge;
+	private final ConcurrentMap<MethodDefinition, RHistogram> latencies = new ConcurrentHashMap<>();
+
+	/**
+	 * Create a retry decorator with 3 attempts, a backoff between 100ms and 5 seconds
+	 * and a retry budget of 10% of the calls.
+	 *
+	 * @param master The service that executes the calls
+	 * @param retry  Filter for the methods that may be retried
+	 */
+	public RemoteServiceRetry(RemoteService master, Predicate<MethodDefinition> retry) {
+		this(master, retry, 3, TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.SECONDS.toNanos(5),
+			 new RetryBudget(0.1, 10), null, md -> false
+		);
+	}
+
+	private RemoteServiceRetry(RemoteService master, Predicate<MethodDefinition> retry, int maxAttempts,
+							   long initialDelayNanos, long maxDelayNanos, RetryBudget budget,
+							   RemoteService hedgeService, Predicate<MethodDefinition> hedge
+	) {
+		if(maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts must be > 0");
+		}
+		this.master = Objects.requireNonNull(master);
+		this.retry = Objects.requireNonNull(retry);
+		this.maxAttempts = maxAttempts;
+		this.initialDelayNanos = initialDelayNanos;
+		this.maxDelayNanos = maxDelayNanos;
+		this.budget = Objects.requireNonNull(budget);
+		this.hedgeService = hedgeService;
+		this.hedge = Objects.requireNonNull(hedge);
+	}
+
+	/**
+	 * Set the maximum number of attempts and the exponential backoff between the attempts.
+	 *
+	 * @param maxAttempts  The maximum number of attempts, including the first one
+	 * @param initialDelay The maximum delay before the first retry
+	 * @param maxDelay     The maximum delay between two attempts
+	 * @param timeUnit     The time unit of the delays
+	 *
+	 * @return A new RemoteServiceRetry
+	 */
+	public RemoteServiceRetry withBackoff(int maxAttempts, long initialDelay, long maxDelay, TimeUnit timeUnit) {
+		return new RemoteServiceRetry(master, retry, maxAttempts, timeUnit.toNanos(initialDelay),
+									  timeUnit.toNanos(maxDelay), budget, hedgeService, hedge
+		);
+	}
+
+	/**
+	 * Set the retry budget.<br>
+	 * Every call adds ratio tokens to the budget and every retry takes one token,
+	 * so at most ratio retries are done per call on average.
+	 *
+	 * @param ratio     The number of retries per call (ex. 0.1 for 10%)
+	 * @param maxTokens The maximum number of saved tokens, allowing bursts of retries
+	 *
+	 * @return A new RemoteServiceRetry
+	 */
+	public RemoteServiceRetry withRetryBudget(double ratio, int maxTokens) {
+		return new RemoteServiceRetry(master, retry, maxAttempts, initialDelayNanos, maxDelayNanos,
+									  new RetryBudget(ratio, maxTokens), hedgeService, hedge
+		);
+	}
+
+	/**
+	 * Send a second attempt to another service when a call is slow.
+	 *
+	 * @param hedgeService The service for the hedged attempts, normally the same server through another endpoint
+	 * @param hedge        Filter for the methods that may be hedged
+	 *
+	 * @return A new RemoteServiceRetry
+	 */
+	public RemoteServiceRetry withHedging(RemoteService hedgeService, Predicate<MethodDefinition> hedge) {
+		return new RemoteServiceRetry(master, retry, maxAttempts, initialDelayNanos, maxDelayNanos, budget,
+									  Objects.requireNonNull(hedgeService), hedge
+		);
+	}
+
+	@Override
+	public Result<RCallResult> call(RCall call) {
+		MethodDefinition md = call.getThisCall() == null ? null : call.getThisCall().getMethodToCall();
+		if(call.getStreamPull() != null || (md != null && retry.test(md) == false)) {
+			return master.call(call);
+		}
+		//The attempts start when the caller forces the result, so the caller's deadline applies
+		return Result.lazy(() -> Result.function(call).code(l -> {
+			RCall keyed = call.getIdempotencyKey().isPresent()
+				? call
+				: call.withIdempotencyKey(UUID.randomUUID().toString());
+			budget.deposit();
+			CompletableFuture<Result<RCallResult>> done = new CompletableFuture<>();
+			execute(keyed, md, 1, done);
+			Result<RCallResult> result = RFutures.await(done);
+			//Stops the attempts when the caller stopped waiting
+			done.complete(result);
+			return result;
+		}));
+	}
+
+	/**
+	 * Execute an attempt on the attempt threads and schedule the next attempt when it must be retried.
+	 *
+	 * @param call    The call with the idempotency key
+	 * @param md      The method or null for a root call
+	 * @param attempt The number of the attempt, starting at 1
+	 * @param done    Completed with the final result
+	 */
+	private void execute(RCall call, MethodDefinition md, int attempt, CompletableFuture<Result<RCallResult>> done) {
+		try {
+			attempts.execute(() -> {
+				try {
+					Result<RCallResult> result = attempt(call, md);
+					if(isRetryable(result) == false || attempt >= maxAttempts || done.isDone()) {
+						done.complete(result);
+						return;
+					}
+					long delay = backoff(attempt);
+					if(call.getDeadline().map(d -> System.currentTimeMillis() + delay / 1_000_000 > d).orElse(false)) {
+						log.fine("No retry: deadline passed before the next attempt of " + call);
+						done.complete(result);
+						return;
+					}
+					if(budget.withdraw() == false) {
+						log.fine("No retry: retry budget exhausted for " + call);
+						done.complete(result);
+						return;
+					}
+					log.fine("Retry attempt " + (attempt + 1) + " of " + call + " after " + result);
+					backoffTimer.schedule(() -> execute(call, md, attempt + 1, done), delay, TimeUnit.NANOSECONDS);
+				} catch(InterruptedException e) {
+					done.complete(Result.failure(e));
+				} catch(RuntimeException e) {
+					done.complete(Result.failure(e));
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			done.complete(Result.failure(e));
+		}
+	}
+
+	private static boolean isRetryable(Result<RCallResult> result) {
+		return result.isError() || result.orElseThrow().isRejected();
+	}
+
+	/**
+	 * Random delay between 0 and the exponential backoff for the attempt (full jitter).
+	 */
+	private long backoff(int attempt) {
+		long max = initialDelayNanos << Math.min(attempt - 1, 30);
+		if(max <= 0 || max > maxDelayNanos) {
+			max = maxDelayNanos;
+		}
+		return ThreadLocalRandom.current().nextLong(max + 1);
+	}
+
+	private Result<RCallResult> attempt(RCall call, MethodDefinition md) throws InterruptedException {
+		if(md == null) {
+			return master.call(call).completed();
+		}
+		RHistogram latency = latencies.computeIfAbsent(md, k -> new RHistogram());
+		long       start   = System.nanoTime();
+		Result<RCallResult> result;
+		if(hedgeService == null || hedge.test(md) == false || latency.getCount() < minHedgeSamples) {
+			result = master.call(call).completed();
+		}
+		else {
+			result = hedged(call, latency.getPercentile(95));
+		}
+		if(isRetryable(result) == false) {
+			latency.record(System.nanoTime() - start);
+		}
+		return result;
+	}
+
+	/**
+	 * Execute a call on the master service and on the hedge service when the master is slower than the delay.
+	 */
+	private Result<RCallResult> hedged(RCall call, long hedgeDelayNanos) throws InterruptedException {
+		CompletableFuture<Result<RCallResult>> first =
+			CompletableFuture.supplyAsync(() -> master.call(call).completed(), attempts);
+		try {
+			return first.get(hedgeDelayNanos, TimeUnit.NANOSECONDS);
+		} catch(TimeoutException e) {
+			//The master is slow: send the same call (same idempotency key) to the hedge service
+		} catch(ExecutionException e) {
+			return Result.failure(e.getCause());
+		}
+		CompletableFuture<Result<RCallResult>> second =
+			CompletableFuture.supplyAsync(() -> hedgeService.call(call).completed(), attempts);
+		CompletableFuture<Result<RCallResult>> winner = new CompletableFuture<>();
+		first.thenAccept(r -> completeHedge(winner, r, second));
+		second.thenAccept(r -> completeHedge(winner, r, first));
+		try {
+			return winner.get();
+		} catch(ExecutionException e) {
+			return Result.failure(e.getCause());
+		}
+	}
+
+	/**
+	 * The first result that is not retryable wins. When both attempts are retryable, the last one is used.
+	 */
+	private static void completeHedge(CompletableFuture<Result<RCallResult>> winner, Result<RCallResult> result,
+									  CompletableFuture<Result<RCallResult>> other
+	) {
+		if(isRetryable(result) == false || other.isDone()) {
+			winner.complete(result);
+		}
+	}
+
+	@Override
+	public void close(long timeOut, TimeUnit timeUnit) {
+		master.close(timeOut, timeUnit);
+		if(hedgeService != null) {
+			hedgeService.close(timeOut, timeUnit);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RemoteServiceRetry[" + master + "]";
+	}
+
+	/**
+	 * Token bucket that limits the retries to a fraction of the calls.
+	 */
+	private static final class RetryBudget{
+
+		private final double ratio;
+		private final double maxTokens;
+		private double       tokens;
+
+		RetryBudget(double ratio, int maxTokens) {
+			this.ratio = ratio;
+			this.maxTokens = maxTokens;
+			this.tokens = maxTokens;
+		}
+
+		synchronized void deposit() {
+			tokens = Math.min(maxTokens, tokens + ratio);
+		}
+
+		synchronized boolean withdraw() {
+			if(tokens < 1) {
+				return false;
+			}
+			tokens -= 1;
+			return true;
+		}
+	}
+}
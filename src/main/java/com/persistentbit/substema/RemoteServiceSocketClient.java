@@ -0,0 +1,261 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.result.Result;
+import com.persistentbit.jjson.mapping.JJMapper;
+import com.persistentbit.jjson.nodes.JJParser;
+import com.persistentbit.jjson.nodes.JJPrinter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of a {@link RemoteService} that uses one persistent socket connection
+ * to a {@link RemoteServiceSocketServer}.<br>
+ * Concurrent calls are multiplexed over the connection with a request id per call,
+ * the responses can arrive in any order.<br>
+ * The number of calls waiting for a response is limited: when the limit is reached,
+ * new calls block until a response arrives.<br>
+ * Calls are written to the connection by a writer thread, so an interrupted caller (ex. a call
+ * that passed its deadline) never closes the connection.
+ * When the connection is lost, all calls waiting for a response fail and the next call opens a new connection.
+ * When the server can't be reached, calls fail immediately.<br>
+ * Usage:<br>
+ * {@code
+ * RootService root = RProxy.create(new RemoteServiceSocketClient(new InetSocketAddress("localhost", 4321)));
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RSocketFrame
+ */
+public class RemoteServiceSocketClient implements RemoteService{
+
+	private final InetSocketAddress address;
+	private final JJMapper          mapper;
+	private final RCompression      compression;
+	private final int               compressionThreshold;
+	private final Semaphore         inFlight;
+	private final AtomicLong        nextId = new AtomicLong();
+	private Connection              connection;
+	private volatile boolean        closed;
+
+	private static final byte statusEncoded = RSocketFrame.statusOk | RSocketFrame.flagStringTable;
+
+	public RemoteServiceSocketClient(InetSocketAddress address) {
+		this(address, 256, new JJMapper());
+	}
+
+	/**
+	 * @param address     The address of the {@link RemoteServiceSocketServer}
+	 * @param maxInFlight The maximum number of calls waiting for a response
+	 * @param mapper      The json mapper
+	 */
+	public RemoteServiceSocketClient(InetSocketAddress address, int maxInFlight, JJMapper mapper) {
+		this(address, maxInFlight, mapper, RCompression.none, RCompression.defaultThreshold);
+	}
+
+	/**
+	 * @param address     The address of the {@link RemoteServiceSocketServer}
+	 * @param maxInFlight The maximum number of calls waiting for a response
+	 * @param mapper      The json mapper
+	 * @param compression The codec for calls larger then the threshold
+	 * @param threshold   Minimum call size in bytes to compress
+	 */
+	public RemoteServiceSocketClient(InetSocketAddress address, int maxInFlight, JJMapper mapper,
+									 RCompression compression, int threshold
+	) {
+		this.address = Objects.requireNonNull(address);
+		this.mapper = mapper;
+		this.compression = Objects.requireNonNull(compression);
+		this.compressionThreshold = threshold;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.connection = new Connection(connect());
+	}
+
+	private SocketChannel connect() {
+		try {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			return channel;
+		} catch(IOException e) {
+			throw new RObjException("Can't connect to " + address, e);
+		}
+	}
+
+	/**
+	 * @return The open connection, a new connection when the previous one was lost.
+	 */
+	private synchronized Connection connection() {
+		if(connection.broken && closed == false) {
+			connection = new Connection(connect());
+		}
+		return connection;
+	}
+
+	@Override
+	public Result<RCallResult> call(RCall undecided) {
+		RCall call = RLogging.decide(undecided);
+		if(RLogging.isLogging(call)) {
+			return Result.function(call).code(l -> doCall(call));
+		}
+		return RLogging.unlogged(() -> doCall(call));
+	}
+
+	private Result<RCallResult> doCall(RCall call) throws InterruptedException {
+		String     request = JJPrinter.print(false, mapper.write(call));
+		Connection current;
+		try {
+			current = connection();
+		} catch(RObjException e) {
+			//The server can't be reached: fail fast
+			return Result.failure(e);
+		}
+		inFlight.acquire();
+		long                                   id     = nextId.incrementAndGet();
+		CompletableFuture<Result<RCallResult>> future = new CompletableFuture<>();
+		current.send(id, request, future);
+		return RFutures.lazy(future);
+	}
+
+	@Override
+	public void close(long timeOut, TimeUnit timeUnit) {
+		closed = true;
+		Connection current;
+		synchronized(this) {
+			current = connection;
+		}
+		try {
+			current.close(timeUnit.toMillis(timeOut));
+		} catch(IOException | InterruptedException e) {
+			throw new RObjException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RemoteServiceSocketClient[" + address + "]";
+	}
+
+	/**
+	 * A call waiting to be written by the writer thread.
+	 */
+	private static final class Request{
+
+		private final long   id;
+		private final String json;
+
+		Request(long id, String json) {
+			this.id = id;
+			this.json = json;
+		}
+	}
+
+	/**
+	 * One socket connection with its own reader and writer thread.<br>
+	 * The string tables are per connection, like on the server.
+	 */
+	private final class Connection{
+
+		private final SocketChannel                                               channel;
+		private final ConcurrentMap<Long, CompletableFuture<Result<RCallResult>>> pending    = new ConcurrentHashMap<>();
+		private final BlockingQueue<Request>                                      requests   = new LinkedBlockingQueue<>();
+		private final RStringTable                                                outStrings = new RStringTable();
+		private final RStringTable                                                inStrings  = new RStringTable();
+		private final Thread                                                      reader;
+		private final Thread                                                      writer;
+		private volatile boolean                                                  broken;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+			this.reader = new Thread(this::readResponses, "substema-socket-client " + address);
+			this.reader.setDaemon(true);
+			this.writer = new Thread(this::writeCalls, "substema-socket-client-writer " + address);
+			this.writer.setDaemon(true);
+			this.reader.start();
+			this.writer.start();
+		}
+
+		void send(long id, String json, CompletableFuture<Result<RCallResult>> future) {
+			pending.put(id, future);
+			if(broken) {
+				//Lost while we were waiting
+				complete(id, Result.failure("Connection is closed"));
+			}
+			else {
+				requests.add(new Request(id, json));
+			}
+		}
+
+		private void complete(long id, Result<RCallResult> result) {
+			CompletableFuture<Result<RCallResult>> future = pending.remove(id);
+			if(future != null) {
+				inFlight.release();
+				future.complete(result);
+			}
+		}
+
+		private void writeCalls() {
+			try {
+				while(true) {
+					Request request = requests.take();
+					//Encode in write order, so the server string table stays in sync
+					byte[] payload = outStrings.encode(request.json).getBytes(StandardCharsets.UTF_8);
+					RSocketFrame.create(request.id, statusEncoded, payload, compression, compressionThreshold)
+						.write(channel);
+				}
+			} catch(IOException | RuntimeException | InterruptedException e) {
+				lost(e);
+			}
+		}
+
+		private void readResponses() {
+			try {
+				while(true) {
+					RSocketFrame frame = RSocketFrame.read(channel);
+					String       text  = frame.getText(inStrings);
+					if(frame.getStatus() == RSocketFrame.statusOk) {
+						complete(frame.id, JJParser.parse(text).map(node -> mapper.read(node, RCallResult.class)));
+					}
+					else {
+						complete(frame.id, Result.failure(new RObjException(text)));
+					}
+				}
+			} catch(IOException | RuntimeException e) {
+				lost(e);
+			}
+		}
+
+		private void lost(Exception cause) {
+			broken = true;
+			try {
+				channel.close();
+			} catch(IOException e) {
+				//Already lost
+			}
+			writer.interrupt();
+			//Fail all calls still waiting for a response
+			for(Long id : pending.keySet()) {
+				complete(id, Result.failure(new RObjException("Connection closed", cause)));
+			}
+		}
+
+		void close(long timeOutMillis) throws IOException, InterruptedException {
+			broken = true;
+			channel.close();
+			writer.interrupt();
+			reader.join(timeOutMillis);
+		}
+	}
+}
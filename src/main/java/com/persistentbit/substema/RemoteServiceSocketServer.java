@@ -0,0 +1,251 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.result.Result;
+import com.persistentbit.jjson.mapping.JJMapper;
+import com.persistentbit.jjson.nodes.JJParser;
+import com.persistentbit.jjson.nodes.JJPrinter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Socket endpoint for a {@link RemoteService}, to be used with a {@link RemoteServiceSocketClient}.<br>
+ * Every connection has a reader thread that dispatches the calls to an executor, so calls on one connection
+ * are executed concurrently and answered in completion order.<br>
+ * The number of calls in execution per connection is limited: when the limit is reached,
+ * the server stops reading from the connection until a call is finished, which
+ * pushes back on the client through the tcp window.<br>
+ * Usage:<br>
+ * {@code
+ * RemoteServiceSocketServer server = new RemoteServiceSocketServer(new RServer<>(...), new InetSocketAddress(4321)).start();
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RSocketFrame
+ */
+public class RemoteServiceSocketServer{
+
+	private static final Logger log = Logger.getLogger(RemoteServiceSocketServer.class.getName());
+
+	private final RemoteService      service;
+	private final InetSocketAddress  address;
+	private final int                maxInFlightPerConnection;
+	private final ExecutorService    executor;
+	private final JJMapper           mapper;
+	private final RCompression       compression;
+	private final int                compressionThreshold;
+	private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+	private ServerSocketChannel      serverChannel;
+	private volatile boolean         closed;
+
+	public RemoteServiceSocketServer(RemoteService service, InetSocketAddress address) {
+		this(service, address, 64, Executors.newCachedThreadPool(), new JJMapper());
+	}
+
+	/**
+	 * @param service                  The service executing the calls
+	 * @param address                  The address to listen on
+	 * @param maxInFlightPerConnection The maximum number of calls in execution per connection
+	 * @param executor                 The executor for the calls
+	 * @param mapper                   The json mapper
+	 */
+	public RemoteServiceSocketServer(RemoteService service, InetSocketAddress address, int maxInFlightPerConnection,
+									 ExecutorService executor, JJMapper mapper
+	) {
+		this(service, address, maxInFlightPerConnection, executor, mapper, RCompression.gzip,
+			 RCompression.defaultThreshold
+		);
+	}
+
+	/**
+	 * @param service                  The service executing the calls
+	 * @param address                  The address to listen on
+	 * @param maxInFlightPerConnection The maximum number of calls in execution per connection
+	 * @param executor                 The executor for the calls
+	 * @param mapper                   The json mapper
+	 * @param compression              The codec for responses larger then the threshold
+	 * @param threshold                Minimum response size in bytes to compress
+	 */
+	public RemoteServiceSocketServer(RemoteService service, InetSocketAddress address, int maxInFlightPerConnection,
+									 ExecutorService executor, JJMapper mapper, RCompression compression,
+									 int threshold
+	) {
+		this.service = Objects.requireNonNull(service);
+		this.address = Objects.requireNonNull(address);
+		this.maxInFlightPerConnection = maxInFlightPerConnection;
+		this.executor = Objects.requireNonNull(executor);
+		this.mapper = Objects.requireNonNull(mapper);
+		this.compression = Objects.requireNonNull(compression);
+		this.compressionThreshold = threshold;
+	}
+
+	/**
+	 * Bind the server socket and start accepting connections.
+	 *
+	 * @return This server
+	 */
+	public synchronized RemoteServiceSocketServer start() {
+		if(serverChannel != null) {
+			throw new IllegalStateException("Server already started");
+		}
+		try {
+			serverChannel = ServerSocketChannel.open().bind(address);
+		} catch(IOException e) {
+			throw new RObjException("Can't bind to " + address, e);
+		}
+		Thread acceptor = new Thread(this::acceptConnections, "substema-socket-server " + address);
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return this;
+	}
+
+	/**
+	 * @return The local port of the server, useful when the server is bound to port 0.
+	 */
+	public int getPort() {
+		try {
+			return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+		} catch(IOException e) {
+			throw new RObjException(e);
+		}
+	}
+
+	private void acceptConnections() {
+		while(closed == false) {
+			try {
+				SocketChannel channel = serverChannel.accept();
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				connections.add(channel);
+				Thread reader = new Thread(() -> readCalls(channel), "substema-socket-connection " + channel);
+				reader.setDaemon(true);
+				reader.start();
+			} catch(IOException e) {
+				if(closed == false) {
+					log.warning("Error accepting connection: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void readCalls(SocketChannel channel) {
+		Semaphore    inFlight   = new Semaphore(maxInFlightPerConnection);
+		Object       writeLock  = new Object();
+		RStringTable inStrings  = new RStringTable();
+		RStringTable outStrings = new RStringTable();
+		try {
+			while(true) {
+				RSocketFrame request = RSocketFrame.read(channel);
+				//Decode in read order, so the string table stays in sync with the client
+				String json = request.getText(inStrings);
+				//Stop reading when too many calls are executing: backpressure for the client
+				inFlight.acquire();
+				try {
+					executor.execute(() -> {
+						try {
+							Result<String> response = execute(json);
+							synchronized(writeLock) {
+								//Encode in write order, so the client string table stays in sync
+								responseFrame(request.id, response, outStrings).write(channel);
+							}
+						} catch(IOException e) {
+							close(channel);
+						} finally {
+							inFlight.release();
+						}
+					});
+				} catch(RejectedExecutionException e) {
+					inFlight.release();
+					throw e;
+				}
+			}
+		} catch(IOException | InterruptedException e) {
+			close(channel);
+		} catch(RuntimeException e) {
+			//A corrupt frame or a stopped executor: the connection can't be used anymore
+			if(closed == false) {
+				log.warning("Closing connection " + channel + ": " + e);
+			}
+			close(channel);
+		}
+	}
+
+	/**
+	 * Execute a call.
+	 *
+	 * @param json The json call
+	 *
+	 * @return The json call result or a failure
+	 */
+	private Result<String> execute(String json) {
+		try {
+			RCall call = JJParser.parse(json)
+				.map(node -> mapper.read(node, RCall.class))
+				.orElseThrow();
+			RCallResult result = service.call(call).orElseThrow();
+			return Result.success(JJPrinter.print(false, mapper.write(result)));
+		} catch(RuntimeException e) {
+			return Result.failure(e);
+		}
+	}
+
+	private RSocketFrame responseFrame(long id, Result<String> response, RStringTable outStrings) {
+		try {
+			byte[] payload = outStrings.encode(response.orElseThrow()).getBytes(StandardCharsets.UTF_8);
+			return RSocketFrame.create(
+				id, (byte) (RSocketFrame.statusOk | RSocketFrame.flagStringTable), payload,
+				compression, compressionThreshold
+			);
+		} catch(RuntimeException e) {
+			String msg = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+			return new RSocketFrame(id, RSocketFrame.statusError, msg.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private void close(SocketChannel channel) {
+		connections.remove(channel);
+		try {
+			channel.close();
+		} catch(IOException e) {
+			//ignore, we are closing
+		}
+	}
+
+	/**
+	 * Stop accepting connections, close all connections and shut down the executor.
+	 *
+	 * @param timeOut  Maximum time to wait for executing calls
+	 * @param timeUnit The time unit of timeOut
+	 */
+	public void close(long timeOut, TimeUnit timeUnit) {
+		closed = true;
+		try {
+			if(serverChannel != null) {
+				serverChannel.close();
+			}
+			connections.forEach(this::close);
+			executor.shutdown();
+			executor.awaitTermination(timeOut, timeUnit);
+		} catch(IOException | InterruptedException e) {
+			throw new RObjException(e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RemoteServiceSocketServer[" + address + ", " + service + "]";
+	}
+}
@@ -0,0 +1,61 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.collections.PMap;
+import com.persistentbit.core.result.Result;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RemoteService} decorator that starts a client tracing span for every call.<br>
+ * The trace id is taken from the call headers (propagated by {@link RProxy} from the {@link RCallContext})
+ * or a new trace is started. The new span id is put in the call headers, so that
+ * the {@link RServer} can create its span as a child of this span.<br>
+ * Finished spans are given to a {@link RSpanRecorder}.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see RTracing
+ */
+public class RemoteServiceTracer implements RemoteService{
+
+	private final RemoteService master;
+	private final RSpanRecorder recorder;
+
+	public RemoteServiceTracer(RemoteService master, RSpanRecorder recorder) {
+		this.master = Objects.requireNonNull(master);
+		this.recorder = Objects.requireNonNull(recorder);
+	}
+
+	@Override
+	public Result<RCallResult> call(RCall call) {
+		PMap<String, String> headers  = call.getHeaders();
+		String               traceId  = headers.getOpt(RTracing.traceIdHeader).orElseGet(RTracing::newId);
+		String               parentId = headers.getOpt(RTracing.spanIdHeader).orElse(null);
+		String               spanId   = RTracing.newId();
+		RCall tracedCall = call.withHeaders(
+			headers.put(RTracing.traceIdHeader, traceId).put(RTracing.spanIdHeader, spanId)
+		);
+		//The span runs when the caller forces the result, so the caller's deadline applies
+		return Result.lazy(() -> {
+			long                startMillis = System.currentTimeMillis();
+			long                start       = System.nanoTime();
+			Result<RCallResult> result      = master.call(tracedCall).completed();
+			recorder.record(new RSpan(
+				traceId, spanId, parentId, RTracing.spanName(call), RSpan.Kind.client,
+				startMillis, System.nanoTime() - start, result.isError()
+			));
+			return result;
+		});
+	}
+
+	@Override
+	public void close(long timeOut, TimeUnit timeUnit) {
+		master.close(timeOut, timeUnit);
+	}
+
+	@Override
+	public String toString() {
+		return "RemoteServiceTracer[" + master + "]";
+	}
+}
@@ -102,7 +102,7 @@ public class RServiceValidator {
         defined = defined.plusAll(service.getRemoteClasses().map(rc -> rc.getName()));
         defined = defined.plusAll(service.getInterfaceClasses().map(ic -> ic.getName()));
         PSet<RClass> buildIn = PSet.empty();
-        buildIn = buildIn.plusAll(PSet.val("Byte","Short","Integer","Long","Float","Double","String","Boolean","List","Map","Set").map(n -> new RClass(service.getPackageName(),n)));
+        buildIn = buildIn.plusAll(PSet.val("Byte","Short","Integer","Long","Float","Double","String","Boolean","List","Map","Set","Stream","Cursor").map(n -> new RClass(service.getPackageName(),n)));
         PSet<RClass> all = defined.plusAll(buildIn);
         PSet<RClass> undef = needed.filter(c -> all.contains(c) == false);
         if(undef.isEmpty() == false){
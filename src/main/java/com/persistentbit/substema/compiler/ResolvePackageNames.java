@@ -6,7 +6,10 @@ import com.persistentbit.core.tuples.Tuple2;
 import com.persistentbit.substema.compiler.values.*;
 import com.persistentbit.substema.compiler.values.expr.RConst;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * After parsing,
@@ -22,14 +25,17 @@ public class ResolvePackageNames {
     private final String packageName;
     private final RSubstema originalSubstema;
     private final SubstemaCompiler compiler;
+    private final Map<Object,Object> previous;
+    private final Map<Object,Object> next;
     private  PMap<String,RClass>   resolvedNames = PMap.empty();
 
 
-    private ResolvePackageNames(SubstemaCompiler compiler,RSubstema originalSubstema) {
+    private ResolvePackageNames(SubstemaCompiler compiler,RSubstema originalSubstema, Map<Object,Object> previous, Map<Object,Object> next) {
         this.originalSubstema = originalSubstema;
         this.packageName = originalSubstema.getPackageName();
         this.compiler = compiler;
-
+        this.previous = previous;
+        this.next = next;
     }
 
     /**
@@ -39,7 +45,21 @@ public class ResolvePackageNames {
      * @return The resolved substema.
      */
     static public RSubstema    resolve(SubstemaCompiler compiler,RSubstema compiled){
-        return new ResolvePackageNames(compiler,compiled).resolve();
+        return new ResolvePackageNames(compiler,compiled,new IdentityHashMap<>(),new IdentityHashMap<>()).resolve();
+    }
+
+    /**
+     * Resolve a substema, reusing the resolved definitions of a previous resolve.<br>
+     * A top level definition that is the same instance as a key in previous is not resolved again.<br>
+     * The caller is responsible for only reusing definitions when the names they refer to did not change.
+     * @param compiler Substema compiler
+     * @param compiled The result of the parser, needed to be resolved
+     * @param previous Identity map from unresolved to resolved definitions of a previous resolve
+     * @param next Identity map that receives the unresolved to resolved definitions of this resolve
+     * @return The resolved substema.
+     */
+    static RSubstema resolve(SubstemaCompiler compiler, RSubstema compiled, Map<Object,Object> previous, Map<Object,Object> next){
+        return new ResolvePackageNames(compiler,compiled,previous,next).resolve();
     }
 
     public RSubstema resolve(){
@@ -48,15 +68,25 @@ public class ResolvePackageNames {
                 resolvePackageDef(originalSubstema.getPackageDef()),
                 originalSubstema.getImports(),
                 originalSubstema.getPackageName(),
-                originalSubstema.getEnums().map(this::resolveEnumDef),
-                originalSubstema.getValueClasses().map(this::resolveValueClass),
-                originalSubstema.getRemoteClasses().map(this::resolveRemoteClassDef),
-                originalSubstema.getInterfaceClasses().map(this::resolveInterfaceClass),
-                originalSubstema.getAnnotationDefs().map(this::resolveAnnotationDef)
+                originalSubstema.getEnums().map(e -> reuse(e,this::resolveEnumDef)),
+                originalSubstema.getValueClasses().map(vc -> reuse(vc,this::resolveValueClass)),
+                originalSubstema.getRemoteClasses().map(rc -> reuse(rc,this::resolveRemoteClassDef)),
+                originalSubstema.getInterfaceClasses().map(ic -> reuse(ic,this::resolveInterfaceClass)),
+                originalSubstema.getAnnotationDefs().map(ad -> reuse(ad,this::resolveAnnotationDef))
         );
         return res;
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> T reuse(T definition, Function<T,T> resolver){
+        Object res = previous.get(definition);
+        if(res == null){
+            res = resolver.apply(definition);
+        }
+        next.put(definition,res);
+        return (T)res;
+    }
+
     private RAnnotationDef resolveAnnotationDef(RAnnotationDef ad){
         return ad.withProperties(
             ad.getProperties().map(this::resolveProperty)
@@ -0,0 +1,233 @@
+package com.persistentbit.substema.compiler;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.substema.compiler.values.RImport;
+import com.persistentbit.substema.compiler.values.RSubstema;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A directory with compiled {@link RSubstema}s, used by {@link SubstemaCompiler#withCache(SubstemaCompileCache)}
+ * to skip the tokenizer, parser and resolver for unchanged packages.<br>
+ * Every package has one file with the hash of the source code, the imported package names,
+ * the cache key and the serialized compiled substema.
+ * The imports of the stored substema only have a package name: they are linked again with the
+ * compiled imports when the substema is loaded, so a cache file doesn't contain its import closure.
+ * The cache key is a hash of the source code and the cache keys of the imports, so
+ * a change in a package invalidates all the packages that import it directly or indirectly.<br>
+ * A cache file that can't be read or that was written by another version of this library
+ * is ignored: the package is compiled again.
+ * Files are replaced atomically, so multiple builds can share a cache directory.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class SubstemaCompileCache{
+
+	private static final Logger log = Logger.getLogger(SubstemaCompileCache.class.getName());
+
+	/**
+	 * Change this when the compiled format changes, to invalidate all existing cache files.
+	 * The version of the library is included, because the serialized classes change between versions.
+	 */
+	private static final String formatVersion = "substema-cache-2 " + libraryVersion();
+
+	private final File directory;
+
+	public SubstemaCompileCache(File directory) {
+		this.directory = directory;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * The header of a cache file.
+	 */
+	static final class Entry{
+
+		final String        sourceHash;
+		final PList<String> imports;
+		final String        key;
+
+		Entry(String sourceHash, PList<String> imports, String key) {
+			this.sourceHash = sourceHash;
+			this.imports = imports;
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Read the header of the cache file for a package.
+	 *
+	 * @param packageName The package name
+	 *
+	 * @return The header or empty when there is no readable cache file
+	 */
+	Optional<Entry> readEntry(String packageName) {
+		File f = file(packageName);
+		if(f.exists() == false) {
+			return Optional.empty();
+		}
+		try(ObjectInputStream in = open(f)) {
+			return Optional.of(readHeader(in));
+		} catch(IOException e) {
+			log.log(Level.FINE, "Ignoring cache file " + f, e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Read the compiled substema for a package.
+	 *
+	 * @param packageName The package name
+	 * @param key         The expected cache key
+	 *
+	 * @return The compiled substema or empty when there is no readable cache file with the key
+	 */
+	Optional<RSubstema> read(String packageName, String key) {
+		File f = file(packageName);
+		try(ObjectInputStream in = open(f)) {
+			if(readHeader(in).key.equals(key) == false) {
+				return Optional.empty();
+			}
+			return Optional.of((RSubstema) in.readObject());
+		} catch(IOException | ClassNotFoundException | ClassCastException e) {
+			log.log(Level.FINE, "Ignoring cache file " + f, e);
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Write the cache file for a package.<br>
+	 * Failures are logged and otherwise ignored: the cache is only an optimization.
+	 *
+	 * @param entry    The header
+	 * @param substema The compiled substema
+	 */
+	void write(Entry entry, RSubstema substema) {
+		String packageName = substema.getPackageName();
+		try {
+			Files.createDirectories(directory.toPath());
+			Path tmp = Files.createTempFile(directory.toPath(), packageName, ".tmp");
+			try {
+				try(ObjectOutputStream out =
+						new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					out.writeUTF(formatVersion);
+					out.writeUTF(entry.sourceHash);
+					out.writeInt(entry.imports.size());
+					for(String imp : entry.imports) {
+						out.writeUTF(imp);
+					}
+					out.writeUTF(entry.key);
+					out.writeObject(withoutImportedSubstemas(substema));
+				}
+				Files.move(tmp, file(packageName).toPath(),
+						   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+				);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch(IOException | RuntimeException e) {
+			log.log(Level.WARNING, "Can't write cache file for " + packageName, e);
+		}
+	}
+
+	private static RSubstema withoutImportedSubstemas(RSubstema substema) {
+		return substema.withImports(substema.getImports().map(i -> new RImport(i.getPackageName())).plist());
+	}
+
+	/**
+	 * Get the version of this library from the maven metadata in the jar.<br>
+	 * Snapshot and development builds also use the modification time of the compiled classes.
+	 *
+	 * @return The library version
+	 */
+	private static String libraryVersion() {
+		String version = "development";
+		try(InputStream in = SubstemaCompileCache.class
+			.getResourceAsStream("/META-INF/maven/com.persistentbit/substema/pom.properties")) {
+			if(in != null) {
+				Properties props = new Properties();
+				props.load(in);
+				version = props.getProperty("version", version);
+			}
+			if(version.endsWith("-SNAPSHOT") || version.equals("development")) {
+				URL classFile = SubstemaCompileCache.class.getResource("SubstemaCompileCache.class");
+				version += " " + classFile.openConnection().getLastModified();
+			}
+		} catch(IOException e) {
+			log.log(Level.FINE, "Can't read the library version", e);
+		}
+		return version;
+	}
+
+	/**
+	 * Calculate a hash (SHA-256 in hex) of some strings.
+	 *
+	 * @param parts The strings to hash
+	 *
+	 * @return The hash
+	 */
+	static String hash(Iterable<String> parts) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(formatVersion.getBytes(StandardCharsets.UTF_8));
+			for(String part : parts) {
+				digest.update((byte) 0);
+				digest.update(part.getBytes(StandardCharsets.UTF_8));
+			}
+			StringBuilder res = new StringBuilder();
+			for(byte b : digest.digest()) {
+				res.append(String.format("%02x", b));
+			}
+			return res.toString();
+		} catch(NoSuchAlgorithmException e) {
+			throw new SubstemaException("Can't create a SHA-256 digest", e);
+		}
+	}
+
+	private File file(String packageName) {
+		return new File(directory, packageName + ".compiled");
+	}
+
+	private static ObjectInputStream open(File f) throws IOException {
+		return new ObjectInputStream(new BufferedInputStream(Files.newInputStream(f.toPath())));
+	}
+
+	private static Entry readHeader(ObjectInputStream in) throws IOException {
+		if(in.readUTF().equals(formatVersion) == false) {
+			throw new IOException("Wrong cache format version");
+		}
+		String        sourceHash = in.readUTF();
+		int           count      = in.readInt();
+		PList<String> imports    = PList.empty();
+		for(int t = 0; t < count; t++) {
+			imports = imports.plus(in.readUTF());
+		}
+		return new Entry(sourceHash, imports, in.readUTF());
+	}
+
+	@Override
+	public String toString() {
+		return "SubstemaCompileCache[" + directory + "]";
+	}
+}
@@ -1,7 +1,6 @@
 package com.persistentbit.substema.compiler;
 
 import com.persistentbit.core.collections.PList;
-import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.dependencies.DependencyResolver;
 import com.persistentbit.core.result.Result;
 import com.persistentbit.substema.compiler.values.RImport;
@@ -10,81 +9,332 @@ import com.persistentbit.substema.dependencies.DependencySupplier;
 import com.persistentbit.substema.dependencies.SupplierDef;
 import com.persistentbit.substema.dependencies.SupplierType;
 
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 /**
+ * Parses and compiles substema packages.<br>
+ * Every package is parsed and compiled only once, also when called from multiple threads.
+ * Imported packages are parsed in parallel as soon as the importing package is parsed and
+ * independent packages are compiled in parallel on the executor (by default the common fork-join pool).<br>
+ * Use {@link #compileAll(PList)} to compile a set of packages at once.
  * @author Peter Muys
  * @since 26/09/2016
  */
-public class SubstemaCompiler {
+public class SubstemaCompiler implements AutoCloseable{
 
     private final DependencySupplier dependencies;
-    private PMap<String,RSubstema> parsed = PMap.empty();
-    private PMap<String,RSubstema> compiled = PMap.empty();
     private final PList<String> implicitImportPackages;
+    private final Executor executor;
+    private final SubstemaCompileCache cache;
+    private final ConcurrentMap<String,CompletableFuture<Result<RSubstema>>> parsed = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String,CompletableFuture<Result<RSubstema>>> compiled = new ConcurrentHashMap<>();
+    //Packages for which the imports are checked for circular dependencies
+    private final Set<String> acyclic = ConcurrentHashMap.newKeySet();
+    //Cache keys of the packages with a valid cache file or a compiled result
+    private final ConcurrentMap<String,Optional<String>> cacheKeys = new ConcurrentHashMap<>();
 
     public SubstemaCompiler(DependencySupplier dependencies, PList<String> implicitImportPackages) {
-        this.dependencies = dependencies.withSuppliers(dependencies.getSuppliers().plus(new SupplierDef(SupplierType.resource,"/")));
-        this.implicitImportPackages = implicitImportPackages;
+        this(withResources(dependencies), implicitImportPackages, ForkJoinPool.commonPool(), null);
     }
     public SubstemaCompiler(DependencySupplier dependencies) {
-        this.dependencies = dependencies.withSuppliers(dependencies.getSuppliers().plus(new SupplierDef(SupplierType.resource,"/")));
-        this.implicitImportPackages = PList.empty();
+        this(dependencies,PList.empty());
+    }
+
+    private SubstemaCompiler(DependencySupplier dependencies, PList<String> implicitImportPackages, Executor executor,
+                             SubstemaCompileCache cache){
+        this.dependencies = dependencies;
+        this.implicitImportPackages = implicitImportPackages;
+        this.executor = Objects.requireNonNull(executor);
+        this.cache = cache;
+    }
+
+    /**
+     * Add the resource supplier for the substema packages in this library (like the annotations package).<br>
+     * A supplier that already has it is used as is, so it can be shared with its package index.
+     */
+    private static DependencySupplier withResources(DependencySupplier dependencies){
+        SupplierDef resources = new SupplierDef(SupplierType.resource,"/");
+        if(dependencies.getSuppliers().find(resources::equals).isPresent()){
+            return dependencies;
+        }
+        return dependencies.withSuppliers(dependencies.getSuppliers().plus(resources));
     }
+
     public SubstemaCompiler withImplicitImportPackages(PList<String> implicitImportPackages){
-        return new SubstemaCompiler(dependencies,implicitImportPackages);
+        return new SubstemaCompiler(dependencies,implicitImportPackages,executor,cache);
+    }
+
+    /**
+     * Create a new compiler that parses and compiles on the given executor.<br>
+     * Compile tasks never wait for other compile tasks, so any executor can be used,
+     * also a bounded one like {@code Executors.newFixedThreadPool(1)}.
+     * @param executor The executor for the parse and compile tasks
+     * @return A new compiler without compiled packages
+     */
+    public SubstemaCompiler withExecutor(Executor executor){
+        return new SubstemaCompiler(dependencies,implicitImportPackages,executor,cache);
+    }
+
+    /**
+     * Create a new compiler that loads unchanged compiled packages from a cache directory
+     * and stores newly compiled packages in that directory.
+     * @param cache The compile cache
+     * @return A new compiler without compiled packages
+     */
+    public SubstemaCompiler withCache(SubstemaCompileCache cache){
+        return new SubstemaCompiler(dependencies,implicitImportPackages,executor,cache);
     }
 
     public PList<String>    getImplicitImportPackages(){
         return implicitImportPackages;
     }
 
+    /**
+     * Close the archives opened by the {@link DependencySupplier} of this compiler.
+     */
+    @Override
+    public void close(){
+        dependencies.close();
+    }
+
 
     public Result<RSubstema> parse(String packageName) {
+        return parseAsync(packageName).join();
+    }
+
+    private CompletableFuture<Result<RSubstema>> parseAsync(String packageName) {
+        CompletableFuture<Result<RSubstema>> existing = parsed.get(packageName);
+        if(existing != null){
+            return existing;
+        }
+        CompletableFuture<Result<RSubstema>> created = new CompletableFuture<>();
+        existing = parsed.putIfAbsent(packageName, created);
+        if(existing != null){
+            return existing;
+        }
+        //Start the parse outside the map update: the executor can run it on this thread,
+        //and the parse starts parsing the imports
+        CompletableFuture.supplyAsync(() -> doParse(packageName), executor).whenComplete((result, error) ->
+            created.complete(error == null ? result : Result.failure(error))
+        );
+        return created;
+    }
+
+    private Result<RSubstema> doParse(String packageName){
         return Result.function(packageName).code(l -> {
-            RSubstema res = parsed.getOpt(packageName).orElse(null);
-            if(res != null) {
-                return Result.success(res);
-            }
             String code = dependencies.apply(packageName).orElse(null);
             if(code == null) {
                 return Result.failure(new SubstemaException("Can't find code for package " + packageName));
             }
             SubstemaParser parser =
                 new SubstemaParser(packageName, new SubstemaTokenizer().tokenize(packageName, code));
-            res = parser.parseSubstema();
+            RSubstema res = parser.parseSubstema();
             for(String implicit : implicitImportPackages) {
                 if(packageName.equals(implicit) == false && res.getImports()
                     .find(i -> i.getPackageName().equals(implicit)).isPresent() == false) {
-                    res = res.withImports(res.getImports().plus(new RImport(packageName)));
+                    res = res.withImports(res.getImports().plus(new RImport(implicit)));
                 }
             }
-
-            parsed = parsed.put(packageName, res);
+            //Start parsing the imports, so the import graph is parsed in parallel
+            res.getImports().forEach(i -> parseAsync(i.getPackageName()));
             return Result.success(res);
         });
-
     }
 
     public Result<RSubstema> compile(String packageName) {
         return Result.function(packageName).code(l -> {
             //System.out.println("Compiling " + packageName);
-            RSubstema res = compiled.getOpt(packageName).orElse(null);
-            if(res != null) {
-                return Result.success(res);
+            if(cacheKey(packageName).isPresent() == false){
+                checkNoCycles(packageName);
             }
-            return parse(packageName).flatMap(parsed -> {
-                PList<RSubstema> dependencies =
-                    DependencyResolver
-                        .resolve(parsed, s -> s.getImports().map(i -> parse(i.getPackageName()).orElseThrow())
-                        );
-                parsed = parsed.withImports(
-                    parsed.getImports()
-                        .map(i -> new RImport(i.getPackageName(), compile(i.getPackageName()).orElseThrow()))
-                );
-                parsed = ResolvePackageNames.resolve(this, parsed);
-                compiled = compiled.put(packageName, parsed);
-                return Result.success(parsed);
-            });
+            return compileAsync(packageName).join();
         });
 
     }
+
+    /**
+     * Compile a list of packages in parallel.<br>
+     * All the packages and their imports are parsed first, then the packages
+     * are compiled as soon as their imports are compiled.
+     * @param packageNames The packages to compile
+     * @return The compiled packages in the same order as the package names
+     */
+    public Result<PList<RSubstema>> compileAll(PList<String> packageNames){
+        return Result.function(packageNames).code(l -> {
+            PList<String> notCached = packageNames.filter(p -> cacheKey(p).isPresent() == false).plist();
+            notCached.forEach(this::parseAsync);
+            notCached.forEach(this::checkNoCycles);
+            PList<CompletableFuture<Result<RSubstema>>> all = packageNames.map(this::compileAsync).plist();
+            PList<RSubstema> res = PList.empty();
+            for(CompletableFuture<Result<RSubstema>> f : all){
+                res = res.plus(f.join().orElseThrow());
+            }
+            return Result.success(res);
+        });
+    }
+
+    /**
+     * Check the import graph of a package for circular dependencies.<br>
+     * Compiling a package in a cycle would wait forever for its own result.
+     * @param packageName The package to check
+     */
+    private void checkNoCycles(String packageName){
+        if(acyclic.contains(packageName)){
+            return;
+        }
+        Result<RSubstema> root = parse(packageName);
+        if(root.isError()){
+            return; //The failure is reported by compileAsync
+        }
+        PList<RSubstema> reachable = DependencyResolver
+            .resolve(root.orElseThrow(), s -> s.getImports().map(i -> parse(i.getPackageName()).orElseThrow()));
+        reachable.forEach(s -> acyclic.add(s.getPackageName()));
+        acyclic.add(packageName);
+    }
+
+    private CompletableFuture<Result<RSubstema>> compileAsync(String packageName) {
+        CompletableFuture<Result<RSubstema>> existing = compiled.get(packageName);
+        if(existing != null){
+            return existing;
+        }
+        CompletableFuture<Result<RSubstema>> created = new CompletableFuture<>();
+        existing = compiled.putIfAbsent(packageName, created);
+        if(existing != null){
+            return existing;
+        }
+        CompletableFuture.supplyAsync(() -> loadCached(packageName), executor).thenCompose(cached -> {
+            if(cached.isPresent()){
+                return linkImports(cached.get());
+            }
+            return compileParsed(packageName);
+        }).whenComplete((result, error) ->
+            created.complete(error == null ? result : Result.failure(error))
+        );
+        return created;
+    }
+
+    private CompletableFuture<Result<RSubstema>> compileParsed(String packageName){
+        return parseAsync(packageName).thenCompose(parseResult -> {
+            if(parseResult.isError()){
+                return CompletableFuture.completedFuture(parseResult);
+            }
+            RSubstema parsedSubstema = parseResult.orElseThrow();
+            PList<CompletableFuture<Result<RSubstema>>> imports = compileImports(parsedSubstema);
+            //The resolver looks up unknown annotations in the annotations package: compile it first,
+            //so the resolver never waits for a compile task on the (maybe bounded) executor
+            PList<CompletableFuture<Result<RSubstema>>> waitFor = imports;
+            if(packageName.equals(SubstemaUtils.annotationsPackage) == false){
+                waitFor = waitFor.plus(compileAsync(SubstemaUtils.annotationsPackage));
+            }
+            return allOf(waitFor).thenApplyAsync(v -> resolve(parsedSubstema, imports), executor);
+        });
+    }
+
+    /**
+     * Link a substema loaded from the cache with its compiled imports:
+     * the cache only stores the package names of the imports.
+     */
+    private CompletableFuture<Result<RSubstema>> linkImports(RSubstema cachedSubstema){
+        PList<CompletableFuture<Result<RSubstema>>> imports = compileImports(cachedSubstema);
+        return allOf(imports).thenApply(v -> Result.function(cachedSubstema.getPackageName()).code(l ->
+            Result.success(withCompiledImports(cachedSubstema, imports))
+        ));
+    }
+
+    private PList<CompletableFuture<Result<RSubstema>>> compileImports(RSubstema substema){
+        return substema.getImports().map(i -> compileAsync(i.getPackageName())).plist();
+    }
+
+    private static CompletableFuture<Void> allOf(PList<CompletableFuture<Result<RSubstema>>> futures){
+        CompletableFuture<?>[] waitFor = new CompletableFuture<?>[futures.size()];
+        for(int t = 0; t < waitFor.length; t++) {
+            waitFor[t] = futures.get(t);
+        }
+        return CompletableFuture.allOf(waitFor);
+    }
+
+    private static RSubstema withCompiledImports(RSubstema substema, PList<CompletableFuture<Result<RSubstema>>> imports){
+        PList<RImport> compiledImports = PList.empty();
+        for(int t = 0; t < imports.size(); t++) {
+            String packageName = substema.getImports().get(t).getPackageName();
+            compiledImports = compiledImports.plus(new RImport(packageName, imports.get(t).join().orElseThrow()));
+        }
+        return substema.withImports(compiledImports);
+    }
+
+    private Result<RSubstema> resolve(RSubstema parsedSubstema, PList<CompletableFuture<Result<RSubstema>>> imports){
+        return Result.function(parsedSubstema.getPackageName()).code(l -> {
+            RSubstema res = ResolvePackageNames.resolve(this, withCompiledImports(parsedSubstema, imports));
+            storeCached(res);
+            return Result.success(res);
+        });
+    }
+
+    /**
+     * Get the cache key for a package, when the cache file of the package and of all its imports
+     * are valid for the current source code.
+     * @param packageName The package
+     * @return The cache key or empty when the package needs to be compiled
+     */
+    private Optional<String> cacheKey(String packageName){
+        if(cache == null){
+            return Optional.empty();
+        }
+        Optional<String> key = cacheKeys.get(packageName);
+        if(key != null){
+            return key;
+        }
+        key = Optional.empty();
+        String source = dependencies.apply(packageName).orElse(null);
+        SubstemaCompileCache.Entry entry = source == null ? null : cache.readEntry(packageName).orElse(null);
+        if(entry != null && entry.sourceHash.equals(SubstemaCompileCache.hash(PList.val(source)))
+            && entry.imports.contains(packageName) == false){
+            Optional<String> valid = cacheKey(packageName, entry.sourceHash, entry.imports);
+            if(valid.isPresent() && valid.get().equals(entry.key)){
+                key = valid;
+            }
+        }
+        cacheKeys.putIfAbsent(packageName, key);
+        return cacheKeys.get(packageName);
+    }
+
+    private Optional<String> cacheKey(String packageName, String sourceHash, PList<String> imports){
+        PList<String> parts = PList.val(packageName, implicitImportPackages.toString(","), sourceHash);
+        for(String imp : imports){
+            Optional<String> importKey = cacheKey(imp);
+            if(importKey.isPresent() == false){
+                return Optional.empty();
+            }
+            parts = parts.plus(importKey.get());
+        }
+        return Optional.of(SubstemaCompileCache.hash(parts));
+    }
+
+    private Optional<RSubstema> loadCached(String packageName){
+        return cacheKey(packageName).flatMap(key -> cache.read(packageName, key));
+    }
+
+    private void storeCached(RSubstema compiledSubstema){
+        if(cache == null){
+            return;
+        }
+        String packageName = compiledSubstema.getPackageName();
+        String source = dependencies.apply(packageName).orElse(null);
+        if(source == null){
+            return;
+        }
+        String sourceHash = SubstemaCompileCache.hash(PList.val(source));
+        PList<String> imports = compiledSubstema.getImports().map(RImport::getPackageName).plist();
+        cacheKey(packageName, sourceHash, imports).ifPresent(key -> {
+            cache.write(new SubstemaCompileCache.Entry(sourceHash, imports, key), compiledSubstema);
+            cacheKeys.put(packageName, Optional.of(key));
+        });
+    }
 }
@@ -0,0 +1,245 @@
+package com.persistentbit.substema.compiler;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.core.tokenizer.Token;
+import com.persistentbit.substema.compiler.values.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.persistentbit.substema.compiler.SubstemaTokenType.*;
+
+/**
+ * Parser for a substema source that is edited and parsed again and again, like in watch mode or in an IDE.<br>
+ * The source is split in top level chunks: statements ending with a ';' and definitions ending with a '}'.<br>
+ * Only chunks with changed tokens are parsed again. The definitions of unchanged chunks are the
+ * same instances as in the previous parse, so {@link #resolve(SubstemaCompiler, RSubstema)} can reuse
+ * their resolved versions as long as the names they can refer to did not change.<br>
+ * When a chunk can't be parsed on its own, the whole source is parsed so errors are the same as
+ * with {@link SubstemaParser}.<br>
+ * Instances are not thread safe.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class SubstemaIncrementalParser{
+
+	private final String                 packageName;
+	private       String                 code                = "";
+	private       Map<String, RSubstema> chunks              = new HashMap<>();
+	private       int                    lastParsedChunks;
+	private       PList<Object>          resolveContext      = PList.empty();
+	private       Map<Object, Object>    resolvedDefinitions = new IdentityHashMap<>();
+
+	/**
+	 * @param packageName The name of the package being parsed
+	 */
+	public SubstemaIncrementalParser(String packageName) {
+		this.packageName = Objects.requireNonNull(packageName);
+	}
+
+	/**
+	 * Parse a new version of the source code.
+	 *
+	 * @param code The complete source code
+	 *
+	 * @return The parsed RSubstema
+	 *
+	 * @throws SubstemaParserException on a parse error
+	 */
+	public RSubstema parse(String code) {
+		this.code = Objects.requireNonNull(code);
+		ArrayList<Token<SubstemaTokenType>> tokens = new ArrayList<>();
+		for(Result<Token<SubstemaTokenType>> token : new SubstemaTokenizer().tokenize(packageName, code)) {
+			if(token.isError() || token.isEmpty()) {
+				return parseAll();
+			}
+			tokens.add(token.orElseThrow());
+		}
+		Map<String, RSubstema> newChunks = new HashMap<>();
+		PList<RSubstema>       parsed    = PList.empty();
+		int                    packages  = 0;
+		int                    parsedNow = 0;
+		int                    depth     = 0;
+		int                    start     = 0;
+		for(int t = 0; t < tokens.size(); t++) {
+			SubstemaTokenType type = tokens.get(t).type;
+			if(type == tBlockStart) {
+				depth++;
+			}
+			else if(type == tBlockEnd) {
+				depth--;
+			}
+			else if(type == tPackage) {
+				packages++;
+			}
+			boolean endOfChunk = t == tokens.size() - 1
+				|| (depth == 0 && (type == tBlockEnd || type == tSemiColon));
+			if(endOfChunk == false) {
+				continue;
+			}
+			PList<Result<Token<SubstemaTokenType>>> chunkTokens = PList.empty();
+			StringBuilder                           key         = new StringBuilder();
+			for(int i = start; i <= t; i++) {
+				chunkTokens = chunkTokens.plus(Result.success(tokens.get(i)));
+				key.append(tokens.get(i).text).append('\u0000');
+			}
+			start = t + 1;
+			String    chunkKey = key.toString();
+			RSubstema chunk    = newChunks.get(chunkKey);
+			if(chunk == null) {
+				chunk = chunks.get(chunkKey);
+			}
+			if(chunk == null) {
+				parsedNow++;
+				try {
+					chunk = new SubstemaParser(packageName, chunkTokens).parseSubstema();
+				} catch(RuntimeException e) {
+					//Report the error as a parse of the complete source does
+					return parseAll();
+				}
+			}
+			newChunks.put(chunkKey, chunk);
+			parsed = parsed.plus(chunk);
+		}
+		if(packages > 1 || depth != 0) {
+			return parseAll();
+		}
+		chunks = newChunks;
+		lastParsedChunks = parsedNow;
+		return merge(parsed);
+	}
+
+	/**
+	 * Replace a range of the last parsed source code and parse the result.
+	 *
+	 * @param start       Start index of the replaced range in the last parsed code
+	 * @param end         End index (exclusive) of the replaced range
+	 * @param replacement The new text for the range
+	 *
+	 * @return The parsed RSubstema
+	 *
+	 * @throws SubstemaParserException on a parse error
+	 */
+	public RSubstema edit(int start, int end, String replacement) {
+		if(start < 0 || end < start || end > code.length()) {
+			throw new IndexOutOfBoundsException("Invalid edit range " + start + ".." + end);
+		}
+		return parse(code.substring(0, start) + replacement + code.substring(end));
+	}
+
+	/**
+	 * Resolve the class names of a substema returned by this parser, like
+	 * {@link SubstemaCompiler#compile(String)} does for a package.<br>
+	 * The imports are compiled with the supplied compiler.
+	 * When the defined names, the enums and the imported substemas are the same as in the previous resolve,
+	 * the unchanged definitions are not resolved again.
+	 *
+	 * @param compiler The compiler for the imported packages
+	 * @param parsed   The result of {@link #parse(String)} or {@link #edit(int, int, String)}
+	 *
+	 * @return The resolved substema
+	 */
+	public Result<RSubstema> resolve(SubstemaCompiler compiler, RSubstema parsed) {
+		return Result.function(parsed.getPackageName()).code(l -> {
+			PList<RImport> imports = parsed.getImports();
+			for(String implicit : compiler.getImplicitImportPackages()) {
+				if(packageName.equals(implicit) == false
+					&& imports.find(i -> i.getPackageName().equals(implicit)).isPresent() == false) {
+					imports = imports.plus(new RImport(implicit));
+				}
+			}
+			PList<RImport> compiledImports = PList.empty();
+			for(RImport imp : imports) {
+				compiledImports = compiledImports
+					.plus(new RImport(imp.getPackageName(), compiler.compile(imp.getPackageName()).orElseThrow()));
+			}
+			RSubstema     withImports = parsed.withImports(compiledImports);
+			PList<Object> context     = resolveContext(withImports);
+			if(sameContext(context, resolveContext) == false) {
+				resolvedDefinitions = new IdentityHashMap<>();
+			}
+			Map<Object, Object> next = new IdentityHashMap<>();
+			RSubstema           res  = ResolvePackageNames.resolve(compiler, withImports, resolvedDefinitions, next);
+			resolveContext = context;
+			resolvedDefinitions = next;
+			return Result.success(res);
+		});
+	}
+
+	/**
+	 * @return The last parsed source code
+	 */
+	public String getCode() {
+		return code;
+	}
+
+	/**
+	 * @return The number of chunks that were parsed by the last parse. All other chunks were reused.
+	 */
+	public int getLastParsedChunks() {
+		return lastParsedChunks;
+	}
+
+	private RSubstema parseAll() {
+		chunks = new HashMap<>();
+		lastParsedChunks = -1;
+		return new SubstemaParser(packageName, new SubstemaTokenizer().tokenize(packageName, code)).parseSubstema();
+	}
+
+	private RSubstema merge(PList<RSubstema> parsed) {
+		RPackage               packageDef     = new RPackage(PList.empty());
+		PList<RImport>         imports        = PList.empty();
+		PList<REnum>           enums          = PList.empty();
+		PList<RValueClass>     values         = PList.empty();
+		PList<RRemoteClass>    remotes        = PList.empty();
+		PList<RInterfaceClass> interfaces     = PList.empty();
+		PList<RAnnotationDef>  annotationDefs = PList.empty();
+		for(RSubstema chunk : parsed) {
+			if(chunk.getPackageDef().getAnnotations().isEmpty() == false) {
+				packageDef = chunk.getPackageDef();
+			}
+			imports = imports.plusAll(chunk.getImports());
+			enums = enums.plusAll(chunk.getEnums());
+			values = values.plusAll(chunk.getValueClasses());
+			remotes = remotes.plusAll(chunk.getRemoteClasses());
+			interfaces = interfaces.plusAll(chunk.getInterfaceClasses());
+			annotationDefs = annotationDefs.plusAll(chunk.getAnnotationDefs());
+		}
+		return new RSubstema(packageDef, imports, packageName, enums, values, remotes, interfaces, annotationDefs);
+	}
+
+	/**
+	 * Everything a resolved definition depends on, besides the definition itself:
+	 * the names of all definitions, the enums (for enum default values) and the imported substemas.
+	 */
+	private static PList<Object> resolveContext(RSubstema substema) {
+		PList<Object> res = PList.empty();
+		res = res.plusAll(substema.getEnums().map(e -> e.getName().getClassName()));
+		res = res.plusAll(substema.getValueClasses().map(vc -> vc.getTypeSig().getName().getClassName()));
+		res = res.plusAll(substema.getRemoteClasses().map(rc -> rc.getName().getClassName()));
+		res = res.plusAll(substema.getInterfaceClasses().map(ic -> ic.getName().getClassName()));
+		res = res.plusAll(substema.getAnnotationDefs().map(ad -> ad.getName().getClassName()));
+		res = res.plusAll(substema.getEnums());
+		res = res.plusAll(substema.getImports().map(i -> i.getSubstema().orElse(null)));
+		return res;
+	}
+
+	private static boolean sameContext(PList<Object> left, PList<Object> right) {
+		if(left.size() != right.size()) {
+			return false;
+		}
+		for(int t = 0; t < left.size(); t++) {
+			Object l = left.get(t);
+			Object r = right.get(t);
+			if(l != r && (l instanceof String == false || l.equals(r) == false)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -6,12 +6,14 @@ import com.persistentbit.core.collections.POrderedMap;
 import com.persistentbit.core.collections.PStream;
 import com.persistentbit.core.function.Function2;
 import com.persistentbit.core.result.Result;
+import com.persistentbit.core.tokenizer.Pos;
 import com.persistentbit.core.tokenizer.Token;
 import com.persistentbit.core.tuples.Tuple2;
 import com.persistentbit.core.utils.StringUtils;
 import com.persistentbit.substema.compiler.values.*;
 import com.persistentbit.substema.compiler.values.expr.*;
 
+import java.util.ArrayList;
 import java.util.function.Supplier;
 
 import static com.persistentbit.substema.compiler.SubstemaTokenType.*;
@@ -22,26 +24,52 @@ import static com.persistentbit.substema.compiler.SubstemaTokenType.*;
  */
 public class SubstemaParser{
 
-	private final String                                    packageName;
-	private       PStream<Result<Token<SubstemaTokenType>>> tokens;
-	private       Token<SubstemaTokenType>                  current;
+	private final String                           packageName;
+	private final Token<SubstemaTokenType>[]       tokens;
+	private final int                              tokenCount;
+	private final Result<Token<SubstemaTokenType>> tokenFailure;
+	private       int                              index;
+	private       Token<SubstemaTokenType>         current;
 
+	/**
+	 * Create a parser for the tokens of a substema file.<br>
+	 * The tokens are copied to an array up to the first failed token.<br>
+	 * The failure is only thrown when the parser reaches that token, so
+	 * the error position stays the same as when parsing from the stream.
+	 *
+	 * @param packageName The name of the package being parsed
+	 * @param tokens      The tokens from the {@link SubstemaTokenizer}
+	 */
+	@SuppressWarnings("unchecked")
 	public SubstemaParser(String packageName, PStream<Result<Token<SubstemaTokenType>>> tokens) {
 		this.packageName = packageName;
-		this.tokens = tokens.plist().lazy();
+		ArrayList<Token<SubstemaTokenType>> list    = new ArrayList<>();
+		Result<Token<SubstemaTokenType>>    failure = null;
+		for(Result<Token<SubstemaTokenType>> token : tokens) {
+			if(token.isError() || token.isEmpty()) {
+				failure = token;
+				break;
+			}
+			list.add(token.orElseThrow());
+		}
+		this.tokens = list.toArray(new Token[list.size()]);
+		this.tokenCount = this.tokens.length;
+		this.tokenFailure = failure;
 		next();
 	}
 
 	private Token<SubstemaTokenType> next() {
-		if(tokens.head().isEmpty()) {
+		if(index >= tokenCount) {
+			if(tokenFailure != null) {
+				tokenFailure.orElseThrow();
+			}
 			if(current != null && current.type == tEOF) {
 				throw new SubstemaParserException(current.pos, "Unexpected End-Of-File");
 			}
-			current = new Token<>(current.pos, tEOF, "");
+			current = new Token<>(eofPos(), tEOF, "");
 			return current;
 		}
-		current = tokens.head().orElseThrow();
-		tokens = tokens.tail();
+		current = tokens[index++];
 		return current;
 	}
 
@@ -52,7 +80,20 @@ public class SubstemaParser{
 	 * @return The next token or tEOF if there are no more tokens.
 	 */
 	private Token<SubstemaTokenType> peek() {
-		return tokens.headOpt().orElseGet(() -> Result.success(new Token<>(current.pos, tEOF, ""))).orElseThrow();
+		if(index < tokenCount) {
+			return tokens[index];
+		}
+		if(tokenFailure != null) {
+			tokenFailure.orElseThrow();
+		}
+		return new Token<>(eofPos(), tEOF, "");
+	}
+
+	private Pos eofPos() {
+		if(current != null) {
+			return current.pos;
+		}
+		return tokenCount == 0 ? new Pos(packageName, 1, 1) : tokens[tokenCount - 1].pos;
 	}
 
 	/**
@@ -321,7 +362,9 @@ public class SubstemaParser{
 		next(); //skip name;
 
 		skip(tColon, "':' expected after property name");
+		Pos        typePos      = current.pos;
 		RValueType valueType    = parseRValueType();
+		assertNoResultOnlyType(typePos, valueType.getTypeSig(), "a property type");
 		RConst     defaultValue = null;
 		if(current.type == tAssign) {
 			next();//skip '='
@@ -476,7 +519,9 @@ public class SubstemaParser{
 		next(); //skip name;
 
 		skip(tColon, "':' expected after parameter name");
+		Pos        typePos   = current.pos;
 		RValueType valueType = parseRValueType();
+		assertNoResultOnlyType(typePos, valueType.getTypeSig(), "a parameter type");
 
 		return new RFunctionParam(name, valueType, annotations);
 	}
@@ -513,7 +558,15 @@ public class SubstemaParser{
 		RValueType returnType = null;
 		boolean    cached     = false;
 		if(current.type != tOK) {
+			Pos typePos = current.pos;
 			returnType = parseRValueType();
+			//Stream and Cursor are allowed as function result, but not nested in another type
+			returnType.getTypeSig().getGenerics()
+				.forEach(g -> assertNoResultOnlyType(typePos, g, "a generic type parameter"));
+			boolean resultOnly = SubstemaUtils.isResultOnlyClass(returnType.getTypeSig().getName());
+			if(current.type == tCached && resultOnly) {
+				throw new SubstemaParserException(current.pos, "cached result is not supported for Stream or Cursor results.");
+			}
 			if(current.type == tCached) {
 				if(params.isEmpty() == false) {
 					throw new SubstemaParserException(current.pos, "cached result is not supported on functions with parameters.");
@@ -530,6 +583,20 @@ public class SubstemaParser{
 		return new RFunction(name, params, returnType, cached, annotations);
 	}
 
+	/**
+	 * Stream and Cursor types can only be used as function result type.
+	 *
+	 * @param pos   The position of the type
+	 * @param sig   The type to check
+	 * @param where Description of where the type is used, for the error message
+	 */
+	private void assertNoResultOnlyType(Pos pos, RTypeSig sig, String where) {
+		if(SubstemaUtils.isResultOnlyClass(sig.getName())) {
+			throw new SubstemaParserException(pos, sig.getName().getClassName() + " can only be used as a function result type, not as " + where + ".");
+		}
+		sig.getGenerics().forEach(g -> assertNoResultOnlyType(pos, g, where));
+	}
+
 	private String parsePackageName() {
 		//skip(tPackage,"package expected");
 
@@ -1,91 +1,271 @@
 package com.persistentbit.substema.compiler;
 
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.collections.PStream;
 import com.persistentbit.core.result.Result;
-import com.persistentbit.core.tokenizer.SimpleTokenizer;
-import com.persistentbit.core.tokenizer.TokenFound;
+import com.persistentbit.core.tokenizer.Pos;
+import com.persistentbit.core.tokenizer.Token;
 
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static com.persistentbit.substema.compiler.SubstemaTokenType.*;
 
 /**
+ * Tokenizer for substema source code.<br>
+ * A single pass character scanner: every token is recognised by looking at its first character(s),
+ * so no regular expressions are tried at every position.
+ * Comments ({@code /* ... *}{@code /}), new lines and white space are skipped.<br>
+ * The tokens are the same as the original regular expression tokenizer:
+ * <ul>
+ *     <li>tDoc: {@code <<...>>}</li>
+ *     <li>tNumber: {@code [0-9]+(\.[0-9]*)?[LlFfDdBbSs]?}</li>
+ *     <li>tString: single or double quoted on one line, or back quoted over multiple lines.
+ *     The token text includes the quotes, escaped characters are not converted.</li>
+ *     <li>tIdentifier: {@code [a-zA-Z_][a-zA-Z0-9_]*}, or the token type for a keyword.</li>
+ *     <li>Punctuation like tOpen, tGenStart, tMapMap,...</li>
+ * </ul>
+ * An unexpected character results in a failure as the last element in the token stream.
  * Created by petermuys on 12/09/16.
  */
-public class SubstemaTokenizer extends SimpleTokenizer<SubstemaTokenType>{
-
-    public SubstemaTokenizer(){
-        add(regExMatcher("/\\*.*?\\*/",tComment).ignore());
-        add(regExMatcher("\\n",tNl).ignore());
-        add("<<.*?>>",tDoc);
-        add("\\(",tOpen);
-        add("\\)",tClose);
-        add("\\.",tPoint);
-
-
-        add("<",tGenStart);
-        add(">",tGenEnd);
-        add("\\,",tComma);
-        add("\\?",tQuestion);
-        add("\\:",tColon);
-        add("\\;",tSemiColon);
-        add("\\{",tBlockStart);
-        add("\\}",tBlockEnd);
-        add("\\=",tAssign);
-        add("\\-\\>",tMapMap);
-        add("\\[",tArrayStart);
-        add("\\]",tArrayEnd);
-        add("-",tMin);
-        add("\\+",tPlus);
-        add("@",tAt);
-        add("[0-9]+(\\.[0-9]*)?[LlFfDdBbSs]?",tNumber);
-        add(SubstemaTokenizer.stringMatcher(tString,'\'',false));
-        add(SubstemaTokenizer.stringMatcher(tString,'\"',false));
-        add(SubstemaTokenizer.stringMatcher(tString,'`',true));
-        add(SimpleTokenizer.regExMatcher("[a-zA-Z_][a-zA-Z0-9_]*",tIdentifier).map(found -> {
-            switch (found.text){
-                case "package":
-                    return Result.success(new TokenFound<>(found.text, tPackage, found.ignore));
-                case "from":
-                    return Result.success(new TokenFound<>(found.text, tFrom, found.ignore));
-                case "class":
-                    return Result.success(new TokenFound<>(found.text, tClass, found.ignore));
-                case "import":
-                    return Result.success(new TokenFound<>(found.text, tImport, found.ignore));
-                case "cached":
-                    return Result.success(new TokenFound<>(found.text, tCached, found.ignore));
-                case "enum":
-                    return Result.success(new TokenFound<>(found.text, tEnum, found.ignore));
-                case "case":
-                    return Result.success(new TokenFound<>(found.text, tCase, found.ignore));
-                case "remote":
-                    return Result.success(new TokenFound<>(found.text, tRemote, found.ignore));
-				//case "ok":
-				//    return Result.success(new TokenFound<>(found.text, tOK, found.ignore));
-				case "exception":
-                    return Result.success(new TokenFound<>(found.text, tException, found.ignore));
-                case "throws":
-                    return Result.success(new TokenFound<>(found.text, tThrows, found.ignore));
-                case "implements":
-                    return Result.success(new TokenFound<>(found.text, tImplements, found.ignore));
-                case "interface":
-                    return Result.success(new TokenFound<>(found.text, tInterface, found.ignore));
-                case "true":
-                    return Result.success(new TokenFound<>(found.text, tTrue, found.ignore));
-                case "false":
-                    return Result.success(new TokenFound<>(found.text, tFalse, found.ignore));
-                case "null":
-                    return Result.success(new TokenFound<>(found.text, tNull, found.ignore));
-                case "new":
-                    return Result.success(new TokenFound<>(found.text, tNew, found.ignore));
-                case "annotation":
-                    return Result.success(new TokenFound<>(found.text, tAnnotation, found.ignore));
+public class SubstemaTokenizer {
+
+    private static final Map<String, SubstemaTokenType> keywords = new HashMap<>();
+
+    static {
+        keywords.put("package", tPackage);
+        keywords.put("from", tFrom);
+        keywords.put("class", tClass);
+        keywords.put("import", tImport);
+        keywords.put("cached", tCached);
+        keywords.put("enum", tEnum);
+        keywords.put("case", tCase);
+        keywords.put("remote", tRemote);
+        keywords.put("exception", tException);
+        keywords.put("throws", tThrows);
+        keywords.put("implements", tImplements);
+        keywords.put("interface", tInterface);
+        keywords.put("true", tTrue);
+        keywords.put("false", tFalse);
+        keywords.put("null", tNull);
+        keywords.put("new", tNew);
+        keywords.put("annotation", tAnnotation);
+    }
+
+    /**
+     * Tokenize source code.
+     * @param name The name of the source, used in the token positions
+     * @param code The source code
+     * @return The tokens, without comments and white space
+     */
+    public PStream<Result<Token<SubstemaTokenType>>> tokenize(String name, String code) {
+        return tokenize(name, code, 1, 1);
+    }
+
+    /**
+     * Tokenize a part of a source file.
+     * @param name The name of the source, used in the token positions
+     * @param code The source code
+     * @param startLine The line number of the first character in the source file
+     * @param startColumn The column number of the first character in the source file
+     * @return The tokens, without comments and white space
+     */
+    public PStream<Result<Token<SubstemaTokenType>>> tokenize(String name, String code, int startLine, int startColumn) {
+        return new Scanner(name, code, startLine, startColumn).scan();
+    }
+
+    private static final class Scanner {
+        private final String name;
+        private final String code;
+        private final int length;
+        private final List<Result<Token<SubstemaTokenType>>> tokens = new ArrayList<>();
+        private int index;
+        private int line;
+        private int column;
+
+        Scanner(String name, String code, int startLine, int startColumn) {
+            this.name = name;
+            this.code = code;
+            this.length = code.length();
+            this.line = startLine;
+            this.column = startColumn;
+        }
+
+        PStream<Result<Token<SubstemaTokenType>>> scan() {
+            while(index < length) {
+                char c = code.charAt(index);
+                if(c == '\n') {
+                    newLine();
+                    continue;
+                }
+                if(c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B') {
+                    advance(1);
+                    continue;
+                }
+                Pos pos = new Pos(name, line, column);
+                int start = index;
+                SubstemaTokenType type = scanToken(c);
+                if(type == null) {
+                    tokens.add(Result.failure(new SubstemaParserException(pos, "Unexpected character '" + c + "'")));
+                    break;
+                }
+                if(type != tComment) {
+                    tokens.add(Result.success(new Token<>(pos, type, code.substring(start, index))));
+                }
+            }
+            return PList.<Result<Token<SubstemaTokenType>>>empty().plusAll(tokens);
+        }
+
+        /**
+         * Scan the token that starts at the current index.
+         * @param c The first character of the token
+         * @return The token type or null for an unexpected character or an unterminated token.
+         */
+        private SubstemaTokenType scanToken(char c) {
+            switch(c) {
+                case '/':
+                    return peek(1) == '*' ? scanUntil("*/", 2, tComment) : null;
+                case '<':
+                    if(peek(1) == '<' && code.indexOf(">>", index + 2) >= 0) {
+                        return scanUntil(">>", 2, tDoc);
+                    }
+                    return single(tGenStart);
+                case '>': return single(tGenEnd);
+                case '(': return single(tOpen);
+                case ')': return single(tClose);
+                case '.': return single(tPoint);
+                case ',': return single(tComma);
+                case '?': return single(tQuestion);
+                case ':': return single(tColon);
+                case ';': return single(tSemiColon);
+                case '{': return single(tBlockStart);
+                case '}': return single(tBlockEnd);
+                case '=': return single(tAssign);
+                case '[': return single(tArrayStart);
+                case ']': return single(tArrayEnd);
+                case '+': return single(tPlus);
+                case '@': return single(tAt);
+                case '-':
+                    if(peek(1) == '>') {
+                        advance(2);
+                        return tMapMap;
+                    }
+                    return single(tMin);
+                case '\'':
+                case '"':
+                    return scanString(c, false);
+                case '`':
+                    return scanString(c, true);
                 default:
-                    return Result.success(found);
+                    if(c >= '0' && c <= '9') {
+                        return scanNumber();
+                    }
+                    if(isIdentifierStart(c)) {
+                        return scanIdentifier();
+                    }
+                    return null;
             }
-        }));
-        add(SubstemaTokenizer.regExMatcher("\\s+",tWhiteSpace).ignore());
+        }
+
+        private SubstemaTokenType single(SubstemaTokenType type) {
+            advance(1);
+            return type;
+        }
 
+        private SubstemaTokenType scanUntil(String end, int startLength, SubstemaTokenType type) {
+            int endIndex = code.indexOf(end, index + startLength);
+            if(endIndex < 0) {
+                return null;
+            }
+            advanceTo(endIndex + end.length());
+            return type;
+        }
+
+        private SubstemaTokenType scanString(char quote, boolean multiLine) {
+            int i = index + 1;
+            while(i < length) {
+                char c = code.charAt(i);
+                if(c == quote) {
+                    advanceTo(i + 1);
+                    return tString;
+                }
+                if(c == '\n' && multiLine == false) {
+                    return null;
+                }
+                i += c == '\\' ? 2 : 1;
+            }
+            return null;
+        }
+
+        private SubstemaTokenType scanNumber() {
+            int i = skipDigits(index);
+            if(i < length && code.charAt(i) == '.') {
+                i = skipDigits(i + 1);
+            }
+            if(i < length && "LlFfDdBbSs".indexOf(code.charAt(i)) >= 0) {
+                i++;
+            }
+            advance(i - index);
+            return tNumber;
+        }
+
+        private int skipDigits(int i) {
+            while(i < length && code.charAt(i) >= '0' && code.charAt(i) <= '9') {
+                i++;
+            }
+            return i;
+        }
+
+        private SubstemaTokenType scanIdentifier() {
+            int i = index + 1;
+            while(i < length && (isIdentifierStart(code.charAt(i)) || (code.charAt(i) >= '0' && code.charAt(i) <= '9'))) {
+                i++;
+            }
+            SubstemaTokenType keyword = keywords.get(code.substring(index, i));
+            advance(i - index);
+            return keyword == null ? tIdentifier : keyword;
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+        }
+
+        private char peek(int offset) {
+            int i = index + offset;
+            return i < length ? code.charAt(i) : 0;
+        }
+
+        private void newLine() {
+            index++;
+            line++;
+            column = 1;
+        }
+
+        /**
+         * Advance on the same line
+         */
+        private void advance(int count) {
+            index += count;
+            column += count;
+        }
+
+        /**
+         * Advance to an index, counting the new lines
+         */
+        private void advanceTo(int newIndex) {
+            while(index < newIndex) {
+                if(code.charAt(index) == '\n') {
+                    newLine();
+                }
+                else {
+                    advance(1);
+                }
+            }
+        }
     }
 
     static public void main(String...args){
@@ -33,9 +33,13 @@ public final class SubstemaUtils {
     public static final RClass dateTimeRClass = new RClass("", "DateTime");
     public static final RClass binaryRClass   = new RClass("", "Binary");
     public static final RClass okRClass       = new RClass("", "OK");
+    public static final RClass streamRClass   = new RClass("", "Stream");
+    public static final RClass cursorRClass   = new RClass("", "Cursor");
 
     public static final PSet<RClass> dateClasses = PSet.val(dateRClass, dateTimeRClass);
 
+    public static final PSet<RClass> resultOnlyClasses = PSet.val(streamRClass, cursorRClass);
+
 
     public static final PSet<RClass> collectionClasses = PSet.val(listRClass, setRClass, mapRClass);
     public static final PSet<RClass> numberClasses = PSet.val(
@@ -45,7 +49,18 @@ public final class SubstemaUtils {
 
     public static boolean isSubstemaClass(RClass cls) {
         return isNumberClass(cls) || isCollectionClass(cls) || cls.equals(stringRClass) || cls
-            .equals(booleanRClass) || isDateClass(cls) || cls.equals(binaryRClass) || cls.equals(okRClass);
+            .equals(booleanRClass) || isDateClass(cls) || cls.equals(binaryRClass) || cls.equals(okRClass)
+            || isResultOnlyClass(cls);
+    }
+
+    /**
+     * Stream&lt;T&gt; and Cursor&lt;T&gt; are remote function results that are transferred in parts.<br>
+     * They can only be used as the result type of a remote function.
+     * @param cls The class to check
+     * @return true if this is the Stream or Cursor class
+     */
+    public static boolean isResultOnlyClass(RClass cls) {
+        return resultOnlyClasses.contains(cls);
     }
 
     public static boolean isNumberClass(RClass cls) {
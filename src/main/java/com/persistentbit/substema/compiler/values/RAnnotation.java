@@ -5,10 +5,14 @@ import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.utils.BaseValueClass;
 import com.persistentbit.substema.compiler.values.expr.RConst;
 
+import java.io.Serializable;
+
 /**
  * Created by petermuys on 6/10/16.
  */
-public class RAnnotation extends BaseValueClass {
+public class RAnnotation extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final RClass    name;
     private final PMap<String,RConst> values;
 
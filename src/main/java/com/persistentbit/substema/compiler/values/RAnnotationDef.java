@@ -3,13 +3,16 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 /**
  * Contains the definition of a Substema Annotation
  *
  * @author Peter Muys
  * @since 6/10/16
  */
-public class RAnnotationDef extends BaseValueClass{
+public class RAnnotationDef extends BaseValueClass implements Serializable{
+	private static final long serialVersionUID = 1L;
 
 	private final RClass             name;
 	private final PList<RProperty>   properties;
@@ -3,6 +3,7 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.utils.BaseValueClass;
 
 import java.io.File;
+import java.io.Serializable;
 import java.util.Objects;
 
 /**
@@ -11,7 +12,9 @@ import java.util.Objects;
  * @author Peter Muys
  * @since 15/09/2016
  */
-public class RClass extends BaseValueClass{
+public class RClass extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final String packageName;
     private final String className;
 
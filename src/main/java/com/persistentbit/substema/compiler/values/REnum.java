@@ -3,12 +3,16 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 /**
  * Contains the definition of a Substema enum.<br>
  * @since 14/09/16
  * @author Peter Muys
  */
-public class REnum extends BaseValueClass {
+public class REnum extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final RClass name;
     private final PList<String> values;
     private final PList<RAnnotation> annotations;
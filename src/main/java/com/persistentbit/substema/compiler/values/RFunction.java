@@ -4,6 +4,7 @@ import com.persistentbit.core.Nullable;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
 import java.util.Optional;
 
 
@@ -13,7 +14,9 @@ import java.util.Optional;
  * @since 14/09/16
  * @author Peter Muys
  */
-public class RFunction extends BaseValueClass {
+public class RFunction extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final String name;
     private final PList<RFunctionParam> params;
     private final boolean cached;
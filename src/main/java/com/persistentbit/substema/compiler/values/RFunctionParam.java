@@ -4,6 +4,8 @@ import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 import com.persistentbit.core.utils.NoEqual;
 
+import java.io.Serializable;
+
 
 /**
  * Contains the definition of a {@link RFunction} parameter
@@ -11,7 +13,9 @@ import com.persistentbit.core.utils.NoEqual;
  * @author Peter Muys
  * @see RFunction
  */
-public class RFunctionParam extends BaseValueClass {
+public class RFunctionParam extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     @NoEqual
     private final String name;
     private final RValueType valueType;
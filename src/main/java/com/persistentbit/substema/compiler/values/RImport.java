@@ -2,12 +2,15 @@ package com.persistentbit.substema.compiler.values;
 
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
 import java.util.Optional;
 
 /**
  * Created by petermuys on 25/09/16.
  */
-public class RImport extends BaseValueClass{
+public class RImport extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final String packageName;
     private final RSubstema   substema;
 
@@ -3,12 +3,16 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 /**
  * Contains the definition of a Substema Interface class.<br>
  * @author Peter Muys
  * @since 19/09/2016
  */
-public class RInterfaceClass extends BaseValueClass{
+public class RInterfaceClass extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final RClass name;
     private final PList<RProperty> properties;
     private final PList<RAnnotation> annotations;
@@ -2,11 +2,15 @@ package com.persistentbit.substema.compiler.values;
 
 import com.persistentbit.core.collections.PList;
 
+import java.io.Serializable;
+
 /**
  * RPackage can be the first thing defined in a Substema and
  * can contain package specific documentation and other annotations
  */
-public class RPackage {
+public class RPackage implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private PList<RAnnotation> annotations;
 
     public RPackage(PList<RAnnotation> annotations) {
@@ -4,6 +4,7 @@ import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 import com.persistentbit.substema.compiler.values.expr.RConst;
 
+import java.io.Serializable;
 import java.util.Optional;
 
 /**
@@ -17,7 +18,9 @@ import java.util.Optional;
  * @since 14/09/16
  * @author Peter Muys
  */
-public class RProperty extends BaseValueClass {
+public class RProperty extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final String     name;
     private final RValueType valueType;
     private final RConst defaultValue;
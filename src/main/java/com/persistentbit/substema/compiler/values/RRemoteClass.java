@@ -3,13 +3,17 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 
 /**
  * Contains the definition of a Substema Remotable class.<br>
  * @since 14/09/16
  * @author Peter Muys
  */
-public class RRemoteClass extends BaseValueClass {
+public class RRemoteClass extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final RClass name;
     private final PList<RFunction> functions;
     private final PList<RAnnotation> annotations;
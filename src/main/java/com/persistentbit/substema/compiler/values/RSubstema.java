@@ -3,10 +3,14 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 /**
  * Created by petermuys on 14/09/16.
  */
-public class RSubstema extends BaseValueClass{
+public class RSubstema extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final String packageName;
     private final RPackage packageDef;
     private final PList<RImport> imports;
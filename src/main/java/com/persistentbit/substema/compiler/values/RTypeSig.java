@@ -3,6 +3,8 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 /**
  * This class contains the full type signature of value, meaning the {@link RClass} and the {@link RTypeSig}
  * of the Generic parameters.<br>
@@ -10,7 +12,9 @@ import com.persistentbit.core.utils.BaseValueClass;
  * @since 14/09/16
  * @author Peter Muys
  */
-public class RTypeSig extends BaseValueClass {
+public class RTypeSig extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final RClass             name;
     private final PList<RTypeSig> generics;
 
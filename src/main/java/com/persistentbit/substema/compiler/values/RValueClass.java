@@ -3,12 +3,16 @@ package com.persistentbit.substema.compiler.values;
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 /**
  * A RValueClass holds the definition of a Substema Case Class.<br>
  * @since 14/09/16
  * @author Peter Muys
  */
-public class RValueClass extends BaseValueClass {
+public class RValueClass extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final RTypeSig typeSig;
     private final PList<RProperty> properties;
     private final PList<RClass> interfaceClasses;
@@ -2,6 +2,8 @@ package com.persistentbit.substema.compiler.values;
 
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.Serializable;
+
 
 /**
  * Contains the defintion of a Substema property value type.<br>
@@ -9,7 +11,9 @@ import com.persistentbit.core.utils.BaseValueClass;
  * @since 14/09/16
  * @author Peter Muys
  */
-public class RValueType extends BaseValueClass {
+public class RValueType extends BaseValueClass implements Serializable{
+    private static final long serialVersionUID = 1L;
+
     private final RTypeSig typeSig;
     private final boolean required;
 
@@ -1,11 +1,13 @@
 package com.persistentbit.substema.compiler.values.expr;
 
+import java.io.Serializable;
+
 /**
  * The defintion of a Substema literal value
  * @author Peter Muys
  * @since 20/09/2016
  */
-public interface RConst {
+public interface RConst extends Serializable{
 
 	/**
 	 * Return the substema source form of this RConst
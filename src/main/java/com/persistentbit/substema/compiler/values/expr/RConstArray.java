@@ -8,6 +8,8 @@ import com.persistentbit.core.utils.BaseValueClass;
  * @since 20/09/2016
  */
 public class RConstArray extends BaseValueClass implements RConst {
+    private static final long serialVersionUID = 1L;
+
     private final PList<RConst>  values;
 
 
@@ -7,6 +7,8 @@ import com.persistentbit.core.utils.BaseValueClass;
  * @since 20/09/2016
  */
 public class RConstBoolean extends BaseValueClass implements RConst {
+    private static final long serialVersionUID = 1L;
+
     private final boolean value;
 
     public RConstBoolean(boolean value) {
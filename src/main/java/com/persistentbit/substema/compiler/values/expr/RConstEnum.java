@@ -8,6 +8,8 @@ import com.persistentbit.substema.compiler.values.RClass;
  * @since 20/09/2016
  */
 public class RConstEnum extends BaseValueClass implements RConst {
+    private static final long serialVersionUID = 1L;
+
     private final RClass enumClass;
     private final String  enumValue;
 
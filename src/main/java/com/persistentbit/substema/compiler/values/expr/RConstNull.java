@@ -7,6 +7,7 @@ import com.persistentbit.core.utils.BaseValueClass;
  * @since 20/09/2016
  */
 public class RConstNull extends BaseValueClass implements RConst {
+	private static final long serialVersionUID = 1L;
 
 	static public final RConstNull Null = new RConstNull();
 
@@ -14,6 +15,10 @@ public class RConstNull extends BaseValueClass implements RConst {
 
     }
 
+	private Object readResolve() {
+		return Null;
+	}
+
 	@Override
 	public String toSource() {
 		return "null";
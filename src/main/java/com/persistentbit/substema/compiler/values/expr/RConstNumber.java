@@ -8,6 +8,8 @@ import com.persistentbit.substema.compiler.values.RClass;
  * @since 20/09/2016
  */
 public class RConstNumber extends BaseValueClass implements RConst {
+    private static final long serialVersionUID = 1L;
+
     private final Number number;
     private final RClass numberType;
 
@@ -9,6 +9,8 @@ import com.persistentbit.core.utils.StringUtils;
  * @since 20/09/2016
  */
 public class RConstString extends BaseValueClass implements RConst {
+    private static final long serialVersionUID = 1L;
+
     private final String value;
 
 
@@ -9,6 +9,8 @@ import com.persistentbit.substema.compiler.values.RTypeSig;
  * @since 20/09/2016
  */
 public class RConstValueObject extends BaseValueClass implements RConst {
+    private static final long serialVersionUID = 1L;
+
     private final RTypeSig typeSig;
     private final POrderedMap<String,RConst> propValues;
 
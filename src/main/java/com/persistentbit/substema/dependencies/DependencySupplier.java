@@ -4,42 +4,105 @@ import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.collections.PMap;
 import com.persistentbit.core.utils.BaseValueClass;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.InputStream;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 /**
  * A DependencySupplier is responsible for resolving substema package names to Source Code.<br>
+ * On the first lookup, the packages in all archive, folder and source suppliers are indexed,
+ * so a package is found without trying every supplier. Archives stay open until {@link #close()}.
+ * With {@link #withArchives(Archives)}, the open archives and their index can be shared between suppliers.<br>
+ * A package that is not found in the index is also looked up in the folder suppliers, so substema files
+ * added to a folder after the first lookup are found. Archives are only indexed once.<br>
+ * The source code of a package is kept after the first lookup: create a new DependencySupplier,
+ * or {@link #close()} this one, to see changed source code.
  *
  * @author petermuys
  * @since 25/09/16
  */
 
-public class DependencySupplier extends BaseValueClass implements Function<String, Optional<String>>{
+public class DependencySupplier extends BaseValueClass implements Function<String, Optional<String>>, AutoCloseable{
+
+	/**
+	 * Opens and releases the archives of the {@link SupplierType#archive} suppliers.
+	 */
+	public interface Archives{
+
+		/**
+		 * Every supplier opens its own archives and closes them when the supplier is closed.
+		 */
+		Archives unshared = new Archives(){
+			@Override
+			public SubstemaArchive open(File file) {
+				return SubstemaArchive.open(file);
+			}
+
+			@Override
+			public void release(SubstemaArchive archive) {
+				archive.close();
+			}
+		};
+
+		/**
+		 * @param file The archive file
+		 *
+		 * @return The open archive
+		 */
+		SubstemaArchive open(File file);
+
+		/**
+		 * Called when a supplier that opened the archive is closed.
+		 *
+		 * @param archive The archive returned by {@link #open(File)}
+		 */
+		void release(SubstemaArchive archive);
+	}
 
 	public static final String substemaDefFileExtension = ".substema";
 	private final PList<SupplierDef> suppliers;
-	private PMap<String, String> resolved = PMap.empty();
+	private volatile PMap<String, String> resolved = PMap.empty();
+	//Package name -> index of the first archive, folder or source supplier with the package
+	private transient volatile Map<String, Integer> index;
+	private transient final Map<Integer, SubstemaArchive> archives = new HashMap<>();
+	private transient final Archives archiveProvider;
 
 	public DependencySupplier(SupplierDef... suppliers) {
 		this(PList.val(suppliers));
 	}
 
 	public DependencySupplier(PList<SupplierDef> suppliers) {
+		this(suppliers, Archives.unshared);
+	}
+
+	private DependencySupplier(PList<SupplierDef> suppliers, Archives archiveProvider) {
 		this.suppliers = suppliers;
+		this.archiveProvider = Objects.requireNonNull(archiveProvider);
 	}
 
 	public DependencySupplier withSuppliers(PList<SupplierDef> suppliers) {
-		return copyWith("suppliers", suppliers);
+		return new DependencySupplier(suppliers, archiveProvider);
+	}
+
+	/**
+	 * Create a supplier that opens and releases its archives with the given provider,
+	 * for example to share the archives between the suppliers of a long running build process.
+	 *
+	 * @param archiveProvider The archive provider
+	 *
+	 * @return A new DependencySupplier
+	 */
+	public DependencySupplier withArchives(Archives archiveProvider) {
+		return new DependencySupplier(suppliers, archiveProvider);
 	}
 
 	public PList<SupplierDef> getSuppliers() {
@@ -48,81 +111,173 @@ public class DependencySupplier extends BaseValueClass implements Function<Strin
 
 
 	public DependencySupplier withSource(String packageName, String sourceCode) {
-		return new DependencySupplier(suppliers.plus(new SupplierDef(SupplierType.source, packageName, sourceCode)));
+		return new DependencySupplier(
+			suppliers.plus(new SupplierDef(SupplierType.source, packageName, sourceCode)), archiveProvider
+		);
 	}
 
 	public DependencySupplier withResources() {
-		return new DependencySupplier(suppliers.plus(new SupplierDef(SupplierType.resource, "/")));
+		return new DependencySupplier(suppliers.plus(new SupplierDef(SupplierType.resource, "/")), archiveProvider);
 	}
 
+	/**
+	 * Get the source code for a package.<br>
+	 * Can be called from multiple threads: the parallel {@link com.persistentbit.substema.compiler.SubstemaCompiler}
+	 * resolves packages concurrently.
+	 *
+	 * @param packageName The substema package name
+	 *
+	 * @return The source code or empty when not found
+	 */
 	@Override
 	public Optional<String> apply(String packageName) {
-		if(resolved.containsKey(packageName) == false) {
-			resolve(packageName);
-		}
-		return resolved.getOpt(packageName);
-	}
-
-	private void resolve(String packageName) {
-		for(SupplierDef def : suppliers) {
-			String found;
-			switch(def.getType()) {
-				case archive:
-					found = resolveArchive(def, packageName);
-					break;
-				case folder:
-					found = resolveFolder(def, packageName);
-					break;
-				case resource:
-					found = resolveDependency(def, packageName);
-					break;
-				case source:
-					found = resolveSourceDependency(def, packageName);
-					break;
-				default:
-					throw new RuntimeException("Unknown dependency supplier type: " + def.getType());
+		Optional<String> found = resolved.getOpt(packageName);
+		if(found.isPresent()) {
+			return found;
+		}
+		return Optional.ofNullable(resolve(packageName));
+	}
+
+	/**
+	 * Get the names of all the packages in the archive, folder and source suppliers.<br>
+	 * Packages in resource suppliers can't be listed.
+	 *
+	 * @return The package names
+	 */
+	public PList<String> getIndexedPackages() {
+		return PList.<String>empty().plusAll(index().keySet());
+	}
+
+	/**
+	 * Release the archives opened by this supplier and forget the index and the resolved source code.<br>
+	 * The supplier can still be used after closing: the archives are opened and indexed again.
+	 */
+	@Override
+	public void close() {
+		synchronized(archives) {
+			try {
+				archives.values().forEach(archiveProvider::release);
+			} finally {
+				archives.clear();
+				index = null;
 			}
+		}
+		synchronized(this) {
+			resolved = PMap.empty();
+		}
+	}
+
+	private String resolve(String packageName) {
+		Integer indexed = index().get(packageName);
+		int     last    = indexed == null ? suppliers.size() : indexed;
+		for(int t = 0; t < last; t++) {
+			SupplierDef def = suppliers.get(t);
+			//Resources are not indexed, folders can have new files since the index was built
+			String found = def.getType() == SupplierType.resource
+				? resolveDependency(def, packageName)
+				: def.getType() == SupplierType.folder ? resolveFolder(def, packageName) : null;
 			if(found != null) {
-				resolved = resolved.put(packageName, found);
-				break;
+				return addResolved(packageName, found);
 			}
 		}
+		if(indexed == null) {
+			return null;
+		}
+		SupplierDef def = suppliers.get(indexed);
+		String      found;
+		switch(def.getType()) {
+			case archive:
+				found = resolveArchive(indexed, def, packageName);
+				break;
+			case folder:
+				found = resolveFolder(def, packageName);
+				break;
+			case source:
+				found = resolveSourceDependency(def, packageName);
+				break;
+			default:
+				throw new RuntimeException("Unknown dependency supplier type: " + def.getType());
+		}
+		return found == null ? null : addResolved(packageName, found);
 	}
 
-	private String resolveArchive(SupplierDef def, String packageName) {
-		File f = new File(def.getPath());
-		try(ZipFile zipFile = new ZipFile(f, ZipFile.OPEN_READ)) {
-			/*Enumeration<? extends ZipEntry> entries = zipFile.entries();
-			while(entries.hasMoreElements()){
-                System.out.println(entries.nextElement());
-            }*/
-			ZipEntry entry = zipFile.getEntry(packageName + substemaDefFileExtension);
-			if(entry != null) {
-				StringBuilder res = new StringBuilder();
-				try(Reader r = new InputStreamReader(zipFile.getInputStream(entry), Charset.forName("UTF-8"))) {
-					while(true) {
-						int c = r.read();
-						if(c == -1) {
-							break;
-						}
-						res.append((char) c);
-					}
+	private String addResolved(String packageName, String found) {
+		synchronized(this) {
+			resolved = resolved.put(packageName, found);
+		}
+		return found;
+	}
 
+	/**
+	 * Get the package index, building it on first use.
+	 */
+	private Map<String, Integer> index() {
+		Map<String, Integer> res = index;
+		if(res != null) {
+			return res;
+		}
+		synchronized(archives) {
+			if(index != null) {
+				return index;
+			}
+			res = new HashMap<>();
+			for(int t = 0; t < suppliers.size(); t++) {
+				SupplierDef def = suppliers.get(t);
+				switch(def.getType()) {
+					case archive:
+						for(String packageName : openArchive(t, def).getPackages()) {
+							res.putIfAbsent(packageName, t);
+						}
+						break;
+					case folder:
+						String[] names = new File(def.getPath()).list();
+						if(names != null) {
+							for(String name : names) {
+								addToIndex(res, name, t);
+							}
+						}
+						break;
+					case source:
+						res.putIfAbsent(def.getPath(), t);
+						break;
+					case resource:
+						//Resources are looked up per package
+						break;
+					default:
+						throw new RuntimeException("Unknown dependency supplier type: " + def.getType());
 				}
-				return res.toString();
 			}
-			return null;
+			index = res;
+			return res;
+		}
+	}
+
+	private static void addToIndex(Map<String, Integer> index, String fileName, int supplier) {
+		if(fileName.endsWith(substemaDefFileExtension) && fileName.indexOf('/') < 0) {
+			index.putIfAbsent(fileName.substring(0, fileName.length() - substemaDefFileExtension.length()), supplier);
+		}
+	}
 
-		} catch(IOException e) {
-			throw new RuntimeException("Error handling archive " + f.getAbsolutePath(), e);
+	private SubstemaArchive openArchive(int supplier, SupplierDef def) {
+		synchronized(archives) {
+			SubstemaArchive archive = archives.get(supplier);
+			if(archive == null) {
+				archive = archiveProvider.open(new File(def.getPath()));
+				archives.put(supplier, archive);
+			}
+			return archive;
 		}
 	}
 
+	private String resolveArchive(int supplier, SupplierDef def, String packageName) {
+		return openArchive(supplier, def).read(packageName);
+	}
+
 	private String resolveFolder(SupplierDef def, String packageName) {
 		File f = new File(def.getPath(), packageName + substemaDefFileExtension);
 		if(f.exists()) {
 			try {
-				return new String(Files.readAllBytes(f.toPath()));
+				return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
 			} catch(IOException e) {
 				throw new RuntimeException("Error reading file " + f.getAbsolutePath(), e);
 			}
@@ -136,8 +291,8 @@ public class DependencySupplier extends BaseValueClass implements Function<Strin
 
 			return null;
 		}
-		try {
-			return new String(Files.readAllBytes(Paths.get(in.toURI())));
+		try(InputStream stream = in.openStream()) {
+			return read(stream);
 		} catch(Exception e) {
 			throw new RuntimeException("Error getting resource for " + in);
 		}
@@ -150,6 +305,16 @@ public class DependencySupplier extends BaseValueClass implements Function<Strin
 		return null;
 	}
 
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out    = new ByteArrayOutputStream();
+		byte[]                buffer = new byte[8192];
+		int                   count;
+		while((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
     /*
 	static public void main(String...args){
         SupplierDef def1 = new SupplierDef(SupplierType.archive,"/Users/petermuys/.m2/repository/com/persistentbit/substema/1.0.0-SNAPSHOT/substema-1.0.0-SNAPSHOT.jar");
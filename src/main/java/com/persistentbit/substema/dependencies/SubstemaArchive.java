@@ -0,0 +1,126 @@
+package com.persistentbit.substema.dependencies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An open archive (jar or zip) with the names of the substema packages in its root.<br>
+ * The archive is read by {@link DependencySupplier} for {@link SupplierType#archive} suppliers.
+ * An instance can be shared between suppliers with a {@link DependencySupplier.Archives} implementation.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public final class SubstemaArchive implements AutoCloseable{
+
+	private final File        file;
+	private final long        lastModified;
+	private final long        length;
+	private final ZipFile     zipFile;
+	private final Set<String> packages;
+
+	private SubstemaArchive(File file, long lastModified, long length, ZipFile zipFile, Set<String> packages) {
+		this.file = file;
+		this.lastModified = lastModified;
+		this.length = length;
+		this.zipFile = zipFile;
+		this.packages = packages;
+	}
+
+	/**
+	 * Open an archive and index its substema packages.
+	 *
+	 * @param file The archive file
+	 *
+	 * @return The open archive
+	 */
+	public static SubstemaArchive open(File file) {
+		File archive      = Objects.requireNonNull(file).getAbsoluteFile();
+		long lastModified = archive.lastModified();
+		long length       = archive.length();
+		try {
+			ZipFile                         zipFile  = new ZipFile(archive, ZipFile.OPEN_READ);
+			Set<String>                     packages = new HashSet<>();
+			Enumeration<? extends ZipEntry> entries  = zipFile.entries();
+			while(entries.hasMoreElements()) {
+				String name = entries.nextElement().getName();
+				if(name.endsWith(DependencySupplier.substemaDefFileExtension) && name.indexOf('/') < 0) {
+					packages.add(name.substring(0, name.length() - DependencySupplier.substemaDefFileExtension.length()));
+				}
+			}
+			return new SubstemaArchive(archive, lastModified, length, zipFile, Collections.unmodifiableSet(packages));
+		} catch(IOException e) {
+			throw new RuntimeException("Error handling archive " + archive.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @return The absolute archive file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return The substema packages in this archive
+	 */
+	public Set<String> getPackages() {
+		return packages;
+	}
+
+	/**
+	 * @return true if the archive file was modified since it was opened
+	 */
+	public boolean isChanged() {
+		return file.lastModified() != lastModified || file.length() != length;
+	}
+
+	/**
+	 * Read the source code of a package.
+	 *
+	 * @param packageName The substema package name
+	 *
+	 * @return The source code or null when the package is not in this archive
+	 */
+	public String read(String packageName) {
+		ZipEntry entry = zipFile.getEntry(packageName + DependencySupplier.substemaDefFileExtension);
+		if(entry == null) {
+			return null;
+		}
+		try(InputStream in = zipFile.getInputStream(entry)) {
+			ByteArrayOutputStream out    = new ByteArrayOutputStream();
+			byte[]                buffer = new byte[8192];
+			int                   count;
+			while((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		} catch(IOException e) {
+			throw new RuntimeException("Error handling archive " + file.getAbsolutePath(), e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			zipFile.close();
+		} catch(IOException e) {
+			throw new RuntimeException("Error closing archive " + file.getAbsolutePath(), e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SubstemaArchive[" + file + "]";
+	}
+}
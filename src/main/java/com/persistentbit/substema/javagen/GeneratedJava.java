@@ -2,9 +2,18 @@ package com.persistentbit.substema.javagen;
 
 import com.persistentbit.core.result.Result;
 import com.persistentbit.core.utils.IO;
+import com.persistentbit.substema.compiler.SubstemaException;
 import com.persistentbit.substema.compiler.values.RClass;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * @since 14/09/16
@@ -13,6 +22,7 @@ import java.io.File;
 public class GeneratedJava {
     public final RClass name;
     public final String code;
+    private volatile String hash;
 
     public GeneratedJava(RClass name,  String code) {
         this.name = name;
@@ -28,20 +38,85 @@ public class GeneratedJava {
         return name.getPackagePath(root);
     }
 
+    /**
+     * @param root The root folder for the generated java sources
+     * @return The java file for this class under the root folder
+     */
+    public File getFile(File root) {
+        return new File(getPackagePath(root), name.getClassName() + ".java");
+    }
+
+    /**
+     * @return The SHA-256 hash (in hex) of the generated code
+     */
+    public String getHash() {
+        String res = hash;
+        if(res == null){
+            res = hash(code.getBytes(StandardCharsets.UTF_8));
+            hash = res;
+        }
+        return res;
+    }
 
+    /**
+     * Write the generated code to the java file under the root folder.<br>
+     * When the file already exists with the same content, the file is left untouched so
+     * incremental compilers don't see a change.<br>
+     * The file is replaced atomically: readers see the old or the new content, never a partial file.
+     * @param root The root folder for the generated java sources
+     * @return The java file
+     */
     public Result<File> writeToFile(File root) {
         return Result.function(this, root).code(l ->
-
-                                                    IO.mkdirsIfNotExisting(getPackagePath(root))
-														.map(dest -> new File(dest, name.getClassName() + ".java"))
-														.map(dest -> {
-                                                            l.info("Writing Generated java to " + dest
-                                                                .getAbsolutePath());
-                                                            IO.writeFile(code, dest, IO.utf8);
-                                                            return dest;
-                                                        })
+            IO.mkdirsIfNotExisting(getPackagePath(root))
+                .map(dest -> getFile(root))
+                .flatMap(dest -> {
+                    try {
+                        if(dest.exists() && getHash().equals(hash(Files.readAllBytes(dest.toPath())))){
+                            l.info("Unchanged generated java " + dest.getAbsolutePath());
+                            return Result.success(dest);
+                        }
+                        l.info("Writing Generated java to " + dest.getAbsolutePath());
+                        replace(dest.toPath(), code.getBytes(StandardCharsets.UTF_8));
+                        return Result.success(dest);
+                    } catch(IOException e) {
+                        return Result.failure(new SubstemaException("Can't write " + dest.getAbsolutePath(), e));
+                    }
+                })
         );
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Atomically replace the content of a file, using a temporary file in the same folder.
+     * @param dest The file to replace
+     * @param content The new content
+     * @throws IOException On write errors
+     */
+    static void replace(Path dest, byte[] content) throws IOException {
+        Path tmp = Files.createTempFile(dest.getParent(), dest.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, content);
+            try {
+                Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch(AtomicMoveNotSupportedException e) {
+                Files.move(tmp, dest, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    static String hash(byte[] content) {
+        try {
+            StringBuilder res = new StringBuilder();
+            for(byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                res.append(String.format("%02x", b));
+            }
+            return res.toString();
+        } catch(NoSuchAlgorithmException e) {
+            throw new SubstemaException("Can't create a SHA-256 digest", e);
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.persistentbit.substema.javagen;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.collections.PMap;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.substema.compiler.SubstemaException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The list of java files generated for a substema package, with the hash of their content.<br>
+ * The manifest is stored as {@code .<packageName>.generated} in the root folder of the generated sources.
+ * With the manifest of the previous generation, generated files that are no longer generated can be deleted
+ * without scanning the output folder.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ * @see SubstemaJavaGen#generateAndWriteToFiles
+ */
+public final class GeneratedJavaManifest{
+
+	public static final String manifestFileExtension = ".generated";
+
+	private final File                root;
+	private final String              packageName;
+	private final PMap<String, String> files;
+
+	/**
+	 * @param root        The root folder of the generated sources
+	 * @param packageName The substema package
+	 * @param files       Path of the generated files relative to the root folder mapped to their content hash
+	 */
+	public GeneratedJavaManifest(File root, String packageName, PMap<String, String> files) {
+		this.root = Objects.requireNonNull(root);
+		this.packageName = Objects.requireNonNull(packageName);
+		this.files = Objects.requireNonNull(files);
+	}
+
+	/**
+	 * Create the manifest for the generated java of a substema package.
+	 *
+	 * @param root        The root folder of the generated sources
+	 * @param packageName The substema package
+	 * @param generated   The generated java sources
+	 *
+	 * @return The manifest
+	 */
+	public static GeneratedJavaManifest of(File root, String packageName, PList<GeneratedJava> generated) {
+		PMap<String, String> files = PMap.empty();
+		for(GeneratedJava g : generated) {
+			files = files.put(relative(root, g.getFile(root)), g.getHash());
+		}
+		return new GeneratedJavaManifest(root, packageName, files);
+	}
+
+	/**
+	 * Read the manifest of a substema package.<br>
+	 * A missing or unreadable manifest is empty.
+	 *
+	 * @param root        The root folder of the generated sources
+	 * @param packageName The substema package
+	 *
+	 * @return The manifest
+	 */
+	public static GeneratedJavaManifest read(File root, String packageName) {
+		PMap<String, String> files = PMap.empty();
+		File                 file  = file(root, packageName);
+		if(file.exists()) {
+			try {
+				for(String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+					int sep = line.lastIndexOf('\t');
+					if(sep > 0) {
+						files = files.put(line.substring(0, sep), line.substring(sep + 1));
+					}
+				}
+			} catch(IOException e) {
+				files = PMap.empty();
+			}
+		}
+		return new GeneratedJavaManifest(root, packageName, files);
+	}
+
+	/**
+	 * Write this manifest to the root folder.
+	 *
+	 * @return The manifest file
+	 */
+	public Result<File> write() {
+		return Result.function(packageName).code(l -> {
+			StringBuilder content = new StringBuilder();
+			files.keys().plist().sorted().forEach(path ->
+				content.append(path).append('\t').append(files.get(path)).append('\n')
+			);
+			File dest = file(root, packageName);
+			try {
+				Files.createDirectories(root.toPath());
+				GeneratedJava.replace(dest.toPath(), content.toString().getBytes(StandardCharsets.UTF_8));
+			} catch(IOException e) {
+				return Result.failure(new SubstemaException("Can't write " + dest.getAbsolutePath(), e));
+			}
+			return Result.success(dest);
+		});
+	}
+
+	/**
+	 * Delete the files in this manifest that are not in a newer manifest.<br>
+	 * Paths that resolve outside the root folder are never deleted and give a failure.
+	 *
+	 * @param newer The manifest of the new generation
+	 *
+	 * @return The Results of the deleted files
+	 */
+	public PList<Result<File>> deleteStale(GeneratedJavaManifest newer) {
+		return files.keys()
+			.filter(path -> newer.files.containsKey(path) == false)
+			.map(path -> {
+				Optional<File> resolved = resolve(path);
+				if(resolved.isPresent() == false) {
+					return Result.<File>failure(new SubstemaException(
+						"Not deleting " + path + ": outside of " + root.getAbsolutePath()
+					));
+				}
+				File stale = resolved.get();
+				try {
+					Files.deleteIfExists(stale.toPath());
+					return Result.success(stale);
+				} catch(IOException e) {
+					return Result.<File>failure(new SubstemaException("Can't delete " + stale.getAbsolutePath(), e));
+				}
+			})
+			.plist();
+	}
+
+	/**
+	 * @param generated A generated java file
+	 *
+	 * @return The content hash of the file in this manifest
+	 */
+	public Optional<String> getHash(File generated) {
+		return files.getOpt(relative(root, generated));
+	}
+
+	/**
+	 * Check that the generated files are still on disk as they were generated.
+	 *
+	 * @return true if all files in this manifest exist and have the content hash of the manifest
+	 */
+	public boolean isIntact() {
+		for(String path : files.keys()) {
+			Optional<File> resolved = resolve(path);
+			if(resolved.isPresent() == false) {
+				return false;
+			}
+			File generated = resolved.get();
+			try {
+				if(generated.exists() == false
+					|| files.get(path).equals(GeneratedJava.hash(Files.readAllBytes(generated.toPath()))) == false) {
+					return false;
+				}
+			} catch(IOException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The generated files in this manifest
+	 */
+	public PList<File> getFiles() {
+		return files.keys().map(this::resolve).filter(Optional::isPresent).map(Optional::get).plist();
+	}
+
+	/**
+	 * Resolve a path of this manifest against the root folder.<br>
+	 * The manifest is read from disk, so a path like {@code ../../x} or an absolute path
+	 * must not escape the root folder.
+	 *
+	 * @param path The relative path of a generated file
+	 *
+	 * @return The normalized file or empty when the path is outside the root folder
+	 */
+	private Optional<File> resolve(String path) {
+		try {
+			Path rootPath = root.toPath().toAbsolutePath().normalize();
+			Path resolved = rootPath.resolve(path).normalize();
+			if(resolved.startsWith(rootPath) == false || resolved.equals(rootPath)) {
+				return Optional.empty();
+			}
+			return Optional.of(resolved.toFile());
+		} catch(InvalidPathException e) {
+			return Optional.empty();
+		}
+	}
+
+	private static File file(File root, String packageName) {
+		return new File(root, "." + packageName + manifestFileExtension);
+	}
+
+	private static String relative(File root, File file) {
+		return root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+	}
+
+	@Override
+	public String toString() {
+		return "GeneratedJavaManifest[" + packageName + ", " + files.size() + " files]";
+	}
+}
@@ -13,7 +13,8 @@ import java.util.function.Consumer;
  * @author Peter Muys
  */
 public final class RConstToJava implements RConstVisitor<String>{
-    private static int lambdaVarIndex = 1;
+    //Per instance, so the generated code is the same when generating in parallel
+    private int lambdaVarIndex = 1;
     private final String defaultPackageName;
     private final Consumer<RClass> imports;
 
@@ -9,6 +9,8 @@ import com.persistentbit.core.result.Result;
 import com.persistentbit.core.sourcegen.SourceGen;
 import com.persistentbit.core.utils.builders.NOT;
 import com.persistentbit.core.utils.builders.SET;
+import com.persistentbit.substema.RCursor;
+import com.persistentbit.substema.RStream;
 import com.persistentbit.substema.annotations.Remotable;
 import com.persistentbit.substema.annotations.RemoteCache;
 import com.persistentbit.substema.compiler.SubstemaCompiler;
@@ -20,6 +22,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
 
 /**
@@ -33,6 +38,7 @@ public final class SubstemaJavaGen{
 	private final RSubstema      substema;
 
 	private final SubstemaCompiler compiler;
+	private final ForkJoinPool     pool;
 	private final PList<GeneratedJava> generatedJava = PList.empty();
 
 
@@ -42,11 +48,15 @@ public final class SubstemaJavaGen{
 	 * @param compiler The compiler used for external dependencies
 	 * @param options  The code generator options
 	 * @param substema The main substema
+	 * @param pool     The pool for generating the definitions in parallel
 	 */
-	private SubstemaJavaGen(SubstemaCompiler compiler, JavaGenOptions options, RSubstema substema) {
+	private SubstemaJavaGen(SubstemaCompiler compiler, JavaGenOptions options, RSubstema substema,
+							ForkJoinPool pool
+	) {
 		this.options = options;
 		this.substema = substema;
 		this.compiler = compiler;
+		this.pool = Objects.requireNonNull(pool);
 
 	}
 
@@ -63,12 +73,60 @@ public final class SubstemaJavaGen{
 	public static PList<Result<GeneratedJava>> generate(SubstemaCompiler compiler, JavaGenOptions options,
 														RSubstema substema
 	) {
-		return new SubstemaJavaGen(compiler, options, substema).generateSubstema();
+		return generate(compiler, options, substema, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Generate all the java classes for a given substema, generating the definitions in parallel
+	 * on a fork-join pool.<br>
+	 * The result is in the same order as with a sequential generation.
+	 *
+	 * @param compiler The compiler for external definitions
+	 * @param options  The java generator options
+	 * @param substema The substema to generate java classes for
+	 * @param pool     The pool for the generator tasks
+	 *
+	 * @return The List of {@link GeneratedJava} java sources
+	 */
+	public static PList<Result<GeneratedJava>> generate(SubstemaCompiler compiler, JavaGenOptions options,
+														RSubstema substema, ForkJoinPool pool
+	) {
+		return new SubstemaJavaGen(compiler, options, substema, pool).generateSubstema();
+	}
+
+	/**
+	 * Generate all the java classes for a list of substemas.<br>
+	 * All the definitions of all the substemas are generated in parallel on the pool.
+	 *
+	 * @param compiler  The compiler for external definitions
+	 * @param options   The java generator options
+	 * @param substemas The substemas to generate java classes for
+	 * @param pool      The pool for the generator tasks
+	 *
+	 * @return The List of {@link GeneratedJava} java sources, in the order of the substemas
+	 */
+	public static PList<Result<GeneratedJava>> generateAll(SubstemaCompiler compiler, JavaGenOptions options,
+														   PList<RSubstema> substemas, ForkJoinPool pool
+	) {
+		return Log.function(substemas.map(RSubstema::getPackageName).plist()).code(l -> {
+			PList<ForkJoinTask<PList<Result<GeneratedJava>>>> tasks = substemas
+				.map(s -> pool.submit(() -> generate(compiler, options, s, pool)))
+				.plist();
+			PList<Result<GeneratedJava>> result = PList.empty();
+			for(ForkJoinTask<PList<Result<GeneratedJava>>> task : tasks) {
+				result = result.plusAll(task.join());
+			}
+			return result;
+		});
 	}
 
 	/**
 	 * Generate java using {@link #generate(SubstemaCompiler, JavaGenOptions, RSubstema)} and
-	 * then write the files to a local folder
+	 * then write the files to a local folder.<br>
+	 * Files with unchanged content are not written.
+	 * Files generated by a previous run for the same substema that are no longer generated are deleted,
+	 * using the {@link GeneratedJavaManifest} of the package.
+	 * Failures to delete a stale file or to write the manifest are added to the returned list.
 	 *
 	 * @param compiler     The compiler for external definitions
 	 * @param options      The java generator options
@@ -80,13 +138,31 @@ public final class SubstemaJavaGen{
 	public static PList<Result<File>> generateAndWriteToFiles(SubstemaCompiler compiler, JavaGenOptions options,
 															  RSubstema substema, File outputFolder
 	) {
-		return Log.function(compiler, options, substema, outputFolder).code(l ->
-																				generate(compiler, options, substema)
-																					.map(generated -> generated
-																						.flatMap(g -> g
-																							.writeToFile(outputFolder))
-																					)
-		);
+		return Log.function(compiler, options, substema, outputFolder).code(l -> {
+			PList<Result<GeneratedJava>> generated = generate(compiler, options, substema);
+			PList<Result<File>> written = generated.map(r -> r.flatMap(g -> g.writeToFile(outputFolder))).plist();
+			if(written.find(r -> r.isError() || r.isEmpty()).isPresent()) {
+				//Keep the previous manifest, so stale files are deleted by the next successful run
+				return written;
+			}
+			GeneratedJavaManifest previous = GeneratedJavaManifest.read(outputFolder, substema.getPackageName());
+			GeneratedJavaManifest current = GeneratedJavaManifest.of(
+				outputFolder, substema.getPackageName(), generated.map(Result::orElseThrow).plist()
+			);
+			for(Result<File> deleted : previous.deleteStale(current)) {
+				if(deleted.isError()) {
+					written = written.plus(deleted);
+				}
+				else {
+					l.info("Deleted stale generated java " + deleted);
+				}
+			}
+			Result<File> manifest = current.write();
+			if(manifest.isError()) {
+				written = written.plus(manifest);
+			}
+			return written;
+		});
 	}
 
 	/**
@@ -96,36 +172,47 @@ public final class SubstemaJavaGen{
 	 */
 	public PList<Result<GeneratedJava>> generateSubstema() {
 		return Log.function().code(log -> {
-			PList<Result<GeneratedJava>> result = PList.empty();
+			//Every definition has its own Generator, so they can be generated in parallel.
+			//Tasks are joined in definition order to keep the output and the log deterministic.
+			PList<ForkJoinTask<Result<GeneratedJava>>> tasks = PList.empty();
 			if(substema.getPackageDef().getAnnotations().isEmpty() == false) {
-				result = result.plus(
-					new Generator().generatePackageInfo(substema.getPackageDef())
+				tasks = tasks.plus(
+					fork(() -> new Generator().generatePackageInfo(substema.getPackageDef()))
 				);
 
 			}
-			Function<Result<GeneratedJava>, Result<GeneratedJava>> addLog = gj -> {
-				log.add(gj);
-				return gj;
-			};
-
-			result = result.plusAll(
-				substema.getEnums()
-					.map(e -> addLog.apply(new Generator().generateEnum(e))
-					));
-			result = result.plusAll(
-				substema.getValueClasses()
-					.map(vc -> addLog.apply(new Generator().generateValueClass(vc))));
-			result = result.plusAll(
-				substema.getRemoteClasses()
-					.map(rc -> addLog.apply(new Generator().generateRemoteClass(rc))));
-			result = result.plusAll(
-				substema.getInterfaceClasses()
-					.map(ic -> addLog.apply(new Generator().generateInterfaceClass(ic))));
-
-			return result.filterNulls().plist();
+			for(REnum e : substema.getEnums()) {
+				tasks = tasks.plus(fork(() -> new Generator().generateEnum(e)));
+			}
+			for(RValueClass vc : substema.getValueClasses()) {
+				tasks = tasks.plus(fork(() -> new Generator().generateValueClass(vc)));
+			}
+			for(RRemoteClass rc : substema.getRemoteClasses()) {
+				tasks = tasks.plus(fork(() -> new Generator().generateRemoteClass(rc)));
+			}
+			for(RInterfaceClass ic : substema.getInterfaceClasses()) {
+				tasks = tasks.plus(fork(() -> new Generator().generateInterfaceClass(ic)));
+			}
+
+			PList<Result<GeneratedJava>> result = PList.empty();
+			for(ForkJoinTask<Result<GeneratedJava>> task : tasks) {
+				Result<GeneratedJava> gj = task.join();
+				if(gj != null) {
+					log.add(gj);
+					result = result.plus(gj);
+				}
+			}
+			return result;
 		});
 	}
 
+	private ForkJoinTask<Result<GeneratedJava>> fork(Callable<Result<GeneratedJava>> generator) {
+		if(ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+			return ForkJoinTask.adapt(generator).fork();
+		}
+		return pool.submit(generator);
+	}
+
 
 	private class Generator extends AbstractJavaGenerator{
 
@@ -544,6 +631,14 @@ public final class SubstemaJavaGen{
 						name = "PMap";
 						addImport(PMap.class);
 						break;
+					case "Stream":
+						name = RStream.class.getSimpleName();
+						addImport(RStream.class);
+						break;
+					case "Cursor":
+						name = RCursor.class.getSimpleName();
+						addImport(RCursor.class);
+						break;
 					case "Date":
 						name = "LocalDate";
 						addImport(LocalDate.class);
@@ -0,0 +1,300 @@
+package com.persistentbit.substema.javagen;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.collections.PSet;
+import com.persistentbit.core.logging.Log;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.substema.compiler.SubstemaCompiler;
+import com.persistentbit.substema.compiler.SubstemaException;
+import com.persistentbit.substema.compiler.values.RImport;
+import com.persistentbit.substema.compiler.values.RSubstema;
+import com.persistentbit.substema.dependencies.DependencySupplier;
+import com.persistentbit.substema.dependencies.SupplierDef;
+import com.persistentbit.substema.dependencies.SupplierType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long running java generator for substema packages.<br>
+ * After the first generation of a list of packages, the generator watches the folders of the
+ * {@link SupplierType#folder} suppliers of the {@link DependencySupplier}.
+ * When a substema file changes, the packages that are changed or import a changed package
+ * (direct or indirect) are compiled and generated again.<br>
+ * Only the java files with different content are written, so unchanged files keep their timestamp
+ * and don't trigger recompiles. Java files that are no longer generated are deleted.
+ * The generated files are tracked with the {@link GeneratedJavaManifest} of each package, like
+ * {@link SubstemaJavaGen#generateAndWriteToFiles}, so stale files of a previous run are also deleted.<br>
+ * {@code
+ * SubstemaWatchGenerator gen = new SubstemaWatchGenerator(deps, options, new File("target/generated-sources"));
+ * gen.generate(PList.val("com.mycompany.api"));
+ * gen.start(written -> System.out.println("Regenerated " + written));
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class SubstemaWatchGenerator implements AutoCloseable{
+
+	private static final Logger log = Logger.getLogger(SubstemaWatchGenerator.class.getName());
+
+	private final DependencySupplier             dependencies;
+	private final PList<String>                  implicitImportPackages;
+	private final JavaGenOptions                 options;
+	private final File                           outputFolder;
+	private final long                           settleMs;
+	//The generated packages with all their direct and indirect imports
+	private final Map<String, Set<String>>       imports = new HashMap<>();
+	private       WatchService                   watchService;
+	private       Thread                         watchThread;
+
+	/**
+	 * @param dependencies The substema sources. Only folder suppliers are watched
+	 * @param options      The java generator options
+	 * @param outputFolder The root folder for the generated java sources
+	 */
+	public SubstemaWatchGenerator(DependencySupplier dependencies, JavaGenOptions options, File outputFolder) {
+		this(dependencies, PList.empty(), options, outputFolder, 200);
+	}
+
+	private SubstemaWatchGenerator(DependencySupplier dependencies, PList<String> implicitImportPackages,
+								   JavaGenOptions options, File outputFolder, long settleMs
+	) {
+		this.dependencies = Objects.requireNonNull(dependencies);
+		this.implicitImportPackages = Objects.requireNonNull(implicitImportPackages);
+		this.options = Objects.requireNonNull(options);
+		this.outputFolder = Objects.requireNonNull(outputFolder);
+		this.settleMs = settleMs;
+	}
+
+	public SubstemaWatchGenerator withImplicitImportPackages(PList<String> implicitImportPackages) {
+		return new SubstemaWatchGenerator(dependencies, implicitImportPackages, options, outputFolder, settleMs);
+	}
+
+	/**
+	 * Set the time to wait for more file changes before generating.<br>
+	 * Editors often save a file in multiple steps.
+	 *
+	 * @param time The time to wait
+	 * @param unit The time unit
+	 *
+	 * @return A new generator
+	 */
+	public SubstemaWatchGenerator withSettleTime(long time, TimeUnit unit) {
+		return new SubstemaWatchGenerator(dependencies, implicitImportPackages, options, outputFolder,
+										  unit.toMillis(time)
+		);
+	}
+
+	/**
+	 * Compile and generate packages and remember them for regeneration when their sources change.
+	 *
+	 * @param packageNames The packages to generate
+	 *
+	 * @return The Results of the written files. Files unchanged since the previous generation are not in the list.
+	 */
+	public synchronized PList<Result<File>> generate(PList<String> packageNames) {
+		return Log.function(packageNames).code(l -> {
+			try(SubstemaCompiler compiler = newCompiler()) {
+				PList<Result<File>> res = PList.empty();
+				for(String packageName : packageNames) {
+					res = res.plusAll(generate(compiler, packageName));
+				}
+				return res;
+			}
+		});
+	}
+
+	/**
+	 * Regenerate the generated packages that are affected by changed substema packages.
+	 *
+	 * @param changedPackages The packages with changed source code
+	 *
+	 * @return The Results of the written and deleted files. Files unchanged since the previous generation
+	 * are not in the list.
+	 */
+	public synchronized PList<Result<File>> regenerate(PSet<String> changedPackages) {
+		return Log.function(changedPackages).code(l -> {
+			PList<String> affected = PList.empty();
+			for(Map.Entry<String, Set<String>> entry : imports.entrySet()) {
+				if(changedPackages.contains(entry.getKey())
+					|| entry.getValue().stream().anyMatch(changedPackages::contains)) {
+					affected = affected.plus(entry.getKey());
+				}
+			}
+			l.info("Affected packages: " + affected);
+			if(affected.isEmpty()) {
+				return PList.<Result<File>>empty();
+			}
+			try(SubstemaCompiler compiler = newCompiler()) {
+				PList<Result<File>> res = PList.empty();
+				for(String packageName : affected) {
+					res = res.plusAll(generate(compiler, packageName));
+				}
+				return res;
+			}
+		});
+	}
+
+	/**
+	 * Start watching the folder suppliers on a daemon thread.
+	 *
+	 * @param onRegenerated Receives the written files after every regeneration
+	 *
+	 * @return This generator
+	 */
+	public synchronized SubstemaWatchGenerator start(Consumer<PList<Result<File>>> onRegenerated) {
+		if(watchThread != null) {
+			throw new IllegalStateException("Already started");
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			for(SupplierDef def : dependencies.getSuppliers()) {
+				if(def.getType() == SupplierType.folder) {
+					Paths.get(def.getPath()).register(watchService,
+													   StandardWatchEventKinds.ENTRY_CREATE,
+													   StandardWatchEventKinds.ENTRY_MODIFY,
+													   StandardWatchEventKinds.ENTRY_DELETE
+					);
+				}
+			}
+		} catch(IOException e) {
+			throw new SubstemaException("Can't watch the substema folders", e);
+		}
+		WatchService service = watchService;
+		watchThread = new Thread(() -> watch(service, onRegenerated), "substema-watch");
+		watchThread.setDaemon(true);
+		watchThread.start();
+		return this;
+	}
+
+	/**
+	 * Stop watching the substema folders
+	 */
+	@Override
+	public synchronized void close() {
+		if(watchThread == null) {
+			return;
+		}
+		try {
+			watchService.close();
+		} catch(IOException e) {
+			throw new SubstemaException("Error closing the substema folder watcher", e);
+		}
+		watchThread.interrupt();
+		watchThread = null;
+		watchService = null;
+	}
+
+	private void watch(WatchService service, Consumer<PList<Result<File>>> onRegenerated) {
+		try {
+			while(true) {
+				PSet<String> changed = changedPackages(service.take(), PSet.empty());
+				//Collect all the changes until the files are settled
+				WatchKey more;
+				while((more = service.poll(settleMs, TimeUnit.MILLISECONDS)) != null) {
+					changed = changedPackages(more, changed);
+				}
+				if(changed.isEmpty() == false) {
+					//An error in one regeneration must not stop the watcher
+					try {
+						onRegenerated.accept(regenerate(changed));
+					} catch(RuntimeException e) {
+						log.log(Level.WARNING, "Regenerating " + changed + " failed", e);
+					}
+				}
+			}
+		} catch(InterruptedException | ClosedWatchServiceException e) {
+			//Stopped
+		}
+	}
+
+	private static PSet<String> changedPackages(WatchKey key, PSet<String> changed) {
+		for(WatchEvent<?> event : key.pollEvents()) {
+			if(event.context() instanceof Path) {
+				String name = event.context().toString();
+				if(name.endsWith(DependencySupplier.substemaDefFileExtension)) {
+					changed = changed.plus(
+						name.substring(0, name.length() - DependencySupplier.substemaDefFileExtension.length())
+					);
+				}
+			}
+		}
+		key.reset();
+		return changed;
+	}
+
+	/**
+	 * A new compiler with new dependencies, because the {@link DependencySupplier} keeps the source code of
+	 * resolved packages and the index of the available packages.
+	 */
+	private SubstemaCompiler newCompiler() {
+		return new SubstemaCompiler(new DependencySupplier(dependencies.getSuppliers()), implicitImportPackages);
+	}
+
+	private PList<Result<File>> generate(SubstemaCompiler compiler, String packageName) {
+		Result<RSubstema> compiled = compiler.compile(packageName);
+		if(compiled.isError() || compiled.isEmpty()) {
+			return PList.val(compiled.map(s -> outputFolder));
+		}
+		RSubstema substema = compiled.orElseThrow();
+		imports.put(packageName, allImports(compiler, substema, new HashSet<>()));
+
+		GeneratedJavaManifest previous = GeneratedJavaManifest.read(outputFolder, packageName);
+		PList<GeneratedJava>  current  = PList.empty();
+		PList<Result<File>>   res      = PList.empty();
+		boolean               failed   = false;
+		for(Result<GeneratedJava> gen : SubstemaJavaGen.generate(compiler, options, substema)) {
+			if(gen.isError() || gen.isEmpty()) {
+				res = res.plus(gen.map(g -> outputFolder));
+				failed = true;
+				continue;
+			}
+			GeneratedJava g = gen.orElseThrow();
+			current = current.plus(g);
+			//writeToFile doesn't write unchanged content
+			Result<File> written = g.writeToFile(outputFolder);
+			if(written.isError()
+				|| g.getHash().equals(previous.getHash(g.getFile(outputFolder)).orElse(null)) == false) {
+				res = res.plus(written);
+			}
+		}
+		if(failed) {
+			//Keep the previous manifest, so stale files are deleted by the next successful run
+			return res;
+		}
+		GeneratedJavaManifest manifest = GeneratedJavaManifest.of(outputFolder, packageName, current);
+		res = res.plusAll(previous.deleteStale(manifest));
+		Result<File> manifestFile = manifest.write();
+		if(manifestFile.isError()) {
+			res = res.plus(manifestFile);
+		}
+		return res;
+	}
+
+	private static Set<String> allImports(SubstemaCompiler compiler, RSubstema substema, Set<String> result) {
+		for(RImport imp : substema.getImports()) {
+			if(result.add(imp.getPackageName())) {
+				RSubstema imported =
+					imp.getSubstema().orElseGet(() -> compiler.compile(imp.getPackageName()).orElseThrow());
+				allImports(compiler, imported, result);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "SubstemaWatchGenerator[" + outputFolder + "]";
+	}
+}
@@ -7,6 +7,7 @@ import com.persistentbit.jjson.nodes.JJNode;
 import com.persistentbit.jjson.nodes.JJParser;
 import com.persistentbit.jjson.nodes.JJPrinter;
 import com.persistentbit.substema.RCall;
+import com.persistentbit.substema.RCompression;
 import com.persistentbit.substema.RemoteService;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -31,17 +32,27 @@ public class MinimumServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            try(Reader r = new InputStreamReader(t.getRequestBody(), Charset.forName("UTF-8"))){
+            RCompression requestCompression = RCompression
+                .forName(t.getRequestHeaders().getFirst("Content-Encoding"))
+                .orElseThrow(() -> new IOException("Unsupported Content-Encoding"));
+            RCompression responseCompression =
+                RCompression.negotiate(t.getRequestHeaders().getFirst("Accept-Encoding"));
+            try(Reader r = new InputStreamReader(requestCompression.decompress(t.getRequestBody()), Charset.forName("UTF-8"))){
                 JJNode callNode = JJParser.parse(r).orElseThrow();
                 service.call(mapper.read(callNode, RCall.class))
                     .completed()
                     .ifPresent(cr -> {
                         Log.function().code(l -> {
                                 JJNode callResultNode = mapper.write(cr);
-                            String     response       = JJPrinter.print(false, callResultNode);
-                                t.sendResponseHeaders(200, response.length());
+                            byte[]     response       = JJPrinter.print(false, callResultNode).getBytes(Charset.forName("UTF-8"));
+                            RCompression compression  = responseCompression.select(response, RCompression.defaultThreshold);
+                            if(compression != RCompression.none) {
+                                t.getResponseHeaders().set("Content-Encoding", compression.getName());
+                                response = compression.compress(response);
+                            }
+                                t.sendResponseHeaders(200, response.length);
                                 try(OutputStream os = t.getResponseBody()) {
-                                    os.write(response.getBytes());
+                                    os.write(response);
                                 }
                             return Nothing.inst;
                         });
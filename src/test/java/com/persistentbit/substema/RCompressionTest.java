@@ -0,0 +1,100 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.testing.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Test the compression codecs of the http and socket transports
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class RCompressionTest extends SubstemaTestUtils{
+
+	private static final byte[] data = repeat("{\"className\":\"com.persistentbit.substema.RootService\"}", 200);
+
+	static final TestCase roundTrip = TestCase.name("Compress and decompress").<RCompression>withVariants()
+		.variant(() -> RCompression.none)
+		.variant(() -> RCompression.gzip)
+		.variant(() -> RCompression.deflate)
+		.code(compression -> tr -> {
+			byte[] compressed = compression.compress(data);
+			if(compression != RCompression.none) {
+				tr.isTrue(compressed.length < data.length);
+			}
+			tr.isTrue(Arrays.equals(compression.decompress(compressed, data.length), data));
+			tr.isTrue(Arrays.equals(decompressStream(compression, compressed, data.length), data));
+			tr.isEquals(RCompression.forName(compression.getName()).orElse(null), compression);
+			tr.isEquals(RCompression.forId(compression.getId()).orElse(null), compression);
+		});
+
+	static final TestCase maxSize = TestCase.name("Refuse decompressed data above the maximum size").<RCompression>withVariants()
+		.variant(() -> RCompression.gzip)
+		.variant(() -> RCompression.deflate)
+		.code(compression -> tr -> {
+			byte[] compressed = compression.compress(data);
+			try {
+				compression.decompress(compressed, data.length - 1);
+				tr.isTrue(false, "Expected an RObjException");
+			} catch(RObjException e) {
+				tr.isTrue(e.getMessage().contains("larger"));
+			}
+			try {
+				decompressStream(compression, compressed, data.length - 1);
+				tr.isTrue(false, "Expected an IOException");
+			} catch(UncheckedIOException e) {
+				tr.isTrue(e.getCause().getMessage().contains("larger"));
+			}
+		});
+
+	static final TestCase select = TestCase.name("Only compress data above the threshold").code(tr -> {
+		tr.isEquals(RCompression.gzip.select(data, data.length), RCompression.gzip);
+		tr.isEquals(RCompression.gzip.select(data, data.length + 1), RCompression.none);
+	});
+
+	static final TestCase negotiate = TestCase.name("Negotiate the response codec").code(tr -> {
+		tr.isEquals(RCompression.negotiate(null), RCompression.none);
+		tr.isEquals(RCompression.negotiate(""), RCompression.none);
+		tr.isEquals(RCompression.negotiate("gzip"), RCompression.gzip);
+		tr.isEquals(RCompression.negotiate("br, deflate, gzip"), RCompression.deflate);
+		tr.isEquals(RCompression.negotiate("gzip;q=0.5, deflate;q=0.8"), RCompression.deflate);
+		tr.isEquals(RCompression.negotiate("GZIP; Q=1, deflate;q=0.8"), RCompression.gzip);
+		//q=0 means not acceptable
+		tr.isEquals(RCompression.negotiate("gzip;q=0, deflate"), RCompression.deflate);
+		tr.isEquals(RCompression.negotiate("gzip;q=0"), RCompression.none);
+		tr.isEquals(RCompression.negotiate("gzip;q=invalid"), RCompression.none);
+	});
+
+	private static byte[] repeat(String text, int count) {
+		StringBuilder res = new StringBuilder();
+		for(int t = 0; t < count; t++) {
+			res.append(text);
+		}
+		return res.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] decompressStream(RCompression compression, byte[] compressed, long maxSize) {
+		try(InputStream in = compression.decompress(new ByteArrayInputStream(compressed), maxSize)) {
+			ByteArrayOutputStream out    = new ByteArrayOutputStream();
+			byte[]                buffer = new byte[1024];
+			int                   n;
+			while((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static void main(String[] args) {
+		new RCompressionTest().testAll();
+	}
+}
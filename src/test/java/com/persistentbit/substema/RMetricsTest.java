@@ -0,0 +1,146 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.result.Result;
+import com.persistentbit.core.testing.TestCase;
+import com.persistentbit.substema.remotecalls.testservices.RootService;
+import com.persistentbit.substema.remotecalls.testservices.RootServiceImpl;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the histograms, the metrics registry and the metrics decorator
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class RMetricsTest extends SubstemaTestUtils{
+
+	static final TestCase histogram = TestCase.name("Counts and percentiles of a histogram").code(tr -> {
+		RHistogram empty = new RHistogram();
+		tr.isEquals(empty.getCount(), 0L);
+		tr.isEquals(empty.getPercentile(99), 0L);
+		tr.isTrue(empty.getMean() == 0);
+
+		RHistogram h = new RHistogram();
+		for(long v = 1; v <= 1000; v++) {
+			h.record(v);
+		}
+		tr.isEquals(h.getCount(), 1000L);
+		tr.isEquals(h.getMax(), 1000L);
+		tr.isTrue(h.getMean() == 500.5);
+		//The maximum relative error is 1/16
+		tr.isTrue(Math.abs(h.getPercentile(50) - 500) <= 500 / 16 + 1);
+		tr.isTrue(Math.abs(h.getPercentile(99) - 990) <= 990 / 16 + 1);
+		tr.isEquals(h.getPercentile(100), 1000L);
+		tr.isTrue(h.getPercentile(0) <= 1);
+
+		//Negative values are recorded as 0
+		RHistogram negative = new RHistogram();
+		negative.record(-5);
+		tr.isEquals(negative.getCount(), 1L);
+		tr.isEquals(negative.getMax(), 0L);
+	});
+
+	static final TestCase buckets = TestCase.name("Histogram bucket bounds").code(tr -> {
+		long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE / 2, Long.MAX_VALUE};
+		for(long v : values) {
+			int index = RHistogram.index(v);
+			tr.isTrue(RHistogram.lowerBound(index) <= v);
+			if(v < Long.MAX_VALUE / 2) {
+				tr.isTrue(v < RHistogram.lowerBound(index + 1));
+			}
+		}
+	});
+
+	static final TestCase registry = TestCase.name("Register method metrics").code(tr -> {
+		MethodDefinition getEls = method("getEls");
+		MethodDefinition login  = method("login", String.class);
+		RMetricsRegistry reg    = new RMetricsRegistry();
+		tr.isFalse(reg.getMetrics(getEls).isPresent());
+		reg.record(getEls, RMetric.latency, 1000);
+		reg.record(getEls, RMetric.latency, 2000);
+		reg.failed(getEls);
+		reg.record(login, RMetric.execution, 500);
+		tr.isEquals(reg.getAll().size(), 2);
+		RMethodMetrics metrics = reg.getMetrics(getEls).get();
+		tr.isEquals(metrics.getCalls(), 2L);
+		tr.isEquals(metrics.getFailures(), 1L);
+		tr.isEquals(metrics.getLatencyMaxNanos(), 2000L);
+		//Without latency, the calls are counted from the executions
+		tr.isEquals(reg.getMetrics(login).get().getCalls(), 1L);
+	});
+
+	static final TestCase jmx = TestCase.name("Expose method metrics with JMX").code(tr -> {
+		String           domain = "com.persistentbit.substema.test" + System.nanoTime();
+		RMetricsRegistry reg    = RMetricsRegistry.withJmx(domain);
+		reg.record(method("getEls"), RMetric.latency, 1000);
+		reg.failed(method("getEls"));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			Set<ObjectName> names = server.queryNames(new ObjectName(domain + ":type=RemoteMethod,*"), null);
+			tr.isEquals(names.size(), 1);
+			ObjectName name = names.iterator().next();
+			tr.isEquals(server.getAttribute(name, "Calls"), 1L);
+			tr.isEquals(server.getAttribute(name, "Failures"), 1L);
+			server.unregisterMBean(name);
+		} catch(JMException e) {
+			throw new RuntimeException(e);
+		}
+	});
+
+	static final TestCase decorator = TestCase.name("Count calls and failures per method").code(tr -> {
+		RServer<RootService, RootServiceImpl.SessionData> server = new RServer<>(
+			"MySecret",
+			RootService.class,
+			RootServiceImpl.SessionData.class,
+			sessionManager -> new RootServiceImpl(sessionManager)
+		);
+		RemoteService failEmpty = new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				if(call.getThisCall() != null
+					&& call.getThisCall().getMethodToCall().getMethodName().equals("getEmptyValue")) {
+					return Result.failure("Connection reset");
+				}
+				return server.call(call);
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+				server.close(timeOut, timeUnit);
+			}
+		};
+		RMetricsRegistry reg     = new RMetricsRegistry();
+		RootService      service = RProxy.create(new RemoteServiceMetrics(failEmpty, reg));
+		tr.isSuccess(service.getEls());
+		tr.isSuccess(service.getEls());
+		tr.isFailure(service.getEmptyValue());
+		tr.isFailure(service.login("NotCorrect"));
+		//The call for the root object is not recorded
+		tr.isEquals(reg.getAll().size(), 3);
+		RMethodMetrics getEls = reg.getMetrics(method("getEls")).get();
+		tr.isEquals(getEls.getCalls(), 2L);
+		tr.isEquals(getEls.getFailures(), 0L);
+		RMethodMetrics getEmptyValue = reg.getMetrics(method("getEmptyValue")).get();
+		tr.isEquals(getEmptyValue.getCalls(), 1L);
+		tr.isEquals(getEmptyValue.getFailures(), 1L);
+		tr.isEquals(reg.getMetrics(method("login", String.class)).get().getFailures(), 1L);
+	});
+
+	private static MethodDefinition method(String name, Class<?>... parameterTypes) {
+		try {
+			return new MethodDefinition(RootService.class, RootService.class.getMethod(name, parameterTypes));
+		} catch(NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static void main(String[] args) {
+		new RMetricsTest().testAll();
+	}
+}
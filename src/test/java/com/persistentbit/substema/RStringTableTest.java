@@ -0,0 +1,68 @@
+package com.persistentbit.substema;
+
+import com.persistentbit.core.testing.TestCase;
+
+/**
+ * Test the string table of socket connections
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class RStringTableTest extends SubstemaTestUtils{
+
+	static final TestCase roundTrip = TestCase.name("Encode and decode json documents").code(tr -> {
+		RStringTable encoder = new RStringTable();
+		RStringTable decoder = new RStringTable();
+		String json =
+			"{\"className\":\"com.persistentbit.substema.RootService\",\"methodName\":\"getEls\",\"text\":\"a \\\"quoted\\\" value\"}";
+		String first  = encoder.encode(json);
+		String second = encoder.encode(json);
+		tr.isEquals(first, json);
+		tr.isTrue(second.length() < first.length());
+		tr.isEquals(decoder.decode(first), json);
+		tr.isEquals(decoder.decode(second), json);
+		tr.isEquals(decoder.size(), encoder.size());
+	});
+
+	static final TestCase onlyNames = TestCase.name("Only add protocol names").code(tr -> {
+		tr.isTrue(RStringTable.isName("com.persistentbit.substema.RootService"));
+		tr.isTrue(RStringTable.isName("getEls"));
+		tr.isFalse(RStringTable.isName("abc"));
+		tr.isFalse(RStringTable.isName("6f1c2a3e-0b7d-4c55-9f0e-2d7e7b1c9a11"));
+		tr.isFalse(RStringTable.isName("Some text with spaces"));
+		tr.isFalse(RStringTable.isName(repeat('a', 129)));
+		RStringTable encoder = new RStringTable();
+		encoder.encode("{\"value\":\"6f1c2a3e-0b7d-4c55-9f0e-2d7e7b1c9a11\",\"data\":\"" + repeat('x', 1000) + "\"}");
+		//Only the keys are added
+		tr.isEquals(encoder.size(), 2);
+	});
+
+	static final TestCase fullTable = TestCase.name("Encode and decode with a full table").code(tr -> {
+		RStringTable encoder = new RStringTable();
+		RStringTable decoder = new RStringTable();
+		for(int t = 0; t < 9000; t++) {
+			String json = "{\"name\":\"name" + t + "\"}";
+			tr.isEquals(decoder.decode(encoder.encode(json)), json);
+		}
+		tr.isEquals(encoder.size(), 8192);
+		tr.isEquals(decoder.size(), 8192);
+		//Names after the table is full are send as they are, known names are still references
+		String json = "{\"name\":\"name8999\",\"other\":\"name1\"}";
+		String encoded = encoder.encode(json);
+		tr.isTrue(encoded.contains("name8999"));
+		tr.isFalse(encoded.contains("name1\""));
+		tr.isEquals(decoder.decode(encoded), json);
+	});
+
+	private static String repeat(char c, int count) {
+		StringBuilder res = new StringBuilder(count);
+		for(int t = 0; t < count; t++) {
+			res.append(c);
+		}
+		return res.toString();
+	}
+
+	public static void main(String[] args) {
+		new RStringTableTest().testAll();
+	}
+}
@@ -1,18 +1,41 @@
 package com.persistentbit.substema.codegen;
 
 import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.collections.PMap;
+import com.persistentbit.core.collections.PSet;
 import com.persistentbit.core.result.Result;
 import com.persistentbit.core.testing.TestCase;
 import com.persistentbit.core.testing.TestRunner;
+import com.persistentbit.core.tokenizer.Token;
+import com.persistentbit.core.utils.IO;
 import com.persistentbit.substema.SubstemaTestUtils;
+import com.persistentbit.substema.compiler.SubstemaCompileCache;
 import com.persistentbit.substema.compiler.SubstemaCompiler;
+import com.persistentbit.substema.compiler.SubstemaIncrementalParser;
+import com.persistentbit.substema.compiler.SubstemaParser;
+import com.persistentbit.substema.compiler.SubstemaTokenType;
+import com.persistentbit.substema.compiler.SubstemaTokenizer;
 import com.persistentbit.substema.compiler.values.RSubstema;
 import com.persistentbit.substema.dependencies.DependencySupplier;
 import com.persistentbit.substema.dependencies.SupplierDef;
 import com.persistentbit.substema.dependencies.SupplierType;
 import com.persistentbit.substema.javagen.GeneratedJava;
+import com.persistentbit.substema.javagen.GeneratedJavaManifest;
 import com.persistentbit.substema.javagen.JavaGenOptions;
 import com.persistentbit.substema.javagen.SubstemaJavaGen;
+import com.persistentbit.substema.javagen.SubstemaWatchGenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.persistentbit.substema.compiler.SubstemaTokenType.*;
 
 /**
  * Test the Substema Code gen functionality
@@ -31,6 +54,255 @@ public class SubstemaCodeGenTest{
 	});
 
 
+	static final TestCase resultOnlyTypes = TestCase.name("Stream and Cursor only as function result").code(tr -> {
+		tr.isSuccess(parse("remote class Ok{ all():Stream<String>; page():Cursor<String>; }"));
+		tr.isFailure(parse("case class Wrong{ items:Stream<String>; }"));
+		tr.isFailure(parse("remote class Wrong{ send(items:Cursor<String>):OK; }"));
+		tr.isFailure(parse("remote class Wrong{ all():List<Stream<String>>; }"));
+		tr.isFailure(parse("remote class Wrong{ all():Stream<String> cached; }"));
+	});
+
+	static final TestCase parallelCompile = TestCase.name("Compile packages in parallel").code(tr -> {
+		SubstemaCompiler comp = new SubstemaCompiler(
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.resource, "/")))
+		);
+		PList<String> packages = PList.val(
+			"com.persistentbit.substema.tests.codegentest",
+			"com.persistentbit.substema.tests.compiler.enums",
+			"com.persistentbit.substema.tests.compiler.annotations"
+		);
+		PList<RSubstema> all = comp.compileAll(packages).orElseThrow();
+		tr.isEquals(all.map(RSubstema::getPackageName).plist(), packages);
+		//Compiled packages are memoized
+		tr.isTrue(comp.compile("com.persistentbit.substema.tests.compiler.enums").orElseThrow() == all.get(1));
+	});
+
+	static final TestCase sameThreadCompile = TestCase.name("Compile with a same thread executor").code(tr -> {
+		SubstemaCompiler comp = new SubstemaCompiler(
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.resource, "/")))
+		).withExecutor(Runnable::run);
+		tr.isSuccess(comp.compile("com.persistentbit.substema.tests.codegentest"));
+	});
+
+	static final TestCase boundedExecutorCompile = TestCase.name("Compile with a bounded executor").code(tr -> {
+		ExecutorService single = Executors.newFixedThreadPool(1);
+		try {
+			SubstemaCompiler comp = new SubstemaCompiler(
+				new DependencySupplier(PList.val(new SupplierDef(SupplierType.resource, "/")))
+			).withExecutor(single);
+			tr.isSuccess(comp.compileAll(PList.val(
+				"com.persistentbit.substema.tests.codegentest",
+				"com.persistentbit.substema.tests.compiler.annotations"
+			)));
+		} finally {
+			single.shutdown();
+		}
+	});
+
+	static final TestCase compileCache = TestCase.name("Load unchanged packages from the compile cache").code(tr -> {
+		File cacheDir =
+			new File(System.getProperty("java.io.tmpdir"), "substema-cache-test-" + System.nanoTime());
+		DependencySupplier ds =
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.resource, "/")));
+		String pack = "com.persistentbit.substema.tests.compiler.enums";
+		RSubstema compiled =
+			new SubstemaCompiler(ds).withCache(new SubstemaCompileCache(cacheDir)).compile(pack).orElseThrow();
+		tr.isTrue(new File(cacheDir, pack + ".compiled").exists());
+		RSubstema cached =
+			new SubstemaCompiler(ds).withCache(new SubstemaCompileCache(cacheDir)).compile(pack).orElseThrow();
+		tr.isEquals(cached, compiled);
+		//The imports are stored by name and linked again when loaded
+		tr.isFalse(cached.getImports().isEmpty());
+		tr.isTrue(cached.getImports().find(i -> i.getSubstema().isPresent() == false).isPresent() == false);
+	});
+
+	static final TestCase parallelGeneration = TestCase.name("Generate java in parallel").code(tr -> {
+		SubstemaCompiler comp = new SubstemaCompiler(
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.resource, "/")))
+		);
+		PList<RSubstema> all = comp.compileAll(PList.val(
+			"com.persistentbit.substema.tests.codegentest",
+			"com.persistentbit.substema.tests.compiler.enums"
+		)).orElseThrow();
+		ForkJoinPool single   = new ForkJoinPool(1);
+		ForkJoinPool parallel = new ForkJoinPool(4);
+		try {
+			JavaGenOptions options = new JavaGenOptions(true, true);
+			PList<String> sequential = SubstemaJavaGen.generateAll(comp, options, all, single)
+				.map(r -> r.orElseThrow().code).plist();
+			PList<String> concurrent = SubstemaJavaGen.generateAll(comp, options, all, parallel)
+				.map(r -> r.orElseThrow().code).plist();
+			tr.isEquals(concurrent, sequential);
+		} finally {
+			single.shutdown();
+			parallel.shutdown();
+		}
+	});
+
+	static final TestCase tokenizer = TestCase.name("Tokenize substema source").code(tr -> {
+		String code = "/* comment\n over 2 lines */ <<doc>> case class A{ m: Map<String,List<Integer>> = -1.5d; }";
+		PList<Token<SubstemaTokenType>> tokens =
+			new SubstemaTokenizer().tokenize("test", code).map(Result::orElseThrow).plist();
+		tr.isEquals(tokens.map(t -> t.type).plist(), PList.val(
+			tDoc, tCase, tClass, tIdentifier, tBlockStart, tIdentifier, tColon, tIdentifier, tGenStart, tIdentifier,
+			tComma, tIdentifier, tGenStart, tIdentifier, tGenEnd, tGenEnd, tAssign, tMin, tNumber, tSemiColon, tBlockEnd
+		));
+		tr.isEquals(tokens.get(18).text, "1.5d");
+		tr.isEquals(tokens.get(0).text, "<<doc>>");
+		tr.isFailure(new SubstemaTokenizer().tokenize("test", "case class #").plist().last().get());
+	});
+
+	static final TestCase incrementalParse = TestCase.name("Parse only the changed definitions").code(tr -> {
+		String code = "enum Color{ red, green; }\n"
+			+ "case class A{ color: Color = Color.red; }\n"
+			+ "case class B{ a: A; }\n"
+			+ "remote class S{ get():B; }\n";
+		SubstemaCompiler comp = new SubstemaCompiler(
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.resource, "/")))
+		);
+		SubstemaIncrementalParser parser   = new SubstemaIncrementalParser("test");
+		RSubstema                 first    = parser.parse(code);
+		RSubstema                 resolved = parser.resolve(comp, first).orElseThrow();
+		tr.isEquals(parser.getLastParsedChunks(), 4);
+
+		int       start   = code.indexOf("a: A;");
+		RSubstema changed = parser.edit(start, start + "a: A;".length(), "a: A; b: ?B;");
+		tr.isEquals(parser.getLastParsedChunks(), 1);
+		tr.isEquals(changed, parse(parser.getCode()).orElseThrow());
+		tr.isTrue(changed.getValueClasses().get(0) == first.getValueClasses().get(0));
+		RSubstema resolvedChanged = parser.resolve(comp, changed).orElseThrow();
+		tr.isTrue(resolvedChanged.getValueClasses().get(0) == resolved.getValueClasses().get(0));
+		tr.isEquals(resolvedChanged.getValueClasses().get(1).getProperties().size(), 2);
+
+		tr.isFailure(Result.function("case class }").code(l -> parser.edit(0, 0, "case class }")));
+	});
+
+	static final TestCase watchGenerator = TestCase.name("Regenerate only changed java files").code(tr -> {
+		File root = new File(System.getProperty("java.io.tmpdir"), "substema-watch-test-" + System.nanoTime());
+		File src  = new File(root, "src");
+		File out  = new File(root, "out");
+		tr.isTrue(src.mkdirs());
+		String base = "com.persistentbit.watchtest.base";
+		String api  = "com.persistentbit.watchtest.api";
+		writeSource(src, base, "case class Id{ value: Long; }");
+		writeSource(src, api, "import " + base + ";\ncase class A{ id: Id; }\ncase class B{ name: String; }");
+
+		SubstemaWatchGenerator gen = new SubstemaWatchGenerator(
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.folder, src.getAbsolutePath()))),
+			new JavaGenOptions(true, true), out
+		);
+		tr.isEquals(gen.generate(PList.val(api)).filter(Result::isError).size(), 0);
+		tr.isTrue(new File(out, "com/persistentbit/watchtest/api/B.java").exists());
+		//Nothing changed
+		tr.isEquals(gen.regenerate(PSet.val(base)).size(), 0);
+		//Only the java file of B changes
+		writeSource(src, api, "import " + base + ";\ncase class A{ id: Id; }\ncase class B{ name: ?String; }");
+		PList<File> written = gen.regenerate(PSet.val(api)).map(Result::orElseThrow).plist();
+		tr.isEquals(written, PList.val(new File(out, "com/persistentbit/watchtest/api/B.java")));
+		tr.isEquals(gen.regenerate(PSet.val("com.persistentbit.other")).size(), 0);
+
+		//A new generator deletes the stale files of the previous run
+		writeSource(src, api, "import " + base + ";\ncase class A{ id: Id; }");
+		SubstemaWatchGenerator restarted = new SubstemaWatchGenerator(
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.folder, src.getAbsolutePath()))),
+			new JavaGenOptions(true, true), out
+		);
+		PList<File> deleted = restarted.generate(PList.val(api)).map(Result::orElseThrow).plist();
+		tr.isEquals(deleted, PList.val(new File(out, "com/persistentbit/watchtest/api/B.java")));
+		tr.isFalse(new File(out, "com/persistentbit/watchtest/api/B.java").exists());
+	});
+
+	static final TestCase writeChangedFiles = TestCase.name("Only write changed java files").code(tr -> {
+		File root = new File(System.getProperty("java.io.tmpdir"), "substema-write-test-" + System.nanoTime());
+		File src  = new File(root, "src");
+		File out  = new File(root, "out");
+		tr.isTrue(src.mkdirs());
+		String             api = "com.persistentbit.writetest.api";
+		DependencySupplier ds  =
+			new DependencySupplier(PList.val(new SupplierDef(SupplierType.folder, src.getAbsolutePath())));
+		writeSource(src, api, "case class A{ id: Long; }\ncase class B{ name: String; }");
+		SubstemaCompiler comp = new SubstemaCompiler(ds);
+		SubstemaJavaGen.generateAndWriteToFiles(comp, new JavaGenOptions(true, true), comp.compile(api).orElseThrow(), out)
+			.forEach(Result::orElseThrow);
+		File a = new File(out, "com/persistentbit/writetest/api/A.java");
+		File b = new File(out, "com/persistentbit/writetest/api/B.java");
+		tr.isTrue(b.exists());
+		tr.isTrue(a.setLastModified(1000));
+
+		writeSource(src, api, "case class A{ id: Long; }");
+		comp = new SubstemaCompiler(new DependencySupplier(ds.getSuppliers()));
+		SubstemaJavaGen.generateAndWriteToFiles(comp, new JavaGenOptions(true, true), comp.compile(api).orElseThrow(), out)
+			.forEach(Result::orElseThrow);
+		tr.isEquals(a.lastModified(), 1000L);
+		tr.isTrue(b.exists() == false);
+	});
+
+	static final TestCase staleFilesInRoot = TestCase.name("Only delete stale files in the output folder").code(tr -> {
+		File root    = new File(System.getProperty("java.io.tmpdir"), "substema-stale-test-" + System.nanoTime());
+		File out     = new File(root, "out");
+		File outside = new File(root, "Outside.java");
+		File stale   = new File(out, "com/test/Stale.java");
+		tr.isTrue(stale.getParentFile().mkdirs());
+		IO.writeFile("class Outside{}", outside, IO.utf8);
+		IO.writeFile("class Stale{}", stale, IO.utf8);
+		GeneratedJavaManifest previous = new GeneratedJavaManifest(out, "com.test", PMap.<String, String>empty()
+			.put("com/test/Stale.java", "hash")
+			.put("../Outside.java", "hash")
+			.put("com/../../Outside.java", "hash")
+			.put(outside.getAbsolutePath(), "hash")
+		);
+		PList<Result<File>> deleted =
+			previous.deleteStale(new GeneratedJavaManifest(out, "com.test", PMap.empty()));
+		tr.isEquals(deleted.filter(Result::isError).size(), 3);
+		tr.isEquals(deleted.filter(r -> r.isError() == false).size(), 1);
+		tr.isFalse(stale.exists());
+		tr.isTrue(outside.exists());
+		tr.isFalse(previous.isIntact());
+		tr.isEquals(previous.getFiles().size(), 1);
+	});
+
+	static final TestCase indexedDependencies = TestCase.name("Resolve packages with the supplier index").code(tr -> {
+		File root = new File(System.getProperty("java.io.tmpdir"), "substema-index-test-" + System.nanoTime());
+		File src  = new File(root, "src");
+		File jar  = new File(root, "deps.jar");
+		tr.isTrue(src.mkdirs());
+		writeArchive(jar, "com.test.a", "case class FromJar{}");
+		writeSource(src, "com.test.a", "case class FromFolder{}");
+		writeSource(src, "com.test.b", "case class B{}");
+		try(DependencySupplier ds = new DependencySupplier(
+			new SupplierDef(SupplierType.archive, jar.getAbsolutePath()),
+			new SupplierDef(SupplierType.folder, src.getAbsolutePath())
+		)) {
+			tr.isEquals(ds.getIndexedPackages().sorted().plist(), PList.val("com.test.a", "com.test.b"));
+			tr.isEquals(ds.apply("com.test.a").orElse(null), "case class FromJar{}");
+			tr.isEquals(ds.apply("com.test.b").orElse(null), "case class B{}");
+			tr.isTrue(ds.apply("com.test.c").isPresent() == false);
+			//Files added to a folder after indexing are found
+			writeSource(src, "com.test.c", "case class C{}");
+			tr.isEquals(ds.apply("com.test.c").orElse(null), "case class C{}");
+		}
+	});
+
+	private static void writeArchive(File archive, String packageName, String code) {
+		try(ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+			zip.putNextEntry(new ZipEntry(packageName + DependencySupplier.substemaDefFileExtension));
+			zip.write(code.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writeSource(File folder, String packageName, String code) {
+		IO.writeFile(code, new File(folder, packageName + DependencySupplier.substemaDefFileExtension), IO.utf8);
+	}
+
+	private static Result<RSubstema> parse(String code) {
+		return Result.function(code).code(l ->
+			new SubstemaParser("test", new SubstemaTokenizer().tokenize("test", code)).parseSubstema()
+		);
+	}
+
 	private static void generateCode(TestRunner tr, String destPackage) {
 		tr.info("Testing " + destPackage);
 		DependencySupplier ds =
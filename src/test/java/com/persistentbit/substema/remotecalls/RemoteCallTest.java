@@ -1,5 +1,6 @@
 package com.persistentbit.substema.remotecalls;
 
+import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.result.Result;
 import com.persistentbit.core.testing.TestCase;
 import com.persistentbit.core.tuples.Tuple2;
@@ -9,6 +10,18 @@ import com.persistentbit.substema.remotecalls.testservices.RootService;
 import com.persistentbit.substema.remotecalls.testservices.RootServiceImpl;
 import com.persistentbit.substema.remotecalls.testservices.TestValue;
 
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
 /**
  * TODOC
  *
@@ -17,7 +30,7 @@ import com.persistentbit.substema.remotecalls.testservices.TestValue;
  */
 public class RemoteCallTest extends SubstemaTestUtils{
 
-	private static final RemoteService createRServer() {
+	private static final RServer<RootService, RootServiceImpl.SessionData> createRServer() {
 		return new RServer<>(
 			"MySecret",
 			RootService.class,
@@ -30,13 +43,36 @@ public class RemoteCallTest extends SubstemaTestUtils{
 		return RProxy.create(createRServer());
 	}
 
+	private static final RootService createInProcessRemoteRootService() {
+		return RProxy.create(createRServer().inProcess());
+	}
+
 	private static final RootService createJsonRemoteRootService() {
 		return RProxy.create(new JSonRemoteService(createRServer()));
 	}
 
+	private static final RootService createCoalescingRemoteRootService() {
+		return RProxy.create(new RemoteServiceCoalescer(new JSonRemoteService(createRServer())));
+	}
+
+	/**
+	 * The socket servers started by the tests, closed after all tests
+	 */
+	private static final Set<RemoteServiceSocketServer> socketServers = ConcurrentHashMap.newKeySet();
+
+	private static final RootService createSocketRemoteRootService() {
+		RemoteServiceSocketServer server =
+			new RemoteServiceSocketServer(createRServer(), new InetSocketAddress("127.0.0.1", 0)).start();
+		socketServers.add(server);
+		return RProxy.create(new RemoteServiceSocketClient(new InetSocketAddress("127.0.0.1", server.getPort())));
+	}
+
 
 	static final TestCase callCached = TestCase.name("Call Cached Remote values").<RootService>withVariants()
 		.variant(RemoteCallTest::createRemoteRootService).variant(RemoteCallTest::createJsonRemoteRootService)
+		.variant(RemoteCallTest::createCoalescingRemoteRootService)
+		.variant(RemoteCallTest::createSocketRemoteRootService)
+		.variant(RemoteCallTest::createInProcessRemoteRootService)
 		.code(service -> tr -> {
 
 			Result<String> res = service.remoteCachedString();
@@ -58,6 +94,9 @@ public class RemoteCallTest extends SubstemaTestUtils{
 
 	static final TestCase callSimple = TestCase.name("Call Non Cached values").<RootService>withVariants()
 		.variant(RemoteCallTest::createRemoteRootService).variant(RemoteCallTest::createJsonRemoteRootService)
+		.variant(RemoteCallTest::createCoalescingRemoteRootService)
+		.variant(RemoteCallTest::createSocketRemoteRootService)
+		.variant(RemoteCallTest::createInProcessRemoteRootService)
 		.code(service -> tr -> {
 			Result<TestValue> peter = service.getLazyPeter();
 			tr.isFalse(peter.isComplete(), "A Method returning a lazy result should still be lazy");
@@ -79,6 +118,9 @@ public class RemoteCallTest extends SubstemaTestUtils{
 	static final TestCase sessions = TestCase.name("Remote objects with sessions")
 		.<RootService>withVariants()
 		.variant(RemoteCallTest::createRemoteRootService).variant(RemoteCallTest::createJsonRemoteRootService)
+		.variant(RemoteCallTest::createCoalescingRemoteRootService)
+		.variant(RemoteCallTest::createSocketRemoteRootService)
+		.variant(RemoteCallTest::createInProcessRemoteRootService)
 		.code(service -> tr -> {
 			tr.isFailure(service.login("NotCorrect"));
 			tr.isFailure(service.getLoggedInService());
@@ -92,6 +134,528 @@ public class RemoteCallTest extends SubstemaTestUtils{
 
 	});
 
+	static final TestCase streams = TestCase.name("Streaming results in chunks").code(tr -> {
+		RootService service = RProxy.create(new JSonRemoteService(createRServer().withStreams(1, 1, TimeUnit.MINUTES)));
+		tr.isSuccess(service.login("Peter"));
+		Result<RStream<TestValue>> stream = service.getLoggedInService().flatMap(li -> li.streamAllValues());
+		tr.isSuccess(stream);
+		tr.isEquals(
+			stream.orElseThrow().plist(),
+			PList.val(RootServiceImpl.peter, RootServiceImpl.els, RootServiceImpl.peter)
+		);
+	});
+
+	static final TestCase cursors = TestCase.name("Paging with cursors").<RootService>withVariants()
+		.variant(RemoteCallTest::createRemoteRootService).variant(RemoteCallTest::createJsonRemoteRootService)
+		.code(service -> tr -> {
+			tr.isSuccess(service.login("Peter"));
+			RCursor<TestValue> page =
+				service.getLoggedInService().flatMap(li -> li.pageAllValues(2)).orElseThrow();
+			tr.isEquals(page.getItems(), PList.val(RootServiceImpl.peter, RootServiceImpl.els));
+			tr.isTrue(page.hasNext());
+			Result<RCursor<TestValue>> next = page.next();
+			tr.isTrue(page.next() == next, "The next page should only be fetched once");
+			page = next.orElseThrow();
+			tr.isEquals(page.getItems(), PList.val(RootServiceImpl.peter));
+			tr.isFalse(page.hasNext());
+			tr.isEmpty(page.next());
+	});
+
+	static final TestCase coalescing = TestCase.name("Coalescing concurrent identical calls").code(tr -> {
+		RCallResult    rootResult = createRServer().call(new RCall(null, null, null)).orElseThrow();
+		AtomicInteger  masterCalls = new AtomicInteger();
+		CountDownLatch release     = new CountDownLatch(1);
+		RemoteService master = new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				masterCalls.incrementAndGet();
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return Result.success(rootResult);
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+			}
+		};
+		RemoteServiceCoalescer coalescer = new RemoteServiceCoalescer(master);
+		RSessionData           sessionA  = new RSessionData("a", null, "sigA");
+		RSessionData           sessionB  = new RSessionData("b", null, "sigB");
+		PList<RCall> calls = PList.val(
+			new RCall(sessionA, null, null),
+			new RCall(sessionA, null, null),
+			new RCall(sessionA, null, null),
+			new RCall(sessionB, null, null),
+			new RCall(sessionA, null, login("x")),
+			new RCall(sessionA, null, login("y"))
+		);
+		AtomicReferenceArray<Result<RCallResult>> results = new AtomicReferenceArray<>(calls.size());
+		PList<Thread> threads = PList.empty();
+		for(int t = 0; t < calls.size(); t++) {
+			int index = t;
+			threads = threads.plus(new Thread(() -> {
+				Result<RCallResult> res = coalescer.call(calls.get(index));
+				res.orElseThrow();
+				results.set(index, res);
+			}));
+		}
+		threads.forEach(Thread::start);
+		//Wait until the 4 different calls are in the master and the identical calls wait for the first one
+		while(masterCalls.get() < 4 || threads.find(th -> th.getState() != Thread.State.WAITING).isPresent()) {
+			Thread.yield();
+		}
+		release.countDown();
+		for(Thread th : threads) {
+			try {
+				th.join();
+			} catch(InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		//Same session and arguments are merged, a different session or different arguments are not
+		tr.isEquals(masterCalls.get(), 4);
+		for(int t = 0; t < calls.size(); t++) {
+			tr.isEquals(results.get(t).orElseThrow(), rootResult);
+		}
+	});
+
+	static final TestCase coalescingDeadlines = TestCase.name("Waiting for coalesced calls until the deadline").code(tr -> {
+		RCallResult    rootResult  = createRServer().call(new RCall(null, null, null)).orElseThrow();
+		AtomicInteger  masterCalls = new AtomicInteger();
+		CountDownLatch release     = new CountDownLatch(1);
+		RemoteService master = new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				masterCalls.incrementAndGet();
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return Result.success(rootResult);
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+			}
+		};
+		RemoteServiceCoalescer coalescer = new RemoteServiceCoalescer(master);
+		RCall                  call      = new RCall(null, null, null);
+		Thread                 leader    = new Thread(() -> coalescer.call(call).orElseThrow());
+		leader.start();
+		while(masterCalls.get() < 1) {
+			Thread.yield();
+		}
+		//Another idempotency key is another call
+		Thread other = new Thread(() -> coalescer.call(call.withIdempotencyKey("other")).orElseThrow());
+		other.start();
+		while(masterCalls.get() < 2) {
+			Thread.yield();
+		}
+		//A follower stops waiting at its own deadline
+		Result<RCallResult> follower = coalescer.call(call.withDeadline(System.currentTimeMillis() + 50));
+		tr.isFailure(follower);
+		tr.isTrue(isDeadlineExceeded(follower));
+		release.countDown();
+		try {
+			leader.join();
+			other.join();
+		} catch(InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		tr.isEquals(masterCalls.get(), 2);
+	});
+
+	static final TestCase coalescingStreams =TestCase.name("Never coalescing stream calls").code(tr -> {
+		RServer<RootService, RootServiceImpl.SessionData> server = createRServer().withStreams(1, 1, TimeUnit.MINUTES);
+		JSonRemoteService json         = new JSonRemoteService(server);
+		AtomicInteger     streamCalls  = new AtomicInteger();
+		CountDownLatch    bothArrived  = new CountDownLatch(2);
+		RemoteService master = new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				if(call.getStreamPull() == null && call.getThisCall() != null
+					&& call.getThisCall().getMethodToCall().getMethodName().equals("streamAllValues")) {
+					streamCalls.incrementAndGet();
+					bothArrived.countDown();
+					try {
+						//Keep the first call in flight until the second one arrives
+						bothArrived.await(5, TimeUnit.SECONDS);
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return json.call(call);
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+				json.close(timeOut, timeUnit);
+			}
+		};
+		RootService service = RProxy.create(new RemoteServiceCoalescer(master));
+		tr.isSuccess(service.login("Peter"));
+		LoggedInService                       loggedIn = service.getLoggedInService().orElseThrow();
+		AtomicReferenceArray<PList<TestValue>> results = new AtomicReferenceArray<>(2);
+		PList<Thread>                          threads = PList.empty();
+		for(int t = 0; t < 2; t++) {
+			int index = t;
+			threads = threads.plus(new Thread(() -> results.set(index, loggedIn.streamAllValues().orElseThrow().plist())));
+		}
+		threads.forEach(Thread::start);
+		for(Thread th : threads) {
+			try {
+				th.join();
+			} catch(InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		//Both calls opened their own stream and read all the values
+		tr.isEquals(streamCalls.get(), 2);
+		for(int t = 0; t < 2; t++) {
+			tr.isEquals(results.get(t), PList.val(RootServiceImpl.peter, RootServiceImpl.els, RootServiceImpl.peter));
+		}
+	});
+
+	private static RMethodCall login(String name) {
+		try {
+			MethodDefinition md = new MethodDefinition(RootService.class, RootService.class.getMethod("login", String.class));
+			return new RMethodCall(md, new Object[]{name});
+		} catch(NoSuchMethodException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static final TestCase tracing = TestCase.name("Tracing spans across client and server").code(tr -> {
+		RSpanCollector collector = new RSpanCollector();
+		RServer<RootService, RootServiceImpl.SessionData> server = new RServer<>(
+			"MySecret",
+			RootService.class,
+			RootServiceImpl.SessionData.class,
+			sessionManager -> new RootServiceImpl(sessionManager)
+		).withSpanRecorder(collector);
+		RootService service =
+			RProxy.create(new RemoteServiceTracer(new JSonRemoteService(server), collector));
+		tr.isSuccess(service.getEls());
+		RSpan clientSpan = collector.getSpans()
+			.find(s -> s.getKind() == RSpan.Kind.client && s.getName().equals("RootService#getEls")).get();
+		PList<RSpan> trace = collector.getTrace(clientSpan.getTraceId());
+		tr.isEquals(trace.size(), 2);
+		RSpan serverSpan = trace.find(s -> s.getKind() == RSpan.Kind.server).get();
+		tr.isEquals(serverSpan.getParentSpanId().orElse(null), clientSpan.getSpanId());
+		tr.isTrue(collector.printTrace(clientSpan.getTraceId()).contains("RootService#getEls server"));
+	});
+
+	static final TestCase admission = TestCase.name("Rejecting calls above the admission limit").code(tr -> {
+		//Block the only executor thread, so the first call keeps running
+		ExecutorService   executor  = Executors.newSingleThreadExecutor();
+		CountDownLatch    blocked   = new CountDownLatch(1);
+		executor.execute(() -> {
+			try {
+				blocked.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		RAdmissionControl admission = RAdmissionControl.create(1, 1);
+		RServer<RootService, RootServiceImpl.SessionData> server = new RServer<>(
+			"MySecret",
+			RootService.class,
+			RootServiceImpl.SessionData.class,
+			sessionManager -> new RootServiceImpl(sessionManager),
+			executor
+		).withAdmissionControl(admission);
+		RCall getRoot = new RCall(null, null, null);
+		Result<RCallResult> running  = server.call(getRoot);
+		Result<RCallResult> queued   = server.call(getRoot);
+		Result<RCallResult> rejected = server.call(getRoot);
+		tr.isTrue(rejected.orElseThrow().isRejected());
+		tr.isEquals(admission.getRejected(), 1L);
+		blocked.countDown();
+		tr.isFalse(running.orElseThrow().isRejected());
+		tr.isFalse(queued.orElseThrow().isRejected());
+		executor.shutdown();
+	});
+
+	static final TestCase deadlines = TestCase.name("Dropping calls after the deadline").code(tr -> {
+		RServer<RootService, RootServiceImpl.SessionData> server = createRServer();
+		RCall expired = new RCall(null, null, null).withDeadline(System.currentTimeMillis() - 1);
+		tr.isFailure(server.call(expired).orElseThrow().getRod().get());
+		tr.isSuccess(server.call(expired.withDeadline(System.currentTimeMillis() + 60_000)).orElseThrow().getRod().get());
+		RootService service = RProxy.create(createRServer(), RTimeouts.of(1, TimeUnit.MINUTES));
+		tr.isSuccess(service.getEls());
+	});
+
+	static final TestCase decoratorDeadlines = TestCase.name("Deadlines of calls through decorators").code(tr -> {
+		RServer<RootService, RootServiceImpl.SessionData> server = createRServer();
+		RemoteService slow = new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				if(call.getThisCall() == null) {
+					return server.call(call);
+				}
+				try {
+					Thread.sleep(10_000);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return Result.failure(e);
+				}
+				return server.call(call);
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+				server.close(timeOut, timeUnit);
+			}
+		};
+		RemoteService decorated = new RemoteServiceRetry(
+			new RemoteServiceMetrics(
+				new RemoteServiceTracer(
+					new RemoteServiceBalancer(PList.val(new RemoteServiceCoalescer(slow))), new RSpanCollector()
+				),
+				new RMetricsRegistry()
+			),
+			md -> true
+		);
+		RootService service = RProxy.create(decorated, RTimeouts.of(100, TimeUnit.MILLISECONDS));
+		long        start   = System.currentTimeMillis();
+		Result<TestValue> result = service.getEls();
+		tr.isTrue(System.currentTimeMillis() - start < 5_000);
+		tr.isFailure(result);
+		tr.isTrue(isDeadlineExceeded(result));
+	});
+
+	static final TestCase socketReconnect = TestCase.name("Reconnecting lost socket connections").code(tr -> {
+		RemoteServiceSocketServer server =
+			new RemoteServiceSocketServer(createRServer(), new InetSocketAddress("127.0.0.1", 0)).start();
+		int         port    = server.getPort();
+		RootService service = RProxy.create(new RemoteServiceSocketClient(new InetSocketAddress("127.0.0.1", port)));
+		tr.isSuccess(service.getEls());
+		//The server is gone: calls fail without blocking
+		server.close(1, TimeUnit.SECONDS);
+		tr.isFailure(service.getEls());
+		RemoteServiceSocketServer restarted =
+			new RemoteServiceSocketServer(createRServer(), new InetSocketAddress("127.0.0.1", port)).start();
+		socketServers.add(restarted);
+		tr.isSuccess(service.getEls());
+	});
+
+	private static boolean isDeadlineExceeded(Result<?> result) {
+		try {
+			result.orElseThrow();
+			return false;
+		} catch(RuntimeException e) {
+			for(Throwable t = e; t != null; t = t.getCause()) {
+				if(t instanceof RDeadlineExceededException) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	static final TestCase retries = TestCase.name("Retrying failed calls with idempotency keys").code(tr -> {
+		RServer<RootService, RootServiceImpl.SessionData> server =
+			createRServer().withIdempotencyCache(1, TimeUnit.MINUTES, 1000);
+		AtomicInteger failures = new AtomicInteger(2);
+		RemoteService flaky = new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				return failures.getAndDecrement() > 0 ? Result.failure("Connection reset") : server.call(call);
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+				server.close(timeOut, timeUnit);
+			}
+		};
+		RootService service = RProxy.create(
+			new RemoteServiceRetry(flaky, md -> true).withBackoff(3, 1, 10, TimeUnit.MILLISECONDS)
+		);
+		tr.isSuccess(service.getEls());
+		RCall       keyed  = new RCall(null, null, null).withIdempotencyKey("key-1");
+		RCallResult first  = server.call(keyed).orElseThrow();
+		RCallResult second = server.call(keyed).orElseThrow();
+		tr.isTrue(first == second);
+		//The same key from another session is another call
+		RCall otherSession = new RCall(new RSessionData("other", null, "sigOther"), null, null).withIdempotencyKey("key-1");
+		tr.isFalse(server.call(otherSession).orElse(null) == first);
+		//The first caller never forces its result: the second caller still gets it
+		RCall unforced = new RCall(null, null, null).withIdempotencyKey("key-2");
+		server.call(unforced);
+		tr.isSuccess(server.call(unforced));
+		//Stream pulls are never retried
+		AtomicInteger pulls = new AtomicInteger();
+		RemoteService failingPulls = new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				pulls.incrementAndGet();
+				return Result.failure("Connection reset");
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+			}
+		};
+		RCall pull = new RCall(null, null, null).withStreamPull(new RStreamPull("stream-1", login("x").getMethodToCall(), 10));
+		tr.isFailure(new RemoteServiceRetry(failingPulls, md -> true).withBackoff(3, 1, 10, TimeUnit.MILLISECONDS).call(pull));
+		tr.isEquals(pulls.get(), 1);
+	});
+
+	static final TestCase balancing = TestCase.name("Balancing calls over endpoints").<RemoteServiceBalancer.Strategy>withVariants()
+		.variant(() -> RemoteServiceBalancer.Strategy.roundRobin)
+		.variant(() -> RemoteServiceBalancer.Strategy.leastOutstanding)
+		.variant(() -> RemoteServiceBalancer.Strategy.powerOfTwoChoices)
+		.code(strategy -> tr -> {
+			//Stream pulls must go to the server that opened the stream
+			RootService service = RProxy.create(new RemoteServiceBalancer(PList.val(
+				new JSonRemoteService(createRServer().withStreams(1, 1, TimeUnit.MINUTES)),
+				new JSonRemoteService(createRServer().withStreams(1, 1, TimeUnit.MINUTES))
+			), strategy));
+			tr.isSuccess(service.login("Peter"));
+			tr.isEquals(
+				service.getLoggedInService().flatMap(li -> li.streamAllValues()).orElseThrow().plist(),
+				PList.val(RootServiceImpl.peter, RootServiceImpl.els, RootServiceImpl.peter)
+			);
+	});
+
+	static final TestCase balancingStrategies = TestCase.name("Selecting endpoints with each strategy").code(tr -> {
+		RCallResult rootResult = createRServer().call(new RCall(null, null, null)).orElseThrow();
+		RCall       call       = new RCall(null, null, null);
+
+		//Round robin: the endpoints in turn
+		AtomicInteger first  = new AtomicInteger();
+		AtomicInteger second = new AtomicInteger();
+		RemoteServiceBalancer roundRobin = new RemoteServiceBalancer(PList.val(
+			countingEndpoint(first, () -> Result.success(rootResult)),
+			countingEndpoint(second, () -> Result.success(rootResult))
+		), RemoteServiceBalancer.Strategy.roundRobin);
+		for(int t = 0; t < 10; t++) {
+			tr.isSuccess(roundRobin.call(call));
+		}
+		tr.isEquals(first.get(), 5);
+		tr.isEquals(second.get(), 5);
+
+		//Least outstanding: a call in flight on the first endpoint sends the next calls to the second one
+		AtomicInteger  blockedCalls = new AtomicInteger();
+		AtomicInteger  freeCalls    = new AtomicInteger();
+		CountDownLatch release      = new CountDownLatch(1);
+		RemoteServiceBalancer leastOutstanding = new RemoteServiceBalancer(PList.val(
+			countingEndpoint(blockedCalls, () -> {
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return Result.success(rootResult);
+			}),
+			countingEndpoint(freeCalls, () -> Result.success(rootResult))
+		), RemoteServiceBalancer.Strategy.leastOutstanding);
+		Thread inFlight = new Thread(() -> leastOutstanding.call(call).completed());
+		inFlight.start();
+		while(blockedCalls.get() < 1) {
+			Thread.yield();
+		}
+		for(int t = 0; t < 5; t++) {
+			tr.isSuccess(leastOutstanding.call(call));
+		}
+		tr.isEquals(blockedCalls.get(), 1);
+		tr.isEquals(freeCalls.get(), 5);
+		release.countDown();
+
+		//Power of two choices: the slow endpoint is avoided after its first call
+		AtomicInteger slowCalls = new AtomicInteger();
+		AtomicInteger fastCalls = new AtomicInteger();
+		RemoteServiceBalancer twoChoices = new RemoteServiceBalancer(PList.val(
+			countingEndpoint(slowCalls, () -> {
+				try {
+					Thread.sleep(20);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return Result.success(rootResult);
+			}),
+			countingEndpoint(fastCalls, () -> Result.success(rootResult))
+		), RemoteServiceBalancer.Strategy.powerOfTwoChoices);
+		for(int t = 0; t < 20; t++) {
+			tr.isSuccess(twoChoices.call(call));
+		}
+		tr.isTrue(slowCalls.get() <= 1);
+		tr.isTrue(fastCalls.get() >= 19);
+		try {
+			inFlight.join();
+		} catch(InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	});
+
+	static final TestCase balancingEjection = TestCase.name("Ejecting and recovering failing endpoints").code(tr -> {
+		RCallResult   rootResult = createRServer().call(new RCall(null, null, null)).orElseThrow();
+		RCall         call       = new RCall(null, null, null);
+		AtomicInteger goodCalls  = new AtomicInteger();
+		AtomicInteger badCalls   = new AtomicInteger();
+		AtomicBoolean failing    = new AtomicBoolean(true);
+		RemoteServiceBalancer balancer = new RemoteServiceBalancer(PList.val(
+			countingEndpoint(goodCalls, () -> Result.success(rootResult)),
+			countingEndpoint(badCalls, () -> failing.get() ? Result.failure("Connection refused") : Result.success(rootResult))
+		), RemoteServiceBalancer.Strategy.roundRobin).withOutlierEjection(2, 200, TimeUnit.MILLISECONDS);
+		//The failing endpoint is ejected after 2 consecutive failures
+		for(int t = 0; t < 14; t++) {
+			balancer.call(call).completed();
+		}
+		tr.isEquals(badCalls.get(), 2);
+		tr.isEquals(goodCalls.get(), 12);
+		//After the ejection time, the recovered endpoint gets calls again
+		failing.set(false);
+		try {
+			Thread.sleep(300);
+		} catch(InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		for(int t = 0; t < 4; t++) {
+			tr.isSuccess(balancer.call(call));
+		}
+		tr.isEquals(badCalls.get(), 4);
+
+		//Rejected calls are failures of the endpoint
+		AtomicInteger         overloadedCalls = new AtomicInteger();
+		RemoteServiceBalancer rejecting       = new RemoteServiceBalancer(PList.val(
+			countingEndpoint(new AtomicInteger(), () -> Result.success(rootResult)),
+			countingEndpoint(overloadedCalls, () -> Result.success(RCallResult.forRejected(null, null, "Overloaded")))
+		), RemoteServiceBalancer.Strategy.roundRobin).withOutlierEjection(2, 1, TimeUnit.MINUTES);
+		for(int t = 0; t < 10; t++) {
+			rejecting.call(call).completed();
+		}
+		tr.isEquals(overloadedCalls.get(), 2);
+	});
+
+	private static RemoteService countingEndpoint(AtomicInteger calls, Supplier<Result<RCallResult>> result) {
+		return new RemoteService(){
+			@Override
+			public Result<RCallResult> call(RCall call) {
+				calls.incrementAndGet();
+				return result.get();
+			}
+
+			@Override
+			public void close(long timeOut, TimeUnit timeUnit) {
+			}
+		};
+	}
+
+	@Override
+	public void testAll() {
+		try {
+			super.testAll();
+		} finally {
+			socketServers.forEach(server -> server.close(1, TimeUnit.SECONDS));
+			socketServers.clear();
+		}
+	}
+
 	public static void main(String[] args) {
 		new RemoteCallTest().testAll();
 	}
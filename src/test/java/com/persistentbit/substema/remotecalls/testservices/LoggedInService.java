@@ -2,6 +2,8 @@ package com.persistentbit.substema.remotecalls.testservices;
 
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.result.Result;
+import com.persistentbit.substema.RCursor;
+import com.persistentbit.substema.RStream;
 import com.persistentbit.substema.annotations.Remotable;
 import com.persistentbit.substema.annotations.RemoteCache;
 
@@ -18,4 +20,8 @@ public interface LoggedInService{
 	Result<String> getLoginName();
 
 	Result<PList<TestValue>> getAllValues();
+
+	Result<RStream<TestValue>> streamAllValues();
+
+	Result<RCursor<TestValue>> pageAllValues(int pageSize);
 }
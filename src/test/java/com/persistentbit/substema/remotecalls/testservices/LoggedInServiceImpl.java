@@ -2,7 +2,9 @@ package com.persistentbit.substema.remotecalls.testservices;
 
 import com.persistentbit.core.collections.PList;
 import com.persistentbit.core.result.Result;
+import com.persistentbit.substema.RCursor;
 import com.persistentbit.substema.RSessionManager;
+import com.persistentbit.substema.RStream;
 
 /**
  * TODOC
@@ -29,4 +31,14 @@ public class LoggedInServiceImpl implements LoggedInService{
 	public Result<PList<TestValue>> getAllValues() {
 		return Result.lazy(() -> Result.success(PList.val(RootServiceImpl.peter, RootServiceImpl.els)));
 	}
+
+	@Override
+	public Result<RCursor<TestValue>> pageAllValues(int pageSize) {
+		return Result.success(RCursor.of(PList.val(RootServiceImpl.peter, RootServiceImpl.els, RootServiceImpl.peter), pageSize));
+	}
+
+	@Override
+	public Result<RStream<TestValue>> streamAllValues() {
+		return Result.success(RStream.of(PList.val(RootServiceImpl.peter, RootServiceImpl.els, RootServiceImpl.peter)));
+	}
 }
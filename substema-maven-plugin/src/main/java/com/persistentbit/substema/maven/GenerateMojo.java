@@ -0,0 +1,250 @@
+package com.persistentbit.substema.maven;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.result.Result;
+import com.persistentbit.substema.compiler.SubstemaCompileCache;
+import com.persistentbit.substema.compiler.SubstemaCompiler;
+import com.persistentbit.substema.compiler.values.RSubstema;
+import com.persistentbit.substema.dependencies.DependencySupplier;
+import com.persistentbit.substema.dependencies.SupplierDef;
+import com.persistentbit.substema.dependencies.SupplierType;
+import com.persistentbit.substema.javagen.GeneratedJavaManifest;
+import com.persistentbit.substema.javagen.JavaGenOptions;
+import com.persistentbit.substema.javagen.SubstemaJavaGen;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles substema packages and generates their java sources in the generate-sources phase.<br>
+ * The output folder is added as a compile source root.
+ * Substema packages are found in the substema source folder and in the folders and jars of the compile classpath.<br>
+ * When the substema sources, the classpath, the configuration and the plugin version are the same as in
+ * the previous build and the generated files are not modified, the generation is skipped. Otherwise unchanged packages are loaded from the compile cache and only
+ * java files with changed content are written.
+ * {@code
+ * <plugin>
+ *     <groupId>com.persistentbit</groupId>
+ *     <artifactId>substema-maven-plugin</artifactId>
+ *     <executions><execution><goals><goal>generate</goal></goals></execution></executions>
+ *     <configuration>
+ *         <packages><package>com.mycompany.api</package></packages>
+ *     </configuration>
+ * </plugin>
+ * }
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+@Mojo(
+	name = "generate",
+	defaultPhase = LifecyclePhase.GENERATE_SOURCES,
+	requiresDependencyResolution = ResolutionScope.COMPILE,
+	threadSafe = true
+)
+public class GenerateMojo extends AbstractMojo{
+
+	private static final String stampFileName = ".substema-build";
+
+	@Parameter(defaultValue = "${project}", readonly = true, required = true)
+	private MavenProject project;
+
+	@Parameter(defaultValue = "${plugin}", readonly = true, required = true)
+	private PluginDescriptor plugin;
+
+	/**
+	 * The substema packages to generate java for
+	 */
+	@Parameter(required = true)
+	private List<String> packages;
+
+	/**
+	 * Packages that are imported in every substema
+	 */
+	@Parameter
+	private List<String> implicitImports = new ArrayList<>();
+
+	@Parameter(defaultValue = "${project.basedir}/src/main/substema")
+	private File sourceFolder;
+
+	@Parameter(defaultValue = "${project.build.directory}/generated-sources/substema")
+	private File outputFolder;
+
+	@Parameter(defaultValue = "${project.build.directory}/substema-cache")
+	private File cacheFolder;
+
+	@Parameter(defaultValue = "true")
+	private boolean generateGetters;
+
+	@Parameter(defaultValue = "true")
+	private boolean generateUpdaters;
+
+	@Parameter(property = "substema.skip", defaultValue = "false")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if(skip) {
+			getLog().info("Skipping substema generation");
+			return;
+		}
+		project.addCompileSourceRoot(outputFolder.getAbsolutePath());
+
+		PList<SupplierDef> defs     = supplierDefs();
+		String             buildKey = buildKey(defs);
+		File               stamp    = new File(outputFolder, stampFileName);
+		if(isUpToDate(stamp, buildKey)) {
+			getLog().info("Generated substema sources are up to date");
+			return;
+		}
+
+		//Closing the compiler releases the shared archives
+		try(SubstemaCompiler compiler =
+				new SubstemaCompiler(SharedDependencies.get(defs), PList.<String>empty().plusAll(implicitImports))
+					.withCache(new SubstemaCompileCache(cacheFolder))) {
+			generate(compiler);
+		}
+		try {
+			Files.createDirectories(outputFolder.toPath());
+			Files.write(stamp.toPath(), buildKey.getBytes(StandardCharsets.UTF_8));
+		} catch(IOException e) {
+			throw new MojoExecutionException("Can't write " + stamp.getAbsolutePath(), e);
+		}
+	}
+
+	private void generate(SubstemaCompiler compiler) throws MojoFailureException {
+		Result<PList<RSubstema>> compileResult = compiler.compileAll(PList.<String>empty().plusAll(packages));
+		if(compileResult.isError() || compileResult.isEmpty()) {
+			throw new MojoFailureException("Substema compilation failed: " + compileResult);
+		}
+		PList<RSubstema> compiled = compileResult.orElseThrow();
+
+		JavaGenOptions options = new JavaGenOptions(generateGetters, generateUpdaters);
+		int            errors  = 0;
+		for(RSubstema substema : compiled) {
+			for(Result<File> written : SubstemaJavaGen.generateAndWriteToFiles(compiler, options, substema, outputFolder)) {
+				if(written.isError()) {
+					errors++;
+					getLog().error("Generating " + substema.getPackageName() + " failed: " + written);
+				}
+			}
+		}
+		if(errors > 0) {
+			throw new MojoFailureException(errors + " substema java generation errors");
+		}
+		getLog().info("Generated java for " + compiled.size() + " substema packages in " + outputFolder);
+	}
+
+	/**
+	 * The substema source folder, then the folders and jars of the classpath and
+	 * the resources of the plugin itself.
+	 */
+	private PList<SupplierDef> supplierDefs() throws MojoExecutionException {
+		PList<SupplierDef> res = PList.empty();
+		if(sourceFolder.isDirectory()) {
+			res = res.plus(new SupplierDef(SupplierType.folder, sourceFolder.getAbsolutePath()));
+		}
+		try {
+			for(String element : project.getCompileClasspathElements()) {
+				File f = new File(element);
+				if(f.isDirectory()) {
+					res = res.plus(new SupplierDef(SupplierType.folder, f.getAbsolutePath()));
+				}
+				else if(f.isFile()) {
+					res = res.plus(new SupplierDef(SupplierType.archive, f.getAbsolutePath()));
+				}
+			}
+		} catch(DependencyResolutionRequiredException e) {
+			throw new MojoExecutionException("Can't get the compile classpath", e);
+		}
+		return res.plus(new SupplierDef(SupplierType.resource, "/"));
+	}
+
+	/**
+	 * Hash of everything the generated sources depend on: the plugin version, the configuration,
+	 * the substema files in the folders and the modification time of the archives.
+	 */
+	private String buildKey(PList<SupplierDef> defs) throws MojoExecutionException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			update(digest, pluginVersion());
+			update(digest, packages + "|" + implicitImports + "|" + generateGetters + "|" + generateUpdaters);
+			for(SupplierDef def : defs) {
+				File f = new File(def.getPath());
+				update(digest, def.getType() + ":" + def.getPath());
+				if(def.getType() == SupplierType.archive) {
+					update(digest, f.lastModified() + ":" + f.length());
+				}
+				else if(def.getType() == SupplierType.folder) {
+					File[] sources = f.listFiles((dir, name) -> name.endsWith(DependencySupplier.substemaDefFileExtension));
+					if(sources != null) {
+						Arrays.sort(sources);
+						for(File source : sources) {
+							update(digest, source.getName());
+							digest.update(Files.readAllBytes(source.toPath()));
+						}
+					}
+				}
+			}
+			StringBuilder res = new StringBuilder();
+			for(byte b : digest.digest()) {
+				res.append(String.format("%02x", b));
+			}
+			return res.toString();
+		} catch(NoSuchAlgorithmException | IOException e) {
+			throw new MojoExecutionException("Can't calculate the substema build key", e);
+		}
+	}
+
+	/**
+	 * The version of this plugin. A snapshot version also uses the modification time of the plugin jar.
+	 */
+	private String pluginVersion() {
+		String version = plugin.getVersion();
+		File   jar     = plugin.getPluginArtifact() == null ? null : plugin.getPluginArtifact().getFile();
+		if(version.endsWith("-SNAPSHOT") && jar != null) {
+			version += ":" + jar.lastModified();
+		}
+		return version;
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update((byte) 0);
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private boolean isUpToDate(File stamp, String buildKey) {
+		try {
+			if(stamp.exists() == false
+				|| new String(Files.readAllBytes(stamp.toPath()), StandardCharsets.UTF_8).equals(buildKey) == false) {
+				return false;
+			}
+		} catch(IOException e) {
+			return false;
+		}
+		//Generate again when a generated file was deleted or edited
+		for(String packageName : packages) {
+			if(GeneratedJavaManifest.read(outputFolder, packageName).isIntact() == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
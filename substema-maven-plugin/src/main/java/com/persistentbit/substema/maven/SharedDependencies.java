@@ -0,0 +1,136 @@
+package com.persistentbit.substema.maven;
+
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.substema.dependencies.DependencySupplier;
+import com.persistentbit.substema.dependencies.SubstemaArchive;
+import com.persistentbit.substema.dependencies.SupplierDef;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Shares the open archives of the {@link DependencySupplier}s of the modules in a build.<br>
+ * Modules have different classpaths, but most of the jars on them are the same: every archive is opened
+ * and indexed once per archive path, and reused by all modules and by later builds in the same process
+ * (like a maven daemon) as long as the archive file is not modified.<br>
+ * An archive is only closed when no supplier uses it anymore, so a concurrent build in the same
+ * process never loses its archives. A modified archive is opened again, and the old one is closed
+ * when it is no longer used. Unused archives are closed when more than {@value #maxIdle} of them are open.
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+final class SharedDependencies{
+
+	static final int maxIdle = 256;
+
+	private static final class Shared{
+
+		private final SubstemaArchive archive;
+		private       int             users;
+
+		Shared(SubstemaArchive archive) {
+			this.archive = archive;
+		}
+	}
+
+	//The current archive per archive file
+	private static final Map<File, Shared>            byFile    = new HashMap<>();
+	//All open archives, including modified archives that are still in use
+	private static final Map<SubstemaArchive, Shared> byArchive = new IdentityHashMap<>();
+
+	static final DependencySupplier.Archives archives = new DependencySupplier.Archives(){
+		@Override
+		public SubstemaArchive open(File file) {
+			return SharedDependencies.open(file);
+		}
+
+		@Override
+		public void release(SubstemaArchive archive) {
+			SharedDependencies.release(archive);
+		}
+	};
+
+	private SharedDependencies() {
+	}
+
+	/**
+	 * Create a supplier that shares its archives with the other suppliers in this process.<br>
+	 * The supplier must be closed, to release its archives.
+	 *
+	 * @param defs The supplier definitions
+	 *
+	 * @return The supplier
+	 */
+	static DependencySupplier get(PList<SupplierDef> defs) {
+		return new DependencySupplier(defs).withArchives(archives);
+	}
+
+	private static synchronized SubstemaArchive open(File file) {
+		File   key    = file.getAbsoluteFile();
+		Shared shared = byFile.get(key);
+		if(shared == null || shared.archive.isChanged()) {
+			if(shared != null) {
+				byFile.remove(key);
+				closeUnused(shared);
+			}
+			if(byArchive.size() - inUse() >= maxIdle) {
+				closeIdle();
+			}
+			shared = new Shared(SubstemaArchive.open(key));
+			byFile.put(key, shared);
+			byArchive.put(shared.archive, shared);
+		}
+		shared.users++;
+		return shared.archive;
+	}
+
+	private static synchronized void release(SubstemaArchive archive) {
+		Shared shared = byArchive.get(archive);
+		if(shared == null) {
+			archive.close();
+			return;
+		}
+		shared.users--;
+		if(byFile.get(archive.getFile()) != shared) {
+			//A modified archive that was replaced while it was in use
+			closeUnused(shared);
+		}
+	}
+
+	private static void closeUnused(Shared shared) {
+		if(shared.users <= 0) {
+			byArchive.remove(shared.archive);
+			shared.archive.close();
+		}
+	}
+
+	private static void closeIdle() {
+		Iterator<Shared> iter = byFile.values().iterator();
+		while(iter.hasNext()) {
+			Shared shared = iter.next();
+			if(shared.users <= 0) {
+				iter.remove();
+				closeUnused(shared);
+			}
+		}
+	}
+
+	private static int inUse() {
+		int res = 0;
+		for(Shared shared : byArchive.values()) {
+			res += shared.users > 0 ? 1 : 0;
+		}
+		return res;
+	}
+
+	/**
+	 * @return The number of open archives
+	 */
+	static synchronized int getOpenArchives() {
+		return byArchive.size();
+	}
+}
@@ -0,0 +1,79 @@
+package com.persistentbit.substema.maven;
+
+import com.persistentbit.core.ModuleCore;
+import com.persistentbit.core.collections.PList;
+import com.persistentbit.core.logging.printing.LogPrintStream;
+import com.persistentbit.core.testing.TestCase;
+import com.persistentbit.core.testing.TestRunner;
+import com.persistentbit.substema.dependencies.DependencySupplier;
+import com.persistentbit.substema.dependencies.SubstemaArchive;
+import com.persistentbit.substema.dependencies.SupplierDef;
+import com.persistentbit.substema.dependencies.SupplierType;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Test the sharing of archives between the dependency suppliers of a build
+ *
+ * @author petermuys
+ * @since 18/10/26
+ */
+public class SharedDependenciesTest{
+
+	static final TestCase shareArchives = TestCase.name("Share archives per archive path").code(tr -> {
+		File root = new File(System.getProperty("java.io.tmpdir"), "substema-shared-test-" + System.nanoTime());
+		tr.isTrue(root.mkdirs());
+		File jar = new File(root, "api.jar");
+		writeArchive(jar, "com.test.api", "case class Api{}");
+		SupplierDef archive = new SupplierDef(SupplierType.archive, jar.getAbsolutePath());
+		int         before  = SharedDependencies.getOpenArchives();
+
+		//Modules with different classpaths share the archive
+		DependencySupplier moduleA = SharedDependencies.get(PList.val(archive));
+		DependencySupplier moduleB =
+			SharedDependencies.get(PList.val(new SupplierDef(SupplierType.folder, root.getAbsolutePath()), archive));
+		tr.isEquals(moduleA.apply("com.test.api").orElse(null), "case class Api{}");
+		tr.isEquals(moduleB.apply("com.test.api").orElse(null), "case class Api{}");
+		tr.isEquals(SharedDependencies.getOpenArchives(), before + 1);
+
+		//Closing one module doesn't close the archive of a concurrent module
+		moduleA.close();
+		tr.isEquals(moduleB.apply("com.test.api").orElse(null), "case class Api{}");
+		tr.isEquals(moduleB.getIndexedPackages(), PList.val("com.test.api"));
+
+		//A modified archive is opened again, the old one is closed when it is released
+		SubstemaArchive old = SharedDependencies.archives.open(jar);
+		writeArchive(jar, "com.test.api", "case class Api{ name:String; }");
+		tr.isTrue(jar.setLastModified(jar.lastModified() + 2000));
+		DependencySupplier moduleC = SharedDependencies.get(PList.val(archive));
+		tr.isEquals(moduleC.apply("com.test.api").orElse(null), "case class Api{ name:String; }");
+		tr.isEquals(SharedDependencies.getOpenArchives(), before + 2);
+		SharedDependencies.archives.release(old);
+		moduleB.close();
+		tr.isEquals(SharedDependencies.getOpenArchives(), before + 1);
+		moduleC.close();
+	});
+
+	private static void writeArchive(File archive, String packageName, String code) {
+		try(ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+			zip.putNextEntry(new ZipEntry(packageName + DependencySupplier.substemaDefFileExtension));
+			zip.write(code.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void testAll() {
+		TestRunner.runAndPrint(LogPrintStream.sysOut(ModuleCore.createLogFormatter(true)), SharedDependenciesTest.class);
+	}
+
+	public static void main(String[] args) {
+		new SharedDependenciesTest().testAll();
+	}
+}